@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+
+/**
+ * A blocking {@link InputStream} fed by the chunks of an {@link HttpServerRequest}.
+ *
+ * Chunks are queued as they arrive on the event loop and consumed by a reader thread,
+ * that must not be an event loop thread.
+ * The request is paused when more than {@code maxBufferedBytes} are waiting to be read
+ * and resumed once the reader has consumed at least half of them.
+ *
+ * If the body exceeds {@code bodyLimit} bytes, subsequent reads fail with
+ * {@link BodyLimitExceededException}.
+ *
+ * The stream must be created on the request context, before the request is resumed.
+ */
+public class HttpServerRequestInputStream extends InputStream {
+
+    private final HttpServerRequest request;
+    private final Context context;
+    private final long bodyLimit;
+    private final int maxBufferedBytes;
+    private final Deque<ByteBuf> chunks = new ArrayDeque<>();
+    private long bufferedBytes;
+    private long receivedBytes;
+    private boolean paused;
+    private boolean ended;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Creates a stream for the given request.
+     *
+     * @param request          the request whose body should be read
+     * @param bodyLimit        the max number of bytes accepted for the body; a negative value means no limit
+     * @param maxBufferedBytes the number of buffered bytes that causes the request to be paused
+     */
+    public HttpServerRequestInputStream(HttpServerRequest request, long bodyLimit, int maxBufferedBytes) {
+        this.request = Objects.requireNonNull(request);
+        this.context = Objects.requireNonNull(Vertx.currentContext(), "Stream must be created on a Vert.x context");
+        this.bodyLimit = bodyLimit;
+        this.maxBufferedBytes = maxBufferedBytes;
+        request.handler(this::onData);
+        request.endHandler(unused -> onEnd());
+        request.exceptionHandler(this::onError);
+    }
+
+    private synchronized void onData(Buffer data) {
+        if (closed || failure != null) {
+            return;
+        }
+        receivedBytes += data.length();
+        if (bodyLimit >= 0 && receivedBytes > bodyLimit) {
+            failure = new BodyLimitExceededException(bodyLimit);
+            chunks.clear();
+            bufferedBytes = 0;
+        } else {
+            chunks.addLast(data.getByteBuf());
+            bufferedBytes += data.length();
+            if (!paused && bufferedBytes > maxBufferedBytes) {
+                paused = true;
+                request.pause();
+            }
+        }
+        notifyAll();
+    }
+
+    private synchronized void onEnd() {
+        ended = true;
+        notifyAll();
+    }
+
+    private synchronized void onError(Throwable t) {
+        if (failure == null) {
+            failure = (t instanceof IOException) ? (IOException) t : new IOException(t);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Gets the number of bytes received so far.
+     *
+     * @return the number of bytes received so far
+     */
+    public synchronized long receivedBytes() {
+        return receivedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int count = read(b, 0, 1);
+        return (count < 0) ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuf chunk = awaitChunk();
+        if (chunk == null) {
+            return -1;
+        }
+        int count = Math.min(len, chunk.readableBytes());
+        chunk.readBytes(b, off, count);
+        if (!chunk.isReadable()) {
+            chunks.removeFirst();
+        }
+        bufferedBytes -= count;
+        if (paused && bufferedBytes <= maxBufferedBytes / 2) {
+            paused = false;
+            context.runOnContext(unused -> request.resume());
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        ensureOpen();
+        return (int) Math.min(bufferedBytes, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            chunks.clear();
+            bufferedBytes = 0;
+            if (paused) {
+                paused = false;
+                context.runOnContext(unused -> request.resume());
+            }
+            notifyAll();
+        }
+    }
+
+    private ByteBuf awaitChunk() throws IOException {
+        try {
+            while (true) {
+                ensureOpen();
+                if (failure != null) {
+                    throw failure;
+                }
+                if (!chunks.isEmpty()) {
+                    return chunks.peekFirst();
+                }
+                if (ended) {
+                    return null;
+                }
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for request data");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Signals that the request body is larger than the configured limit.
+     */
+    public static class BodyLimitExceededException extends IOException {
+
+        BodyLimitExceededException(long bodyLimit) {
+            super("Request body exceeds the limit of " + bodyLimit + " bytes");
+        }
+    }
+}
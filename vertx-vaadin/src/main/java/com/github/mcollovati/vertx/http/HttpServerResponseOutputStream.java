@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+/**
+ * An {@link OutputStream} that writes to a {@link HttpServerResponse}.
+ *
+ * Content is collected in a chunk buffer that is written to the response
+ * as soon as it reaches {@code flushThreshold} bytes; if the threshold is not positive
+ * the whole body is buffered and sent when the stream is closed.
+ *
+ * When a chunk is written from a thread that is not an event loop and the
+ * response write queue is full, the writer is blocked until the response is drained.
+ * On event loop threads it never blocks.
+ */
+public class HttpServerResponseOutputStream extends OutputStream {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final long DRAIN_POLL_INTERVAL = 100;
+
+    private final HttpServerResponse response;
+    private final int flushThreshold;
+    private ByteBuf chunk;
+    private boolean closed;
+
+    public HttpServerResponseOutputStream(HttpServerResponse response, int flushThreshold) {
+        this.response = Objects.requireNonNull(response);
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * Gets the current chunk buffer, allocating a new one if needed.
+     *
+     * The returned buffer must not be retained by callers, because it is handed
+     * over to the response once it is written.
+     *
+     * @return the current chunk buffer
+     * @throws IOException if the stream has been closed
+     */
+    protected ByteBuf chunk() throws IOException {
+        ensureOpen();
+        if (chunk == null) {
+            chunk = (flushThreshold > 0) ? Unpooled.buffer(flushThreshold) : Unpooled.buffer(INITIAL_BUFFER_SIZE);
+        }
+        return chunk;
+    }
+
+    /**
+     * Gets how many bytes can be added to the current chunk before it needs to be written.
+     *
+     * @return the free space in current chunk or {@link Integer#MAX_VALUE} if
+     * the stream is buffering the whole content
+     */
+    protected int remaining() throws IOException {
+        if (flushThreshold > 0) {
+            return flushThreshold - chunk().readableBytes();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Writes the current chunk to the response if the flush threshold has been reached.
+     */
+    protected void flushIfNeeded() throws IOException {
+        if (flushThreshold > 0 && chunk != null && chunk.readableBytes() >= flushThreshold) {
+            writeChunk();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        chunk().writeByte(b);
+        flushIfNeeded();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            int count = Math.min(len, remaining());
+            chunk().writeBytes(b, off, count);
+            off += count;
+            len -= count;
+            flushIfNeeded();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (chunk != null && chunk.isReadable()) {
+            writeChunk();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ByteBuf last = (chunk != null) ? chunk : Unpooled.EMPTY_BUFFER;
+        chunk = null;
+        try {
+            if (!response.ended() && !response.closed()) {
+                response.end(Buffer.buffer(last));
+            }
+        } catch (IllegalStateException ex) {
+            // the client may close the connection as soon as it has read
+            // the whole content, before the response is ended
+            if (!response.closed()) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void writeChunk() throws IOException {
+        ByteBuf toWrite = chunk;
+        chunk = null;
+        try {
+            if (!response.isChunked() && !response.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+                response.setChunked(true);
+            }
+            response.write(Buffer.buffer(toWrite));
+        } catch (IllegalStateException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        awaitDrain();
+    }
+
+    private void awaitDrain() throws IOException {
+        if (Context.isOnEventLoopThread() || response.closed() || !response.writeQueueFull()) {
+            return;
+        }
+        CountDownLatch drained = new CountDownLatch(1);
+        response.drainHandler(unused -> drained.countDown());
+        try {
+            while (!response.closed() && response.writeQueueFull()) {
+                if (drained.await(DRAIN_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response to be drained");
+        } catch (IllegalStateException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            response.drainHandler(null);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
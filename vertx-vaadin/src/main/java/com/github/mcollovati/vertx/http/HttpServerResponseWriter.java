@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.http;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A {@link Writer} that encodes characters directly into the chunk buffer
+ * of a {@link HttpServerResponseOutputStream}, without intermediate
+ * {@link String} or {@code byte[]} allocations.
+ *
+ * Encoders are cached per thread and per charset and reused by subsequent
+ * writers once this writer is closed.
+ */
+public class HttpServerResponseWriter extends Writer {
+
+    private static final ThreadLocal<Map<Charset, CharsetEncoder>> ENCODERS = ThreadLocal.withInitial(HashMap::new);
+    private static final int MIN_ENCODE_SIZE = 64;
+
+    private final HttpServerResponseOutputStream out;
+    private final Charset charset;
+    private final CharBuffer leftover = CharBuffer.allocate(4);
+    private CharsetEncoder encoder;
+    private boolean hasLeftover;
+
+    public HttpServerResponseWriter(HttpServerResponseOutputStream out, Charset charset) {
+        this.out = Objects.requireNonNull(out);
+        this.charset = Objects.requireNonNull(charset);
+        this.encoder = acquireEncoder(charset);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        write(CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        write(CharBuffer.wrap(str, off, off + len));
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write(new char[]{(char) c}, 0, 1);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (encoder == null) {
+            return;
+        }
+        try {
+            if (!out.isClosed()) {
+                leftover.flip();
+                encode(leftover, true);
+                flushEncoder();
+            }
+        } finally {
+            releaseEncoder(charset, encoder);
+            encoder = null;
+            out.close();
+        }
+    }
+
+    private void write(CharBuffer in) throws IOException {
+        ensureOpen();
+        // a surrogate pair may have been split between two write calls
+        while (hasLeftover && in.hasRemaining()) {
+            leftover.put(in.get()).flip();
+            encode(leftover, false);
+            leftover.compact();
+            hasLeftover = leftover.position() > 0;
+        }
+        if (!hasLeftover) {
+            encode(in, false);
+            if (in.hasRemaining()) {
+                leftover.put(in);
+                hasLeftover = true;
+            }
+        }
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+        while (true) {
+            ByteBuffer dst = reserve((int) Math.ceil(in.remaining() * encoder.averageBytesPerChar()));
+            CoderResult result = encoder.encode(in, dst, endOfInput);
+            commit(dst);
+            if (result.isUnderflow()) {
+                out.flushIfNeeded();
+                return;
+            }
+            if (result.isOverflow()) {
+                overflow(dst);
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void flushEncoder() throws IOException {
+        while (true) {
+            ByteBuffer dst = reserve(MIN_ENCODE_SIZE);
+            CoderResult result = encoder.flush(dst);
+            commit(dst);
+            if (result.isUnderflow()) {
+                out.flushIfNeeded();
+                return;
+            }
+            overflow(dst);
+        }
+    }
+
+    private void overflow(ByteBuffer dst) throws IOException {
+        if (dst.position() == 0) {
+            // not enough room in current chunk even for a single character
+            out.flush();
+        } else {
+            out.flushIfNeeded();
+        }
+    }
+
+    /**
+     * Exposes the writable region of the current chunk as a {@link ByteBuffer}.
+     */
+    private ByteBuffer reserve(int hint) throws IOException {
+        ByteBuf chunk = out.chunk();
+        int size = Math.min(out.remaining(), Math.max(MIN_ENCODE_SIZE, hint));
+        chunk.ensureWritable(size);
+        return chunk.nioBuffer(chunk.writerIndex(), size);
+    }
+
+    private void commit(ByteBuffer dst) throws IOException {
+        ByteBuf chunk = out.chunk();
+        chunk.writerIndex(chunk.writerIndex() + dst.position());
+    }
+
+    private void ensureOpen() throws IOException {
+        if (encoder == null) {
+            throw new IOException("Writer closed");
+        }
+    }
+
+    private static CharsetEncoder acquireEncoder(Charset charset) {
+        CharsetEncoder encoder = ENCODERS.get().remove(charset);
+        if (encoder == null) {
+            encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        return encoder.reset();
+    }
+
+    private static void releaseEncoder(Charset charset, CharsetEncoder encoder) {
+        ENCODERS.get().putIfAbsent(charset, encoder);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Counts events and estimates their rate over the last minute, as an exponentially weighted
+ * moving average updated every five seconds.
+ *
+ * The average is updated lazily, when events are marked or the rate is read, so meters
+ * need no timer.
+ */
+public final class Meter {
+
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    private static final double ALPHA = 1 - Math.exp(-5 / 60.0);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder uncounted = new LongAdder();
+    private final AtomicLong lastTick = new AtomicLong(System.nanoTime());
+    private volatile double rate = -1;
+
+    /**
+     * Marks the occurrence of an event.
+     */
+    public void mark() {
+        mark(1);
+    }
+
+    /**
+     * Marks the occurrence of a number of events.
+     *
+     * @param events the number of events
+     */
+    public void mark(long events) {
+        tickIfNecessary();
+        count.add(events);
+        uncounted.add(events);
+    }
+
+    /**
+     * Gets the number of events marked.
+     *
+     * @return the number of events
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the rate of events over the last minute.
+     *
+     * @return the rate, in events per second
+     */
+    public double rate() {
+        tickIfNecessary();
+        return Math.max(0, rate) * TimeUnit.SECONDS.toNanos(1) / TICK_INTERVAL;
+    }
+
+    /**
+     * Gets the number of events and their rate.
+     *
+     * @return the meter summary
+     */
+    public JsonObject toJson() {
+        return new JsonObject().put("count", count()).put("rate", rate());
+    }
+
+    private void tickIfNecessary() {
+        long last = lastTick.get();
+        long ticks = (System.nanoTime() - last) / TICK_INTERVAL;
+        if (ticks > 0 && lastTick.compareAndSet(last, last + ticks * TICK_INTERVAL)) {
+            for (long i = 0; i < ticks; i++) {
+                double current = uncounted.sumThenReset();
+                rate = rate < 0 ? current : rate + ALPHA * (current - rate);
+            }
+        }
+    }
+}
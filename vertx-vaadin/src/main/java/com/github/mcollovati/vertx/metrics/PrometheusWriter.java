@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.metrics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes metrics in the Prometheus text exposition format.
+ *
+ * Histograms are written as summaries, with 0.5, 0.9, 0.99 and 0.999 quantiles.
+ * Samples of the same metric with different labels must be written one after the other,
+ * since the type of a metric is written only before its first sample.
+ */
+public final class PrometheusWriter {
+
+    /**
+     * Content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final StringBuilder text = new StringBuilder();
+    private final Set<String> described = new HashSet<>();
+    private final String prefix;
+
+    /**
+     * Creates a writer.
+     *
+     * @param prefix prefix of metric names, for example {@code vertx_vaadin_}
+     */
+    public PrometheusWriter(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Writes a gauge sample.
+     *
+     * @param name  the metric name, without prefix
+     * @param help  the metric description
+     * @param value the value
+     * @return a reference to this, so the API can be used fluently
+     */
+    public PrometheusWriter gauge(String name, String help, double value) {
+        describe(name, help, "gauge");
+        return sample(name, "", value);
+    }
+
+    /**
+     * Writes a counter sample.
+     *
+     * @param name   the metric name, without prefix; it should end with {@code _total}
+     * @param help   the metric description
+     * @param labels the labels, as {@code key="value"} pairs separated by commas, or an empty string
+     * @param value  the value
+     * @return a reference to this, so the API can be used fluently
+     */
+    public PrometheusWriter counter(String name, String help, String labels, double value) {
+        describe(name, help, "counter");
+        return sample(name, labels, value);
+    }
+
+    /**
+     * Writes a histogram as a summary.
+     *
+     * @param name      the metric name, without prefix
+     * @param help      the metric description
+     * @param labels    the labels, as {@code key="value"} pairs separated by commas, or an empty string
+     * @param histogram the histogram
+     * @param scale     factor that converts recorded values to the metric unit, e.g. {@code 1e-6}
+     *                  for microseconds written as seconds
+     * @return a reference to this, so the API can be used fluently
+     */
+    public PrometheusWriter summary(String name, String help, String labels, Histogram histogram, double scale) {
+        describe(name, help, "summary");
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            sample(name, labels + separator + "quantile=\"" + quantile + "\"",
+                histogram.percentile(quantile * 100) * scale);
+        }
+        sample(name + "_sum", labels, histogram.sum() * scale);
+        return sample(name + "_count", labels, histogram.count());
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value the label value
+     * @return the escaped value
+     */
+    public static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    private void describe(String name, String help, String type) {
+        if (described.add(name)) {
+            text.append("# HELP ").append(prefix).append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(prefix).append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    private PrometheusWriter sample(String name, String labels, double value) {
+        text.append(prefix).append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+        return this;
+    }
+}
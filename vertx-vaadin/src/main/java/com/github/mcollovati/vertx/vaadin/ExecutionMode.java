@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.stream.Stream;
+
+/**
+ * Defines where Vaadin requests are processed.
+ */
+public enum ExecutionMode {
+
+    /**
+     * Requests are processed directly on the event loop thread that received them.
+     */
+    EVENT_LOOP("event-loop"),
+
+    /**
+     * Requests are processed on a Vert.x worker pool.
+     */
+    WORKER("worker"),
+
+    /**
+     * Requests are processed on virtual threads; if the JDK does not support them
+     * the worker pool is used instead.
+     */
+    VIRTUAL_THREADS("virtual-threads");
+
+    private final String configValue;
+
+    ExecutionMode(String configValue) {
+        this.configValue = configValue;
+    }
+
+    public String configValue() {
+        return configValue;
+    }
+
+    /**
+     * Gets the execution mode for the given configuration value.
+     *
+     * @param configValue the configuration value
+     * @return the execution mode
+     * @throws IllegalArgumentException if the value does not match any execution mode
+     */
+    public static ExecutionMode fromConfigValue(String configValue) {
+        return Stream.of(values())
+            .filter(mode -> mode.configValue.equalsIgnoreCase(configValue) || mode.name().equalsIgnoreCase(configValue))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Invalid execution mode: " + configValue));
+    }
+}
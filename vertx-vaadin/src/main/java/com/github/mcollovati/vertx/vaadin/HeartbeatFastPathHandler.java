@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import com.github.mcollovati.vertx.web.sstore.ExtendedSessionStore;
+import com.vaadin.server.ExposeVaadinServerPkg;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.ui.ui.UIConstants;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.Cookie;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
+
+/**
+ * Handles Vaadin heartbeat requests without going through the session handler.
+ *
+ * If the session store holds the session in local memory and the Vaadin session lock
+ * is free, the UI heartbeat timestamp and the session last access time are updated in place,
+ * so the session is neither fetched from nor written back to the store, but only touched.
+ * In any other case the request is passed to the next handler and processed as usual.
+ *
+ * Requests must be handled by a {@link io.vertx.ext.web.handler.CookieHandler} before reaching this handler.
+ */
+class HeartbeatFastPathHandler implements Handler<RoutingContext> {
+
+    private final VertxVaadinService service;
+    private final ExtendedSessionStore sessionStore;
+    private final String sessionCookieName;
+
+    HeartbeatFastPathHandler(VertxVaadinService service, ExtendedSessionStore sessionStore, String sessionCookieName) {
+        this.service = service;
+        this.sessionStore = sessionStore;
+        this.sessionCookieName = sessionCookieName;
+    }
+
+    @Override
+    public void handle(RoutingContext routingContext) {
+        Cookie cookie = routingContext.getCookie(sessionCookieName);
+        Session session = (cookie != null) ? sessionStore.peek(cookie.getValue()) : null;
+        if (session == null) {
+            routingContext.next();
+            return;
+        }
+        // Body handler may be reached later, on the context pinned for the session
+        routingContext.request().pause();
+        service.getSessionContextAffinity().dispatch(session.id(), () -> {
+            if (tryHeartbeat(routingContext, session)) {
+                VaadinRequestType.HEARTBEAT.markRequest(routingContext);
+                routingContext.response()
+                    .putHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .putHeader(HttpHeaders.CONTENT_TYPE, "text/plain")
+                    .end();
+            } else {
+                routingContext.next();
+            }
+            routingContext.request().resume();
+        });
+    }
+
+    private boolean tryHeartbeat(RoutingContext routingContext, Session session) {
+        long now = System.currentTimeMillis();
+        if (session.isDestroyed() || now - session.lastAccessed() > session.timeout()) {
+            return false;
+        }
+        Integer uiId = uiId(routingContext);
+        Object attribute = session.get(service.getVaadinSessionAttributeName());
+        if (uiId == null || !(attribute instanceof VaadinSession)) {
+            return false;
+        }
+        VaadinSession vaadinSession = (VaadinSession) attribute;
+        Lock lock = vaadinSession.getLockInstance();
+        if (vaadinSession.getService() != service || lock == null
+            || vaadinSession.getState() != VaadinSession.State.OPEN || !lock.tryLock()) {
+            return false;
+        }
+
+        Map<Class<?>, CurrentInstance> oldInstances = CurrentInstance.setCurrent(vaadinSession);
+        try {
+            UI ui = vaadinSession.getUIById(uiId);
+            if (ui == null) {
+                // let Vaadin send the proper error response
+                return false;
+            }
+            ui.setLastHeartbeatTimestamp(now);
+            ExposeVaadinServerPkg.cleanupSession(service, vaadinSession);
+        } finally {
+            try {
+                vaadinSession.unlock();
+            } finally {
+                CurrentInstance.restoreInstances(oldInstances);
+            }
+        }
+        session.setAccessed();
+        sessionStore.touch(session.id(), session.lastAccessed(), res -> { });
+        return true;
+    }
+
+    private static Integer uiId(RoutingContext routingContext) {
+        try {
+            return Integer.valueOf(routingContext.request().getParam(UIConstants.UI_ID_PARAMETER));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
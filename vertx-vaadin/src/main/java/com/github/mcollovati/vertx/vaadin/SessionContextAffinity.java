@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Pins each Vaadin session to the Vert.x {@link Context} that created it, so that
+ * all the work for a session is dispatched onto the same thread and the session
+ * lock is taken without contention.
+ *
+ * When affinity is disabled, or a session is not pinned, work is executed on the
+ * calling thread.
+ */
+public final class SessionContextAffinity {
+
+    private final boolean enabled;
+    private final ConcurrentMap<String, Context> contexts = new ConcurrentHashMap<>();
+    private final LongAdder dispatches = new LongAdder();
+    private final LongAdder crossContextHops = new LongAdder();
+    private final LongAdder unpinned = new LongAdder();
+
+    SessionContextAffinity(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Pins the session with the given id to the current Vert.x context, if any.
+     *
+     * @param sessionId the id of the session
+     */
+    void pin(String sessionId) {
+        Context context = Vertx.currentContext();
+        if (enabled && sessionId != null && context != null) {
+            contexts.putIfAbsent(sessionId, context);
+        }
+    }
+
+    /**
+     * Removes the context pinned for the session with the given id.
+     *
+     * @param sessionId the id of the session
+     */
+    void release(String sessionId) {
+        if (sessionId != null) {
+            contexts.remove(sessionId);
+        }
+    }
+
+    /**
+     * Gets the context pinned for the session with the given id.
+     *
+     * @param sessionId the id of the session
+     * @return the pinned context, or an empty optional if the session is not pinned
+     */
+    public Optional<Context> pinnedContext(String sessionId) {
+        return Optional.ofNullable(sessionId).map(contexts::get);
+    }
+
+    /**
+     * Runs the action on the context pinned for the session with the given id.
+     *
+     * The action is executed immediately if the caller is already running on the
+     * pinned context, if the session is not pinned or if affinity is disabled;
+     * otherwise it is scheduled on the pinned context and the hop is recorded.
+     *
+     * @param sessionId the id of the session
+     * @param action    the action to execute
+     */
+    public void dispatch(String sessionId, Runnable action) {
+        if (!enabled) {
+            action.run();
+            return;
+        }
+        dispatches.increment();
+        Context pinned = pinnedContext(sessionId).orElse(null);
+        if (pinned == null) {
+            unpinned.increment();
+            action.run();
+        } else if (pinned == Vertx.currentContext()) {
+            action.run();
+        } else {
+            crossContextHops.increment();
+            pinned.runOnContext(unused -> action.run());
+        }
+    }
+
+    /**
+     * Gets the number of actions dispatched since affinity has been enabled.
+     *
+     * @return the number of dispatched actions
+     */
+    public long dispatches() {
+        return dispatches.sum();
+    }
+
+    /**
+     * Gets the number of dispatched actions that had to be moved to the pinned context.
+     *
+     * @return the number of cross context hops
+     */
+    public long crossContextHops() {
+        return crossContextHops.sum();
+    }
+
+    /**
+     * Gets a snapshot of affinity counters.
+     *
+     * @return the affinity metrics
+     */
+    public JsonObject metrics() {
+        return new JsonObject()
+            .put("enabled", enabled)
+            .put("pinnedSessions", contexts.size())
+            .put("dispatches", dispatches.sum())
+            .put("crossContextHops", crossContextHops.sum())
+            .put("unpinnedDispatches", unpinned.sum());
+    }
+}
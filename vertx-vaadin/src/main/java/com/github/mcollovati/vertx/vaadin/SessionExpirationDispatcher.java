@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+
+/**
+ * Routes session expiration notifications to the Vaadin sessions of a service.
+ *
+ * A single consumer per service looks up the expired ids in an index of the registered
+ * sessions, instead of having every session filter every notification. Only session ids are
+ * registered, so that sessions evicted from memory by the session store can be collected.
+ * Ids expired during the same event loop turn, as by a reaper run, are sent in one message.
+ * They are also sent one by one to handlers registered with the deprecated
+ * {@link VertxVaadin#sessionExpiredHandler(Vertx, io.vertx.core.Handler)}.
+ */
+final class SessionExpirationDispatcher {
+
+    private final Vertx vertx;
+    private final Set<String> sessionIds = ConcurrentHashMap.newKeySet();
+    private final Consumer<String> expiredSessionHandler;
+    private final Queue<String> expiredIds = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sendScheduled = new AtomicBoolean();
+    private final MessageConsumer<JsonArray> consumer;
+
+    /**
+     * @param vertx                 the Vert.x instance
+     * @param expiredSessionHandler called with the ids of the registered sessions that expire
+     */
+    SessionExpirationDispatcher(Vertx vertx, Consumer<String> expiredSessionHandler) {
+        this.vertx = vertx;
+        this.expiredSessionHandler = expiredSessionHandler;
+        this.consumer = VertxVaadin.sessionsExpiredHandler(vertx, this::onSessionsExpired);
+    }
+
+    /**
+     * Registers the session with the given id, to be notified when it expires.
+     *
+     * @param sessionId the id of the session
+     */
+    void register(String sessionId) {
+        if (sessionId != null) {
+            sessionIds.add(sessionId);
+        }
+    }
+
+    /**
+     * Removes the registration of the session with the given id.
+     *
+     * @param sessionId the id of the session
+     * @return true if the session was registered
+     */
+    boolean unregister(String sessionId) {
+        return sessionId != null && sessionIds.remove(sessionId);
+    }
+
+    /**
+     * Queues the notification for an expired session; queued ids are sent together
+     * once the current event loop turn completes.
+     *
+     * @param sessionId the id of the expired session
+     */
+    void sessionExpired(String sessionId) {
+        expiredIds.add(sessionId);
+        if (sendScheduled.compareAndSet(false, true)) {
+            vertx.runOnContext(unused -> send());
+        }
+    }
+
+    void close() {
+        consumer.unregister();
+        sessionIds.clear();
+    }
+
+    int registeredSessions() {
+        return sessionIds.size();
+    }
+
+    private void send() {
+        sendScheduled.set(false);
+        JsonArray ids = new JsonArray();
+        for (String id = expiredIds.poll(); id != null; id = expiredIds.poll()) {
+            ids.add(id);
+        }
+        if (!ids.isEmpty()) {
+            VertxVaadin.publishSessionsExpired(vertx, ids);
+        }
+    }
+
+    private void onSessionsExpired(Message<JsonArray> message) {
+        for (Object id : message.body()) {
+            if (sessionIds.remove(id)) {
+                expiredSessionHandler.accept((String) id);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.io.IOException;
+
+import com.github.mcollovati.vertx.http.HttpServerRequestInputStream;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles Vaadin file upload requests without buffering the request body in memory.
+ *
+ * Body chunks are piped to {@link com.vaadin.server.communication.FileUploadHandler}
+ * through a {@link HttpServerRequestInputStream}, so the request is paused when the upload
+ * receiver cannot keep up; for this reason the request is always processed off the event loop.
+ *
+ * Requests must be paused before reaching this handler, otherwise body chunks
+ * may be lost while previous handlers (e.g. session handler) complete.
+ */
+class StreamingUploadHandler implements Handler<RoutingContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadHandler.class);
+
+    private final VertxVaadinService service;
+    private final VaadinRequestExecutor requestExecutor;
+    private final long bodyLimit;
+    private final int bufferSize;
+
+    StreamingUploadHandler(VertxVaadinService service, VaadinRequestExecutor requestExecutor,
+                           long bodyLimit, int bufferSize) {
+        this.service = service;
+        this.requestExecutor = requestExecutor;
+        this.bodyLimit = bodyLimit;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void handle(RoutingContext routingContext) {
+        if (bodyLimit >= 0 && declaredContentLength(routingContext) > bodyLimit) {
+            routingContext.fail(413);
+            return;
+        }
+        HttpServerRequestInputStream body = new HttpServerRequestInputStream(
+            routingContext.request(), bodyLimit, bufferSize
+        );
+        routingContext.request().resume();
+
+        VertxVaadinRequest request = new VertxVaadinRequest(service, routingContext, body);
+        VaadinRequestType.UPLOAD.markRequest(request);
+        VertxVaadinResponse response = new VertxVaadinResponse(service, routingContext);
+        requestExecutor.executeBlocking(routingContext, () -> {
+            try {
+                service.handleRequest(request, response);
+                response.end();
+            } finally {
+                closeQuietly(body);
+            }
+        });
+    }
+
+    private static long declaredContentLength(RoutingContext routingContext) {
+        String contentLength = routingContext.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+        try {
+            return (contentLength != null) ? Long.parseLong(contentLength) : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(HttpServerRequestInputStream body) {
+        try {
+            body.close();
+        } catch (IOException ex) {
+            logger.debug("Cannot close upload request stream", ex);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
+import com.github.mcollovati.vertx.web.sstore.ExtendedSessionStore;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.Session;
+
+/**
+ * Session store used by the session handler that writes a session back to
+ * the underlying store only if it has been marked as modified since the last write.
+ *
+ * For all other sessions only the last access time is updated through
+ * {@link ExtendedSessionStore#touch(String, long, Handler)}.
+ */
+class TouchingSessionStore implements ExtendedSessionStore {
+
+    private final ExtendedSessionStore delegate;
+    private final Set<String> modifiedSessions = ConcurrentHashMap.newKeySet();
+
+    TouchingSessionStore(ExtendedSessionStore delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Marks the session as modified, so that it will be fully written on next put.
+     *
+     * @param id the session id
+     */
+    void markModified(String id) {
+        modifiedSessions.add(id);
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        boolean marked = modifiedSessions.remove(session.id());
+        if (marked || hasModifiedAttributes(session)) {
+            delegate.put(session, res -> {
+                if (res.failed()) {
+                    markModified(session.id());
+                }
+                resultHandler.handle(res);
+            });
+        } else {
+            delegate.touch(session.id(), session.lastAccessed(), res -> {
+                if (res.succeeded() && res.result()) {
+                    resultHandler.handle(Future.succeededFuture());
+                } else {
+                    delegate.put(session, resultHandler);
+                }
+            });
+        }
+    }
+
+    // attributes may also be changed by handlers outside Vaadin requests
+    private static boolean hasModifiedAttributes(Session session) {
+        return session instanceof ExtendedSessionImpl && ((ExtendedSessionImpl) session).hasModifiedAttributes();
+    }
+
+    @Override
+    public ExtendedSessionStore expirationHandler(Handler<AsyncResult<String>> handler) {
+        delegate.expirationHandler(handler);
+        return this;
+    }
+
+    @Override
+    public ExtendedSessionStore expiredSessionHandler(Handler<Session> handler) {
+        delegate.expiredSessionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public Session peek(String id) {
+        return delegate.peek(id);
+    }
+
+    @Override
+    public void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        delegate.touch(id, lastAccessed, resultHandler);
+    }
+
+    @Override
+    public void flush(Handler<AsyncResult<Void>> resultHandler) {
+        delegate.flush(resultHandler);
+    }
+
+    @Override
+    public void flush(String id, Handler<AsyncResult<Void>> resultHandler) {
+        delegate.flush(id, resultHandler);
+    }
+
+    @Override
+    public String ownerId() {
+        return delegate.ownerId();
+    }
+
+    @Override
+    public long retryTimeout() {
+        return delegate.retryTimeout();
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return delegate.createSession(timeout);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return delegate.createSession(timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+        delegate.get(id, resultHandler);
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+        modifiedSessions.remove(id);
+        delegate.delete(id, resultHandler);
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+        modifiedSessions.clear();
+        delegate.clear(resultHandler);
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        delegate.size(resultHandler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
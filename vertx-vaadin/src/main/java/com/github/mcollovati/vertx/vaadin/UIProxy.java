@@ -51,8 +51,10 @@ public class UIProxy {
 
     private <T> Future<T> schedule(UITask<T> task) {
         CompletableFuture<T> f = new CompletableFuture<>();
+        long scheduled = System.nanoTime();
         service.getVertx().createSharedWorkerExecutor("vaadin.background.worker")
             .executeBlocking(completer -> {
+                service.getMetrics().backgroundTaskStarted(System.nanoTime() - scheduled);
                 try {
                     completer.complete(task.execute(ui));
                 } catch (Exception ex) {
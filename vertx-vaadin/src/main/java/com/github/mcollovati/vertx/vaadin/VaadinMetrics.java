@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import com.github.mcollovati.vertx.web.sstore.SessionMetrics;
+
+/**
+ * Listener for the events measured by vertx-vaadin, to bridge them to a metrics backend.
+ *
+ * Listeners are registered with {@link VertxVaadinService#addMetricsListener(VaadinMetrics)};
+ * they also receive the {@link SessionMetrics} events of session serialization and session stores.
+ * Methods are called on event loop, worker and background threads, so implementations must be thread safe
+ * and should not block. All methods do nothing by default.
+ *
+ * Times are in nanoseconds.
+ */
+public interface VaadinMetrics extends SessionMetrics {
+
+    /**
+     * Called when the response to an HTTP request has been sent.
+     *
+     * @param type       the type of the request, or {@code null} for requests not handled by Vaadin,
+     *                   such as static resources
+     * @param statusCode the response status code
+     * @param nanos      time from the request being routed to the response being sent,
+     *                   including session loading and storing
+     */
+    default void requestCompleted(VaadinRequestType type, int statusCode, long nanos) {
+    }
+
+    /**
+     * Called when Vaadin has processed a request, between {@link VertxVaadinService#requestStart}
+     * and {@link VertxVaadinService#requestEnd}; messages received through push connections
+     * are processed as {@link VaadinRequestType#PUSH} requests.
+     *
+     * @param type  the type of the request
+     * @param nanos the processing time
+     */
+    default void requestProcessed(VaadinRequestType type, long nanos) {
+    }
+
+    /**
+     * Called when a Vaadin session has been created.
+     */
+    default void sessionCreated() {
+    }
+
+    /**
+     * Called when a Vaadin session has been destroyed.
+     */
+    default void sessionDestroyed() {
+    }
+
+    /**
+     * Called when a UI has been created.
+     */
+    default void uiCreated() {
+    }
+
+    /**
+     * Called when a UI has been detached from its session.
+     */
+    default void uiDestroyed() {
+    }
+
+    /**
+     * Called when a push connection has been opened.
+     */
+    default void pushSocketOpened() {
+    }
+
+    /**
+     * Called when a push connection has been closed.
+     */
+    default void pushSocketClosed() {
+    }
+
+    /**
+     * Called when a frame has been written to a push connection.
+     *
+     * @param bytes the frame size, in bytes
+     */
+    default void pushFrameSent(int bytes) {
+    }
+
+    /**
+     * Called when an asynchronous push has been merged into another push frame, instead of being
+     * sent in its own frame.
+     */
+    default void pushFrameCoalesced() {
+    }
+
+    /**
+     * Called with the number of {@link com.vaadin.ui.UI#access(Runnable)} tasks waiting for the session lock,
+     * before they are run and their changes are pushed.
+     *
+     * @param depth the number of pending tasks
+     */
+    default void accessQueueDepth(int depth) {
+    }
+
+    /**
+     * Called when a task scheduled through {@link UIProxy} starts.
+     *
+     * @param queueNanos time spent by the task waiting for a background worker
+     */
+    default void backgroundTaskStarted(long queueNanos) {
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mcollovati.vertx.metrics.Histogram;
+import com.github.mcollovati.vertx.metrics.Meter;
+import com.github.mcollovati.vertx.metrics.PrometheusWriter;
+import com.github.mcollovati.vertx.web.sstore.SessionMetricsCollector;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * {@link VaadinMetrics} that keeps metrics in memory and exports them as JSON or in the Prometheus text format.
+ *
+ * Request rates and latencies are tracked per {@link VaadinRequestType}; requests not handled by Vaadin,
+ * such as static resources, are reported as {@code resource}. Active sessions, UIs and push connections
+ * are counted on this node, from their creation to their destruction. Times are reported in microseconds
+ * in JSON and in seconds in the Prometheus format.
+ */
+public class VaadinMetricsCollector extends SessionMetricsCollector implements VaadinMetrics {
+
+    private static final String RESOURCE = "resource";
+
+    private final Map<VaadinRequestType, RequestStats> requests = new EnumMap<>(VaadinRequestType.class);
+    private final RequestStats resources = new RequestStats();
+    private final LongAdder[] responses = new LongAdder[5];
+    private final LongAdder activeSessions = new LongAdder();
+    private final LongAdder activeUIs = new LongAdder();
+    private final LongAdder pushSockets = new LongAdder();
+    private final Meter pushFrames = new Meter();
+    private final Histogram pushFrameSize = new Histogram();
+    private final LongAdder pushFramesCoalesced = new LongAdder();
+    private final Histogram accessQueueDepth = new Histogram();
+    private final Histogram backgroundQueueTime = new Histogram();
+
+    public VaadinMetricsCollector() {
+        for (VaadinRequestType type : VaadinRequestType.values()) {
+            requests.put(type, new RequestStats());
+        }
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = new LongAdder();
+        }
+    }
+
+    private RequestStats stats(VaadinRequestType type) {
+        return type == null ? resources : requests.get(type);
+    }
+
+    @Override
+    public void requestCompleted(VaadinRequestType type, int statusCode, long nanos) {
+        RequestStats stats = stats(type);
+        stats.completed.mark();
+        stats.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        int statusClass = statusCode / 100;
+        if (statusClass >= 1 && statusClass <= responses.length) {
+            responses[statusClass - 1].increment();
+        }
+    }
+
+    @Override
+    public void requestProcessed(VaadinRequestType type, long nanos) {
+        stats(type).processing.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void sessionCreated() {
+        activeSessions.increment();
+    }
+
+    @Override
+    public void sessionDestroyed() {
+        activeSessions.decrement();
+    }
+
+    @Override
+    public void uiCreated() {
+        activeUIs.increment();
+    }
+
+    @Override
+    public void uiDestroyed() {
+        activeUIs.decrement();
+    }
+
+    @Override
+    public void pushSocketOpened() {
+        pushSockets.increment();
+    }
+
+    @Override
+    public void pushSocketClosed() {
+        pushSockets.decrement();
+    }
+
+    @Override
+    public void pushFrameSent(int bytes) {
+        pushFrames.mark();
+        pushFrameSize.record(bytes);
+    }
+
+    @Override
+    public void pushFrameCoalesced() {
+        pushFramesCoalesced.increment();
+    }
+
+    @Override
+    public void accessQueueDepth(int depth) {
+        accessQueueDepth.record(depth);
+    }
+
+    @Override
+    public void backgroundTaskStarted(long queueNanos) {
+        backgroundQueueTime.record(TimeUnit.NANOSECONDS.toMicros(queueNanos));
+    }
+
+    /**
+     * Gets a snapshot of the collected metrics, including session store metrics.
+     *
+     * @return the metrics
+     */
+    @Override
+    public JsonObject toJson() {
+        JsonObject requestsJson = new JsonObject();
+        requests.forEach((type, stats) -> requestsJson.put(name(type), stats.toJson()));
+        requestsJson.put(RESOURCE, resources.toJson());
+        JsonObject responsesJson = new JsonObject();
+        for (int i = 0; i < responses.length; i++) {
+            responsesJson.put((i + 1) + "xx", responses[i].sum());
+        }
+        return new JsonObject()
+            .put("requests", requestsJson)
+            .put("responses", responsesJson)
+            .put("sessions", new JsonObject().put("active", active(activeSessions)))
+            .put("uis", new JsonObject().put("active", active(activeUIs)))
+            .put("push", new JsonObject()
+                .put("sockets", active(pushSockets))
+                .put("frames", pushFrames.toJson())
+                .put("frameSize", pushFrameSize.toJson())
+                .put("framesCoalesced", pushFramesCoalesced.sum())
+                .put("accessQueueDepth", accessQueueDepth.toJson()))
+            .put("backgroundTasks", new JsonObject().put("queueTime", backgroundQueueTime.toJson()))
+            .put("sessionStore", super.toJson());
+    }
+
+    /**
+     * Gets a snapshot of the collected metrics, including session store metrics, in the Prometheus text format.
+     *
+     * @return the metrics
+     */
+    public String toPrometheus() {
+        PrometheusWriter writer = new PrometheusWriter("vertx_vaadin_");
+        requests.forEach((type, stats) -> writer.summary("request_duration_seconds",
+            "Time to respond to HTTP requests", label(name(type)), stats.latency, 1e-6));
+        writer.summary("request_duration_seconds", "Time to respond to HTTP requests", label(RESOURCE),
+            resources.latency, 1e-6);
+        requests.forEach((type, stats) -> writer.summary("request_processing_seconds",
+            "Time spent by Vaadin processing requests", label(name(type)), stats.processing, 1e-6));
+        for (int i = 0; i < responses.length; i++) {
+            writer.counter("responses_total", "HTTP responses by status class",
+                "status=\"" + (i + 1) + "xx\"", responses[i].sum());
+        }
+        writer.gauge("active_sessions", "Vaadin sessions created on this node and not yet destroyed",
+            active(activeSessions))
+            .gauge("active_uis", "UIs created on this node and not yet detached", active(activeUIs))
+            .gauge("push_sockets", "Open push connections", active(pushSockets))
+            .counter("push_frames_total", "Frames written to push connections", "", pushFrames.count())
+            .summary("push_frame_bytes", "Size of frames written to push connections", "", pushFrameSize, 1)
+            .counter("push_frames_coalesced_total", "Pushes merged into another push frame", "",
+                pushFramesCoalesced.sum())
+            .summary("access_queue_depth", "UI.access() tasks waiting for the session lock", "", accessQueueDepth, 1)
+            .summary("background_task_queue_seconds", "Time spent by UIProxy tasks waiting for a worker", "",
+                backgroundQueueTime, 1e-6);
+        writePrometheus(writer);
+        return writer.toString();
+    }
+
+    private static String name(VaadinRequestType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String label(String type) {
+        return "type=\"" + type + "\"";
+    }
+
+    private static long active(LongAdder counter) {
+        // destroy events of sessions created on other nodes may outnumber local creations
+        return Math.max(0, counter.sum());
+    }
+
+    private static final class RequestStats {
+        private final Meter completed = new Meter();
+        private final Histogram latency = new Histogram();
+        private final Histogram processing = new Histogram();
+
+        JsonObject toJson() {
+            return completed.toJson()
+                .put("latency", latency.toJson())
+                .put("processing", processing.toJson());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.github.mcollovati.vertx.web.sstore.SessionMetricsRegistry;
+import com.vaadin.shared.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards metrics events to the listeners registered for a {@link VertxVaadinService}.
+ *
+ * Listeners are also registered in {@link SessionMetricsRegistry}, so session events of the whole JVM,
+ * not only those of the service, reach them directly and are not forwarded by this dispatcher. Exceptions thrown by listeners are logged and do not affect request processing.
+ */
+class VaadinMetricsDispatcher implements VaadinMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(VaadinMetricsDispatcher.class);
+
+    private final List<VaadinMetrics> listeners = new CopyOnWriteArrayList<>();
+
+    Registration add(VaadinMetrics listener) {
+        listeners.add(Objects.requireNonNull(listener));
+        SessionMetricsRegistry.register(listener);
+        return () -> {
+            if (listeners.remove(listener)) {
+                SessionMetricsRegistry.unregister(listener);
+            }
+        };
+    }
+
+    void clear() {
+        listeners.forEach(SessionMetricsRegistry::unregister);
+        listeners.clear();
+    }
+
+    /**
+     * Checks whether events should be measured.
+     *
+     * @return {@code true} if at least a listener is registered
+     */
+    boolean isEnabled() {
+        return !listeners.isEmpty();
+    }
+
+    private void forEach(Consumer<VaadinMetrics> event) {
+        for (VaadinMetrics listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException ex) {
+                logger.warn("Metrics listener {} failed", listener, ex);
+            }
+        }
+    }
+
+    @Override
+    public void requestCompleted(VaadinRequestType type, int statusCode, long nanos) {
+        forEach(listener -> listener.requestCompleted(type, statusCode, nanos));
+    }
+
+    @Override
+    public void requestProcessed(VaadinRequestType type, long nanos) {
+        forEach(listener -> listener.requestProcessed(type, nanos));
+    }
+
+    @Override
+    public void sessionCreated() {
+        forEach(VaadinMetrics::sessionCreated);
+    }
+
+    @Override
+    public void sessionDestroyed() {
+        forEach(VaadinMetrics::sessionDestroyed);
+    }
+
+    @Override
+    public void uiCreated() {
+        forEach(VaadinMetrics::uiCreated);
+    }
+
+    @Override
+    public void uiDestroyed() {
+        forEach(VaadinMetrics::uiDestroyed);
+    }
+
+    @Override
+    public void pushSocketOpened() {
+        forEach(VaadinMetrics::pushSocketOpened);
+    }
+
+    @Override
+    public void pushSocketClosed() {
+        forEach(VaadinMetrics::pushSocketClosed);
+    }
+
+    @Override
+    public void pushFrameSent(int bytes) {
+        forEach(listener -> listener.pushFrameSent(bytes));
+    }
+
+    @Override
+    public void pushFrameCoalesced() {
+        forEach(VaadinMetrics::pushFrameCoalesced);
+    }
+
+    @Override
+    public void accessQueueDepth(int depth) {
+        forEach(listener -> listener.accessQueueDepth(depth));
+    }
+
+    @Override
+    public void backgroundTaskStarted(long queueNanos) {
+        forEach(listener -> listener.backgroundTaskStarted(queueNanos));
+    }
+}
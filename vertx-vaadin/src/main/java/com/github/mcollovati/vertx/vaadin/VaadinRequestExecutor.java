@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs Vaadin request processing according to the configured {@link ExecutionMode}.
+ *
+ * When requests are processed off the event loop, requests belonging to the same
+ * session are executed one after the other, in the order they have been received.
+ * Failures are always reported to the {@link RoutingContext} on its own context.
+ * The worker pool is created upfront in worker mode, and only once needed by a blocking
+ * request in event loop mode.
+ */
+class VaadinRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VaadinRequestExecutor.class);
+    private static final String WORKER_POOL_NAME = "vaadin.request.worker";
+
+    private final Vertx vertx;
+    private final int workerPoolSize;
+    private final ExecutionMode mode;
+    private WorkerExecutor workerExecutor;
+    private final ExecutorService virtualThreadExecutor;
+    private final Executor blockingExecutor;
+    private final ConcurrentMap<String, CompletableFuture<Void>> sessionQueues = new ConcurrentHashMap<>();
+
+    VaadinRequestExecutor(Vertx vertx, ExecutionMode mode, int workerPoolSize) {
+        this.vertx = vertx;
+        this.workerPoolSize = workerPoolSize;
+        this.virtualThreadExecutor = (mode == ExecutionMode.VIRTUAL_THREADS) ? newVirtualThreadExecutor() : null;
+        if (mode == ExecutionMode.VIRTUAL_THREADS && virtualThreadExecutor == null) {
+            logger.warn("Virtual threads are not supported by current JVM; falling back to worker execution mode");
+            this.mode = ExecutionMode.WORKER;
+        } else {
+            this.mode = mode;
+        }
+        if (this.mode == ExecutionMode.WORKER) {
+            workerExecutor();
+        }
+        if (virtualThreadExecutor != null) {
+            this.blockingExecutor = virtualThreadExecutor;
+        } else {
+            this.blockingExecutor = command -> workerExecutor().executeBlocking(future -> {
+                command.run();
+                future.complete();
+            }, false, null);
+        }
+    }
+
+    ExecutionMode mode() {
+        return mode;
+    }
+
+    /**
+     * Processes the request with the configured execution mode.
+     *
+     * @param routingContext the routing context of the request
+     * @param task           the request processing task
+     */
+    void execute(RoutingContext routingContext, VaadinRequestTask task) {
+        if (mode == ExecutionMode.EVENT_LOOP) {
+            try {
+                task.run();
+            } catch (Exception ex) {
+                routingContext.fail(ex);
+            }
+        } else {
+            executeBlocking(routingContext, task);
+        }
+    }
+
+    /**
+     * Processes the request off the event loop, regardless of the configured execution mode.
+     *
+     * @param routingContext the routing context of the request
+     * @param task           the request processing task
+     */
+    void executeBlocking(RoutingContext routingContext, VaadinRequestTask task) {
+        Context context = routingContext.vertx().getOrCreateContext();
+        Runnable command = () -> {
+            try {
+                task.run();
+            } catch (Exception ex) {
+                context.runOnContext(unused -> routingContext.fail(ex));
+            }
+        };
+        Optional<String> sessionId = Optional.ofNullable(routingContext.session()).map(Session::id);
+        if (sessionId.isPresent()) {
+            enqueue(sessionId.get(), command);
+        } else {
+            blockingExecutor.execute(command);
+        }
+    }
+
+    private void enqueue(String sessionId, Runnable command) {
+        CompletableFuture<Void> queued = sessionQueues.compute(sessionId, (id, tail) ->
+            Optional.ofNullable(tail).orElseGet(() -> CompletableFuture.completedFuture(null))
+                .handle((unused, error) -> null)
+                .thenRunAsync(command, blockingExecutor)
+        );
+        queued.whenComplete((unused, error) -> sessionQueues.remove(sessionId, queued));
+    }
+
+    private synchronized WorkerExecutor workerExecutor() {
+        if (workerExecutor == null) {
+            workerExecutor = vertx.createSharedWorkerExecutor(WORKER_POOL_NAME, workerPoolSize);
+        }
+        return workerExecutor;
+    }
+
+    void close() {
+        synchronized (this) {
+            if (workerExecutor != null) {
+                workerExecutor.close();
+            }
+        }
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    interface VaadinRequestTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.Optional;
+
+import com.vaadin.server.ConnectorResourceHandler;
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.ServletPortletHelper;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.communication.FileUploadHandler;
+import com.vaadin.server.communication.HeartbeatHandler;
+import com.vaadin.server.communication.PublishedFileHandler;
+import com.vaadin.server.communication.ServletUIInitHandler;
+import com.vaadin.server.communication.UidlRequestHandler;
+import com.vaadin.shared.ApplicationConstants;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Classifies Vaadin requests by path, so that they can be routed and dispatched
+ * directly to the {@link RequestHandler} in charge of them.
+ *
+ * Prefixed types are listed from the most to the least specific path.
+ */
+public enum VaadinRequestType {
+
+    UIDL(ApplicationConstants.UIDL_PATH + '/', UidlRequestHandler.class, true),
+    HEARTBEAT(ApplicationConstants.HEARTBEAT_PATH + '/', HeartbeatHandler.class, false),
+    UPLOAD(ServletPortletHelper.UPLOAD_URL_PREFIX, FileUploadHandler.class, true),
+    PUBLISHED_FILE(ApplicationConstants.PUBLISHED_FILE_PATH + '/', PublishedFileHandler.class, false),
+    CONNECTOR_RESOURCE(ApplicationConstants.APP_PATH + "/connector/", ConnectorResourceHandler.class, false),
+    APP(ApplicationConstants.APP_PATH + '/', null, false),
+    PUSH(ApplicationConstants.PUSH_PATH, null, true),
+    UI_INIT(null, ServletUIInitHandler.class, true),
+    OTHER(null, null, true);
+
+    private static final String ROUTING_CONTEXT_KEY = VaadinRequestType.class.getName();
+    private static final VaadinRequestType[] VALUES = values();
+
+    private final String pathPrefix;
+    private final Class<? extends RequestHandler> handlerType;
+    private final boolean modifyingSession;
+
+    VaadinRequestType(String pathPrefix, Class<? extends RequestHandler> handlerType, boolean modifyingSession) {
+        this.pathPrefix = (pathPrefix != null) ? "/" + pathPrefix : null;
+        this.handlerType = handlerType;
+        this.modifyingSession = modifyingSession;
+    }
+
+    /**
+     * Gets if requests of this type may change the state of the Vaadin session.
+     *
+     * Heartbeats are not considered modifying, since they only update timestamps.
+     *
+     * @return {@code true} if requests of this type may modify the session, otherwise {@code false}
+     */
+    public boolean isModifyingSession() {
+        return modifyingSession;
+    }
+
+    /**
+     * Gets the path prefix, relative to the mount point, of requests of this type.
+     *
+     * @return the path prefix, or {@code null} if requests of this type are not identified by path
+     */
+    String pathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * Gets the type of the {@link RequestHandler} that handles requests of this type.
+     *
+     * @return the handler type, or an empty optional if requests of this type are not handled by a specific handler
+     */
+    Optional<Class<? extends RequestHandler>> handlerType() {
+        return Optional.ofNullable(handlerType);
+    }
+
+    /**
+     * Stores the type in the routing context data of the request.
+     *
+     * @param request the request
+     */
+    void markRequest(VertxVaadinRequest request) {
+        markRequest(request.getRoutingContext());
+    }
+
+    /**
+     * Stores the type in the routing context data.
+     *
+     * @param routingContext the routing context of the request
+     */
+    void markRequest(RoutingContext routingContext) {
+        routingContext.put(ROUTING_CONTEXT_KEY, this);
+    }
+
+    /**
+     * Gets the type stored in the routing context data, without classifying the request.
+     *
+     * @param routingContext the routing context of the request
+     * @return the type of the request, or {@code null} if the request has not been classified
+     */
+    static VaadinRequestType of(RoutingContext routingContext) {
+        return routingContext.get(ROUTING_CONTEXT_KEY);
+    }
+
+    /**
+     * Gets the type of the given request, classifying it only if it has not
+     * already been done by the router.
+     *
+     * @param request the request
+     * @return the type of the request
+     */
+    public static VaadinRequestType of(VertxVaadinRequest request) {
+        VaadinRequestType type = request.getRoutingContext().get(ROUTING_CONTEXT_KEY);
+        if (type == null) {
+            type = classify(request);
+            type.markRequest(request);
+        }
+        return type;
+    }
+
+    static VaadinRequestType classify(VaadinRequest request) {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo != null) {
+            for (VaadinRequestType type : VALUES) {
+                if (type.pathPrefix != null && pathInfo.startsWith(type.pathPrefix)) {
+                    return type;
+                }
+            }
+        }
+        if (ServletUIInitHandler.isUIInitRequest(request)) {
+            return UI_INIT;
+        }
+        return OTHER;
+    }
+}
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import com.vaadin.annotations.VaadinServletConfiguration;
 import com.vaadin.server.VaadinSession;
@@ -36,6 +37,8 @@ import io.vertx.core.VertxException;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
 import io.vertx.ext.web.Router;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +49,7 @@ import org.slf4j.LoggerFactory;
 public class VaadinVerticle extends AbstractVerticle {
 
     private static final Logger log = LoggerFactory.getLogger(VaadinVerticle.class);
+    static final String SHARED_VAADIN_MAP = VaadinVerticle.class.getName() + ".shared-vaadin";
 
     private HttpServer httpServer;
     private VertxVaadinService vaadinService;
@@ -69,19 +73,29 @@ public class VaadinVerticle extends AbstractVerticle {
         vaadinConfig.mergeIn(config().getJsonObject("vaadin", new JsonObject()));
 
         String mountPoint = vaadinConfig.getString("mountPoint");
-        VertxVaadin vertxVaadin = createVertxVaadin(vaadinConfig);
+        VertxVaadin vertxVaadin = acquireVertxVaadin(vaadinConfig);
         vaadinService = vertxVaadin.vaadinService();
 
-        HttpServerOptions serverOptions = new HttpServerOptions().setCompressionSupported(true);
-        httpServer = vertx.createHttpServer(serverOptions);
+        Integer httpPort;
+        try {
+            HttpServerOptions serverOptions = new HttpServerOptions().setCompressionSupported(true);
+            httpServer = vertx.createHttpServer(serverOptions);
 
-        Router router = Router.router(vertx);
-        router.mountSubRouter(mountPoint, vertxVaadin.router());
+            Router router = Router.router(vertx);
+            router.mountSubRouter(mountPoint, vertxVaadin.router());
 
-        Integer httpPort = httpPort();
-        httpServer.requestHandler(router::accept).listen(httpPort);
+            // all instances must listen on the same port, also when it is randomly chosen
+            httpPort = sharedVertxVaadin().httpPort(httpPort());
+            httpServer.requestHandler(router::accept).listen(httpPort);
 
-        serviceInitialized(vaadinService, router);
+            serviceInitialized(vaadinService, router);
+        } catch (Exception ex) {
+            if (httpServer != null) {
+                httpServer.close();
+            }
+            releaseVertxVaadin();
+            throw ex;
+        }
 
         log.info("Started vaadin verticle " + getClass().getName() + " on port " + httpPort);
         startFuture.complete();
@@ -97,6 +111,17 @@ public class VaadinVerticle extends AbstractVerticle {
         return httpPort;
     }
 
+    /**
+     * Creates the {@link VertxVaadin} instance for this deployment.
+     *
+     * When the verticle is deployed with multiple instances, this method is invoked
+     * only by the first starting instance; the resulting Vaadin service, session store
+     * and router are shared by all the instances of the deployment, while every instance
+     * owns its own {@link HttpServer}, so that connections are balanced across event loops.
+     *
+     * @param vaadinConfig Vaadin configuration
+     * @return the {@link VertxVaadin} instance for this deployment
+     */
     protected VertxVaadin createVertxVaadin(JsonObject vaadinConfig) {
         return VertxVaadin.create(vertx, vaadinConfig);
     }
@@ -108,15 +133,44 @@ public class VaadinVerticle extends AbstractVerticle {
     @Override
     public void stop() throws Exception {
         log.info("Stopping vaadin verticle " + getClass().getName());
-        try {
-            vaadinService.destroy();
-        } catch (Exception ex) {
-            log.error("Error during Vaadin service destroy", ex);
-        }
         httpServer.close();
+        releaseVertxVaadin();
         log.info("Stopped vaadin verticle " + getClass().getName());
     }
 
+    /**
+     * Gets the {@link VertxVaadin} instance shared by the deployment, creating it if needed.
+     * If creation fails, the shared entry is discarded, so that it does not outlive the deployment.
+     */
+    private VertxVaadin acquireVertxVaadin(JsonObject vaadinConfig) {
+        LocalMap<String, SharedVertxVaadin> instances = vertx.sharedData().getLocalMap(SHARED_VAADIN_MAP);
+        while (true) {
+            SharedVertxVaadin shared = sharedVertxVaadin();
+            VertxVaadin vertxVaadin = shared.acquire(() -> createVertxVaadin(vaadinConfig),
+                () -> instances.removeIfPresent(deploymentID(), shared));
+            if (vertxVaadin != null) {
+                return vertxVaadin;
+            }
+        }
+    }
+
+    private void releaseVertxVaadin() {
+        if (sharedVertxVaadin().release()) {
+            vertx.sharedData().<String, SharedVertxVaadin>getLocalMap(SHARED_VAADIN_MAP).remove(deploymentID());
+            try {
+                vaadinService.destroy();
+            } catch (Exception ex) {
+                log.error("Error during Vaadin service destroy", ex);
+            }
+        }
+    }
+
+    private SharedVertxVaadin sharedVertxVaadin() {
+        LocalMap<String, SharedVertxVaadin> instances = vertx.sharedData().getLocalMap(SHARED_VAADIN_MAP);
+        SharedVertxVaadin shared = new SharedVertxVaadin();
+        return Optional.ofNullable(instances.putIfAbsent(deploymentID(), shared)).orElse(shared);
+    }
+
     // From VaadinServlet
     private void readUiFromEnclosingClass(JsonObject vaadinConfig) {
         Class<?> enclosingClass = getClass().getEnclosingClass();
@@ -160,5 +214,49 @@ public class VaadinVerticle extends AbstractVerticle {
         }
     }
 
+    /**
+     * Holds the {@link VertxVaadin} instance shared by all the instances of a deployment.
+     */
+    private static final class SharedVertxVaadin implements Shareable {
+
+        private VertxVaadin vertxVaadin;
+        private Integer httpPort;
+        private int references;
+        private boolean discarded;
+
+        /**
+         * Gets the shared instance, creating it if needed.
+         *
+         * @param factory creates the instance
+         * @param discard unregisters this holder if the instance cannot be created
+         * @return the shared instance, or null if this holder has been discarded
+         */
+        synchronized VertxVaadin acquire(Supplier<VertxVaadin> factory, Runnable discard) {
+            if (discarded) {
+                return null;
+            }
+            if (vertxVaadin == null) {
+                try {
+                    vertxVaadin = factory.get();
+                } catch (RuntimeException ex) {
+                    discarded = true;
+                    discard.run();
+                    throw ex;
+                }
+            }
+            references++;
+            return vertxVaadin;
+        }
+
+        synchronized Integer httpPort(Integer candidate) {
+            if (httpPort == null) {
+                httpPort = candidate;
+            }
+            return httpPort;
+        }
 
+        synchronized boolean release() {
+            return --references == 0;
+        }
+    }
 }
@@ -22,29 +22,44 @@
  */
 package com.github.mcollovati.vertx.vaadin;
 
+import java.io.File;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.github.mcollovati.vertx.metrics.PrometheusWriter;
 import com.github.mcollovati.vertx.vaadin.communication.SockJSPushHandler;
+import com.github.mcollovati.vertx.web.ExtendedSession;
 import com.github.mcollovati.vertx.web.sstore.ExtendedLocalSessionStore;
 import com.github.mcollovati.vertx.web.sstore.ExtendedSessionStore;
+import com.github.mcollovati.vertx.web.sstore.FileSessionStore;
 import com.github.mcollovati.vertx.web.sstore.NearCacheSessionStore;
+import com.github.mcollovati.vertx.web.sstore.OffHeapSessionStore;
+import com.github.mcollovati.vertx.web.sstore.SessionCodec;
+import com.github.mcollovati.vertx.web.sstore.SessionMetricsCollector;
+import com.github.mcollovati.vertx.web.sstore.SessionMetricsRegistry;
+import com.github.mcollovati.vertx.web.sstore.ShardedLocalSessionStore;
 import com.vaadin.server.DefaultDeploymentConfiguration;
-import com.vaadin.server.ServiceException;
-import com.vaadin.server.WrappedSession;
+import com.vaadin.server.ServletPortletHelper;
+import com.vaadin.server.VaadinSession;
 import com.vaadin.shared.Registration;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxException;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
-import io.vertx.core.eventbus.MessageProducer;
 import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Cookie;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CookieHandler;
 import io.vertx.ext.web.handler.SessionHandler;
@@ -57,13 +72,20 @@ import static io.vertx.ext.web.handler.SessionHandler.DEFAULT_SESSION_TIMEOUT;
 public class VertxVaadin {
 
     private static final String VAADIN_SESSION_EXPIRED_ADDRESS = "vaadin.session.expired";
+    private static final String VAADIN_SESSIONS_EXPIRED_ADDRESS = "vaadin.sessions.expired";
+    private static final String UPLOAD_PATH_REGEX = "^/" + ServletPortletHelper.UPLOAD_URL_PREFIX + ".*$";
+    private static final int DEFAULT_UPLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final String DEFAULT_OWNER_COOKIE_NAME = "vertx-vaadin.owner";
 
     private final VertxVaadinService service;
     private final JsonObject config;
     private final Vertx vertx;
     private final Router router;
-    private final ExtendedSessionStore sessionStore;
-
+    private final TouchingSessionStore sessionStore;
+    private final SessionExpirationDispatcher sessionExpirationDispatcher;
+    private final VaadinRequestExecutor requestExecutor;
+    private final SessionMetricsCollector sessionMetrics;
+    private final VaadinMetricsCollector metrics;
 
     private VertxVaadin(Vertx vertx, Optional<ExtendedSessionStore> sessionStore, JsonObject config) {
         this.vertx = Objects.requireNonNull(vertx);
@@ -76,10 +98,24 @@ public class VertxVaadin {
         }
 
         //SessionStore adaptedSessionStore = SessionStoreAdapter.adapt(service, sessionStore.orElseGet(this::createSessionStore));
-        this.sessionStore = withSessionExpirationHandler(
-            this.service, sessionStore.orElseGet(this::createSessionStore)
-        );
+        this.sessionMetrics = configureSessionMetrics();
+        this.metrics = configureMetrics();
+        this.sessionExpirationDispatcher = new SessionExpirationDispatcher(vertx, this::expireSession);
+        this.sessionStore = new TouchingSessionStore(withSessionExpirationHandler(
+            this.sessionExpirationDispatcher, configureSessionCodec(sessionStore.orElseGet(this::createSessionStore))
+        ));
         configureSessionStore();
+        this.requestExecutor = new VaadinRequestExecutor(vertx,
+            ExecutionMode.fromConfigValue(config.getString("executionMode", ExecutionMode.EVENT_LOOP.configValue())),
+            config.getInteger("workerPoolSize", VertxOptions.DEFAULT_WORKER_POOL_SIZE)
+        );
+        this.service.addServiceDestroyListener(event -> requestExecutor.close());
+        this.service.addServiceDestroyListener(event -> this.sessionStore.flush(res -> {
+            if (res.failed()) {
+                getLogger().log(Level.WARNING, "Cannot write pending session changes", res.cause());
+            }
+            this.sessionStore.close();
+        }));
         this.router = initRouter();
     }
 
@@ -91,22 +127,88 @@ public class VertxVaadin {
         this(vertx, Optional.empty(), config);
     }
 
-    private void configureSessionStore() {
-        final Registration sessionInitListenerReg = this.service.addSessionInitListener(event -> {
-            MessageConsumer<String> consumer = sessionExpiredHandler(vertx, msg ->
-                Optional.of(event.getSession().getSession())
-                    .filter(session -> msg.body().equals(session.getId()))
-                    .ifPresent(WrappedSession::invalidate));
-            AtomicReference<Registration> sessionDestroyListenerUnregister = new AtomicReference<>();
-            sessionDestroyListenerUnregister.set(
-                event.getService().addSessionDestroyListener(ev2 -> {
-                    consumer.unregister();
-                    sessionDestroyListenerUnregister.get().remove();
-                })
+    private ExtendedSessionStore configureSessionCodec(ExtendedSessionStore sessionStore) {
+        String codec = config().getString("sessionCodec");
+        if (codec == null) {
+            return sessionStore;
+        }
+        SessionCodec sessionCodec;
+        if ("compact".equals(codec)) {
+            sessionCodec = SessionCodec.compact(
+                config().getInteger("sessionCompressionThreshold", SessionCodec.DEFAULT_COMPRESSION_THRESHOLD)
             );
+        } else if ("legacy".equals(codec)) {
+            sessionCodec = null;
+        } else {
+            throw new VertxException("Unknown session codec: " + codec);
+        }
+        if (sessionStore instanceof NearCacheSessionStore) {
+            ((NearCacheSessionStore) sessionStore).setCodec(sessionCodec);
+        }
+        return sessionStore;
+    }
 
+    private SessionMetricsCollector configureSessionMetrics() {
+        if (config().getString("sessionMetricsPath") == null) {
+            return null;
+        }
+        SessionMetricsRegistry.setAttributeSamplingInterval(config().getInteger(
+            "sessionMetricsSamplingInterval", SessionMetricsRegistry.DEFAULT_ATTRIBUTE_SAMPLING_INTERVAL
+        ));
+        SessionMetricsCollector collector = new SessionMetricsCollector();
+        SessionMetricsRegistry.register(collector);
+        this.service.addServiceDestroyListener(event -> SessionMetricsRegistry.unregister(collector));
+        return collector;
+    }
+
+    private VaadinMetricsCollector configureMetrics() {
+        if (config().getString("metricsPath") == null) {
+            return null;
+        }
+        VaadinMetricsCollector collector = new VaadinMetricsCollector();
+        this.service.addMetricsListener(collector);
+        return collector;
+    }
+
+    private void configureSessionStore() {
+        final Registration sessionInitListenerReg = this.service.addSessionInitListener(event ->
+            Optional.ofNullable(event.getSession().getSession()).ifPresent(session ->
+                sessionExpirationDispatcher.register(session.getId())
+            )
+        );
+        final Registration sessionDestroyListenerReg = this.service.addSessionDestroyListener(event ->
+            Optional.ofNullable(event.getSession().getSession()).ifPresent(session ->
+                sessionExpirationDispatcher.unregister(session.getId())
+            )
+        );
+        this.service.addServiceDestroyListener(event -> {
+            sessionInitListenerReg.remove();
+            sessionDestroyListenerReg.remove();
+            sessionExpirationDispatcher.close();
+        });
+    }
+
+    /**
+     * Marks the session as modified, so that it is fully written to the session store
+     * at the end of the request instead of being only touched.
+     *
+     * @param sessionId the session id
+     */
+    void sessionModified(String sessionId) {
+        sessionStore.markModified(sessionId);
+    }
+
+    /**
+     * Writes the session to the session store, for changes made outside of a request.
+     *
+     * @param session the session
+     */
+    void writeSession(Session session) {
+        sessionStore.put(session, res -> {
+            if (res.failed()) {
+                getLogger().log(Level.WARNING, "Cannot write session " + session.id(), res.cause());
+            }
         });
-        this.service.addServiceDestroyListener(event -> sessionInitListenerReg.remove());
     }
 
     public Router router() {
@@ -121,6 +223,28 @@ public class VertxVaadin {
         return service;
     }
 
+    /**
+     * Gets the metrics collected when the {@code metricsPath} option is set.
+     *
+     * Other metrics backends can be plugged in with {@link VertxVaadinService#addMetricsListener(VaadinMetrics)}.
+     *
+     * @return the metrics, if enabled
+     */
+    public Optional<VaadinMetricsCollector> metrics() {
+        return Optional.ofNullable(metrics);
+    }
+
+    /**
+     * Gets the session metrics collected when the {@code sessionMetricsPath} option is set.
+     *
+     * Session metrics are collected for the whole JVM, including sessions of other Vaadin services.
+     *
+     * @return the session metrics, if enabled
+     */
+    public Optional<SessionMetricsCollector> sessionMetrics() {
+        return Optional.ofNullable(sessionMetrics);
+    }
+
     public String serviceName() {
         return config.getString("serviceName", getClass().getName() + ".service");
     }
@@ -139,9 +263,29 @@ public class VertxVaadin {
 
     protected ExtendedSessionStore createSessionStore() {
         if (vertx.isClustered()) {
-            return NearCacheSessionStore.create(vertx);
+            return NearCacheSessionStore.create(vertx)
+                .setWriteBehindDelay(config().getLong("sessionWriteBehindDelay", 0L))
+                .setOwnerId(config().getBoolean("sessionOwnership", false)
+                    ? config().getString("sessionOwnerId", UUID.randomUUID().toString()) : null);
+        }
+        String logDirectory = config().getString("sessionLogDirectory");
+        if (logDirectory != null) {
+            return FileSessionStore.create(vertx, new File(logDirectory))
+                .setSyncInterval(config().getLong("sessionLogSyncInterval", FileSessionStore.DEFAULT_SYNC_INTERVAL));
         }
-        return ExtendedLocalSessionStore.create(vertx);
+        long offHeapMemory = config().getLong("sessionOffHeapMemory", 0L);
+        if (offHeapMemory > 0) {
+            return OffHeapSessionStore.create(vertx, offHeapMemory)
+                .setIdleTime(config().getLong("sessionOffHeapIdleTime", OffHeapSessionStore.DEFAULT_IDLE_TIME));
+        }
+        int shards = config().getInteger("sessionStoreShards", 1);
+        ExtendedLocalSessionStore localSessionStore = shards > 1
+            ? ShardedLocalSessionStore.create(vertx, shards) : ExtendedLocalSessionStore.create(vertx);
+        return localSessionStore.setPassivation(
+            config().getLong("sessionPassivationIdleTime", 0L),
+            new File(config().getString("sessionPassivationDirectory",
+                new File(System.getProperty("java.io.tmpdir"), "vertx-vaadin-sessions").getPath()))
+        );
     }
 
     private Router initRouter() {
@@ -154,16 +298,50 @@ public class VertxVaadin {
             .setCookieHttpOnlyFlag(true);
 
         Router vaadinRouter = Router.router(vertx);
+        // Push connections are long lived, they are measured by SockJSPushHandler
+        vaadinRouter.routeWithRegex("^(?!/PUSH/).*$").handler(this::measureRequest);
         // Redirect mountPoint to mountPoint/
         vaadinRouter.routeWithRegex("^$").handler(ctx -> ctx.response()
             .putHeader(HttpHeaders.LOCATION, ctx.request().uri() + "/")
             .setStatusCode(302).end()
         );
 
+        if (metrics != null) {
+            vaadinRouter.get(config().getString("metricsPath")).handler(this::serveMetrics);
+        }
+        if (sessionMetrics != null) {
+            vaadinRouter.get(config().getString("sessionMetricsPath")).handler(ctx -> ctx.response()
+                .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(sessionMetrics.toJson().encode())
+            );
+        }
         vaadinRouter.route().handler(CookieHandler.create());
-        vaadinRouter.route().handler(BodyHandler.create());
+        if (config().getBoolean("heartbeatFastPath", true)) {
+            vaadinRouter.route(VaadinRequestType.HEARTBEAT.pathPrefix() + "*")
+                .handler(new HeartbeatFastPathHandler(service, sessionStore, sessionCookieName));
+        }
+        // Upload requests are streamed to Vaadin, so they should not be buffered;
+        // pause them until StreamingUploadHandler is ready to consume the body
+        vaadinRouter.routeWithRegex(UPLOAD_PATH_REGEX).handler(ctx -> {
+            ctx.request().pause();
+            ctx.next();
+        });
+        vaadinRouter.routeWithRegex("^(?!/" + ServletPortletHelper.UPLOAD_URL_PREFIX + ").*$")
+            .handler(BodyHandler.create().setBodyLimit(config().getLong("bodyLimit", BodyHandler.DEFAULT_BODY_LIMIT)));
         // Disable SessionHandler for /VAADIN/ static resources
         vaadinRouter.routeWithRegex("^(?!/VAADIN/).*$").handler(sessionHandler);
+        String ownerId = sessionStore.ownerId();
+        if (ownerId != null) {
+            // Routing hint for front ends, to send requests to the node owning the session
+            String ownerCookieName = config().getString("sessionOwnerCookieName", DEFAULT_OWNER_COOKIE_NAME);
+            vaadinRouter.routeWithRegex("^(?!/VAADIN/).*$").handler(ctx -> {
+                Cookie ownerCookie = ctx.getCookie(ownerCookieName);
+                if (ctx.session() != null && (ownerCookie == null || !ownerId.equals(ownerCookie.getValue()))) {
+                    ctx.addCookie(Cookie.cookie(ownerCookieName, ownerId).setPath("/").setHttpOnly(true));
+                }
+                ctx.next();
+            });
+        }
 
         // Forward vaadinPush javascript to sockjs implementation
         vaadinRouter.routeWithRegex("/VAADIN/vaadinPush(\\.debug)?\\.js")
@@ -173,23 +351,63 @@ public class VertxVaadin {
 
         initSockJS(vaadinRouter, sessionHandler);
 
-        vaadinRouter.route("/*").handler(routingContext -> {
-            VertxVaadinRequest request = new VertxVaadinRequest(service, routingContext);
-            VertxVaadinResponse response = new VertxVaadinResponse(service, routingContext);
+        vaadinRouter.routeWithRegex(UPLOAD_PATH_REGEX).handler(new StreamingUploadHandler(service, requestExecutor,
+            config().getLong("uploadBodyLimit", BodyHandler.DEFAULT_BODY_LIMIT),
+            config().getInteger("uploadBufferSize", DEFAULT_UPLOAD_BUFFER_SIZE)
+        ));
 
-            try {
-                service.handleRequest(request, response);
-                response.end();
-            } catch (ServiceException ex) {
-                routingContext.fail(ex);
-            }
-        });
+        // Classify requests once by path, so that VertxVaadinService can dispatch
+        // them directly to the matching request handler
+        Stream.of(VaadinRequestType.UIDL, VaadinRequestType.HEARTBEAT, VaadinRequestType.PUBLISHED_FILE,
+            VaadinRequestType.CONNECTOR_RESOURCE, VaadinRequestType.APP
+        ).forEach(type -> vaadinRouter.route(type.pathPrefix() + "*")
+            .handler(routingContext -> handleVaadinRequest(routingContext, type)));
+        vaadinRouter.route("/*").handler(routingContext -> handleVaadinRequest(routingContext, null));
 
 
         serviceInitialized(vaadinRouter);
         return vaadinRouter;
     }
 
+    private void measureRequest(RoutingContext routingContext) {
+        if (service.isMetricsEnabled()) {
+            long start = System.nanoTime();
+            routingContext.addBodyEndHandler(unused -> service.getMetrics().requestCompleted(
+                VaadinRequestType.of(routingContext), routingContext.response().getStatusCode(),
+                System.nanoTime() - start
+            ));
+        }
+        routingContext.next();
+    }
+
+    private void serveMetrics(RoutingContext routingContext) {
+        String accept = Optional.ofNullable(routingContext.request().getHeader(HttpHeaders.ACCEPT)).orElse("");
+        if ("prometheus".equals(routingContext.request().getParam("format"))
+            || accept.contains("text/plain") || accept.contains("openmetrics")) {
+            routingContext.response()
+                .putHeader(HttpHeaders.CONTENT_TYPE, PrometheusWriter.CONTENT_TYPE)
+                .end(metrics.toPrometheus());
+        } else {
+            routingContext.response()
+                .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .end(metrics.toJson().encode());
+        }
+    }
+
+    private void handleVaadinRequest(RoutingContext routingContext, VaadinRequestType requestType) {
+        VertxVaadinRequest request = new VertxVaadinRequest(service, routingContext);
+        VertxVaadinResponse response = new VertxVaadinResponse(service, routingContext);
+        Optional.ofNullable(requestType).orElseGet(() -> VaadinRequestType.classify(request)).markRequest(request);
+
+        String sessionId = Optional.ofNullable(routingContext.session()).map(Session::id).orElse(null);
+        service.getSessionContextAffinity().dispatch(sessionId, () ->
+            requestExecutor.execute(routingContext, () -> {
+                service.handleRequest(request, response);
+                response.end();
+            })
+        );
+    }
+
     private void initSockJS(Router vaadinRouter, SessionHandler sessionHandler) {
 
         SockJSHandlerOptions options = new SockJSHandlerOptions()
@@ -229,13 +447,44 @@ public class VertxVaadin {
     }
 
 
-    private static ExtendedSessionStore withSessionExpirationHandler(
-        VertxVaadinService service, ExtendedSessionStore store
+    /**
+     * Invalidates a session expired by another store, if a copy of it is held by the local one.
+     */
+    private void expireSession(String sessionId) {
+        Optional.ofNullable(sessionStore.peek(sessionId)).ifPresent(this::invalidateExpiredSession);
+    }
+
+    /**
+     * Unbinds the Vaadin session of an expired session, so that session destroy listeners are notified.
+     */
+    private void invalidateExpiredSession(Session session) {
+        if (session.isDestroyed()) {
+            return;
+        }
+        VertxWrappedSession wrappedSession = new VertxWrappedSession(ExtendedSession.adapt(session));
+        Object vaadinSession = session.get(service.getVaadinSessionAttributeName());
+        if (vaadinSession instanceof VaadinSession && ((VaadinSession) vaadinSession).getService() == null) {
+            // read back from passivation
+            ((VaadinSession) vaadinSession).refreshTransients(wrappedSession, service);
+        }
+        try {
+            wrappedSession.invalidate();
+        } catch (RuntimeException ex) {
+            getLogger().log(Level.WARNING, "Cannot invalidate expired session " + session.id(), ex);
+        }
+    }
+
+    private ExtendedSessionStore withSessionExpirationHandler(
+        SessionExpirationDispatcher dispatcher, ExtendedSessionStore store
     ) {
-        MessageProducer<String> sessionExpiredProducer = sessionExpiredProducer(service);
+        store.expiredSessionHandler(session -> {
+            if (dispatcher.unregister(session.id())) {
+                invalidateExpiredSession(session);
+            }
+        });
         store.expirationHandler(res -> {
             if (res.succeeded()) {
-                sessionExpiredProducer.send(res.result());
+                dispatcher.sessionExpired(res.result());
             } else {
                 res.cause().printStackTrace();
             }
@@ -243,12 +492,39 @@ public class VertxVaadin {
         return store;
     }
 
-    private static MessageProducer<String> sessionExpiredProducer(VertxVaadinService vaadinService) {
-        return vaadinService.getVertx().eventBus().sender(VAADIN_SESSION_EXPIRED_ADDRESS);
+    static void publishSessionsExpired(Vertx vertx, JsonArray sessionIds) {
+        vertx.eventBus().publish(VAADIN_SESSIONS_EXPIRED_ADDRESS, sessionIds);
+        for (Object sessionId : sessionIds) {
+            vertx.eventBus().send(VAADIN_SESSION_EXPIRED_ADDRESS, sessionId);
+        }
     }
 
+    /**
+     * Registers a handler for session expiration notifications, receiving the id of one expired session
+     * per message.
+     *
+     * @param vertx   the Vert.x instance
+     * @param handler the handler for the expired session id
+     * @return the event bus consumer
+     * @deprecated use {@link #sessionsExpiredHandler(Vertx, Handler)}, that gets the ids of the sessions
+     * expired together in one message
+     */
+    @Deprecated
     public static MessageConsumer<String> sessionExpiredHandler(Vertx vertx, Handler<Message<String>> handler) {
         return vertx.eventBus().consumer(VAADIN_SESSION_EXPIRED_ADDRESS, handler);
     }
 
+    /**
+     * Registers a handler for session expiration notifications.
+     *
+     * Each message holds the ids of the sessions expired by a single reaper run.
+     *
+     * @param vertx   the Vert.x instance
+     * @param handler the handler for the expired session ids
+     * @return the event bus consumer
+     */
+    public static MessageConsumer<JsonArray> sessionsExpiredHandler(Vertx vertx, Handler<Message<JsonArray>> handler) {
+        return vertx.eventBus().consumer(VAADIN_SESSIONS_EXPIRED_ADDRESS, handler);
+    }
+
 }
@@ -27,7 +27,10 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -46,6 +49,7 @@ import com.github.mcollovati.vertx.Sync;
 import com.github.mcollovati.vertx.web.ExtendedSession;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.WrappedSession;
+import io.netty.buffer.ByteBufInputStream;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.net.SocketAddress;
@@ -70,12 +74,21 @@ public class VertxVaadinRequest implements VaadinRequest {
     private final VertxVaadinService service;
     private final RoutingContext routingContext;
     private final HttpServerRequest request;
+    private final InputStream bodyStream;
 
     public VertxVaadinRequest(VertxVaadinService service, RoutingContext routingContext) {
+        this(service, routingContext, null);
+    }
+
+    /**
+     * Creates a request whose body is read from the given stream instead of
+     * the body buffered in the routing context.
+     */
+    VertxVaadinRequest(VertxVaadinService service, RoutingContext routingContext, InputStream bodyStream) {
         this.service = service;
         this.routingContext = routingContext;
         this.request = routingContext.request();
-
+        this.bodyStream = bodyStream;
     }
 
     public HttpServerRequest getRequest() {
@@ -99,12 +112,32 @@ public class VertxVaadinRequest implements VaadinRequest {
 
     @Override
     public int getContentLength() {
-        return routingContext.getBody().length();
+        if (bodyStream == null && routingContext.getBody() != null) {
+            return routingContext.getBody().length();
+        }
+        try {
+            return Optional.ofNullable(request.getHeader(HttpHeaders.CONTENT_LENGTH))
+                .map(Integer::parseInt).orElse(-1);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
     }
 
+    /**
+     * Gets the request body as an {@link InputStream} that reads directly
+     * from the underlying buffer, without copying its content.
+     *
+     * @return a stream over the request body; never {@code null}
+     * @throws IOException never thrown
+     */
     @Override
     public InputStream getInputStream() throws IOException {
-        return new ByteArrayInputStream(routingContext.getBody().getBytes());
+        if (bodyStream != null) {
+            return bodyStream;
+        }
+        return Optional.ofNullable(routingContext.getBody())
+            .<InputStream>map(body -> new ByteBufInputStream(body.getByteBuf()))
+            .orElseGet(() -> new ByteArrayInputStream(new byte[0]));
     }
 
     @Override
@@ -243,9 +276,28 @@ public class VertxVaadinRequest implements VaadinRequest {
             .map(m -> m.group(1)).orElse(null);
     }
 
+    /**
+     * Gets a reader that lazily decodes the request body using the charset
+     * declared by the request, or UTF-8 if none is specified.
+     *
+     * @return a reader over the request body
+     * @throws IOException if the request charset is not supported
+     */
     @Override
     public BufferedReader getReader() throws IOException {
-        return new BufferedReader(new StringReader(routingContext.getBodyAsString()));
+        return new BufferedReader(new InputStreamReader(getInputStream(), requestCharset()));
+    }
+
+    private Charset requestCharset() throws UnsupportedEncodingException {
+        String charsetName = getCharacterEncoding();
+        if (charsetName == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(charsetName.trim().replace("\"", ""));
+        } catch (IllegalArgumentException ex) {
+            throw new UnsupportedEncodingException(charsetName);
+        }
     }
 
     @Override
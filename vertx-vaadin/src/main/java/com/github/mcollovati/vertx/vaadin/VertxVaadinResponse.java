@@ -23,9 +23,10 @@
 package com.github.mcollovati.vertx.vaadin;
 
 
+import com.github.mcollovati.vertx.http.HttpServerResponseOutputStream;
+import com.github.mcollovati.vertx.http.HttpServerResponseWriter;
 import com.vaadin.server.ExposeVaadinServerPkg;
 import com.vaadin.server.VaadinResponse;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
@@ -33,21 +34,29 @@ import io.vertx.ext.web.RoutingContext;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.Writer;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Created by marco on 16/07/16.
  */
 public class VertxVaadinResponse implements VaadinResponse {
 
+    private static final Pattern CHARSET_PATTERN = Pattern.compile("^.*(?<=charset=)([^;]+)(?:;.*$|$)", Pattern.CASE_INSENSITIVE);
+
     private final RoutingContext routingContext;
     private final HttpServerResponse response;
     private final VertxVaadinService service;;
-    private Buffer outBuffer = Buffer.buffer();
+    private HttpServerResponseOutputStream outputStream;
+    private HttpServerResponseWriter writer;
     private boolean useOOS = false;
     private boolean useWriter = false;
 
@@ -89,17 +98,7 @@ public class VertxVaadinResponse implements VaadinResponse {
             throw new IllegalStateException("getWriter() has already been called for this response");
         }
         useOOS = true;
-        return new OutputStream() {
-            @Override
-            public void write(int b) throws IOException {
-                outBuffer.appendByte((byte) b);
-            }
-
-            @Override
-            public void close() throws IOException {
-                response.end(outBuffer);
-            }
-        };
+        return outputStream();
     }
 
     @Override
@@ -108,23 +107,28 @@ public class VertxVaadinResponse implements VaadinResponse {
             throw new IllegalStateException("getOutputStream() has already been called for this response");
         }
         useWriter = true;
-        return new PrintWriter(new Writer() {
-            @Override
-            public void write(char[] cbuf, int off, int len) throws IOException {
-                outBuffer.appendString(new String(cbuf, off, len));
-            }
+        if (writer == null) {
+            writer = new HttpServerResponseWriter(outputStream(), characterEncoding());
+        }
+        return new PrintWriter(writer);
+    }
 
-            @Override
-            public void flush() throws IOException {
-                response.write(outBuffer);
-                outBuffer = Buffer.buffer();
-            }
+    private Charset characterEncoding() throws UnsupportedEncodingException {
+        Optional<String> charsetName = Optional.ofNullable(response.headers().get(HttpHeaders.CONTENT_TYPE))
+            .map(CHARSET_PATTERN::matcher).filter(Matcher::matches)
+            .map(m -> m.group(1).trim().replace("\"", ""));
+        try {
+            return charsetName.map(Charset::forName).orElse(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new UnsupportedEncodingException(charsetName.get());
+        }
+    }
 
-            @Override
-            public void close() throws IOException {
-                response.end(outBuffer);
-            }
-        });
+    private HttpServerResponseOutputStream outputStream() {
+        if (outputStream == null) {
+            outputStream = new HttpServerResponseOutputStream(response, service.getResponseFlushThreshold());
+        }
+        return outputStream;
     }
 
     @Override
@@ -155,11 +159,17 @@ public class VertxVaadinResponse implements VaadinResponse {
     /**
      * Ends the response.
      *
-     * Does nothing if response is already endend or if it is chunked.
+     * Pending content written through {@link #getOutputStream()} or {@link #getWriter()}
+     * is sent to the client.
+     * Otherwise does nothing if response is already endend or if it is chunked.
      */
-    void end() {
-        if (!response.ended() && !response.isChunked()) {
-            response.end(outBuffer);
+    void end() throws IOException {
+        if (writer != null) {
+            writer.close();
+        } else if (outputStream != null) {
+            outputStream.close();
+        } else if (!response.ended() && !response.isChunked()) {
+            response.end();
         }
     }
 }
@@ -24,26 +24,37 @@ package com.github.mcollovati.vertx.vaadin;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.ClientConnector.DetachEvent;
 import com.vaadin.server.DefaultDeploymentConfiguration;
 import com.vaadin.server.RequestHandler;
 import com.vaadin.server.ServiceException;
-import com.vaadin.server.ServletPortletHelper;
 import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
 import com.vaadin.server.VaadinService;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.server.VaadinServletService;
 import com.vaadin.server.VaadinSession;
+import com.vaadin.server.WrappedSession;
 import com.vaadin.server.communication.ServletUIInitHandler;
+import com.vaadin.shared.Registration;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.themes.ValoTheme;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxException;
 import io.vertx.core.file.FileSystem;
+import io.vertx.ext.web.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,23 +65,254 @@ public class VertxVaadinService extends VaadinService {
 
     private static final Logger logger = LoggerFactory.getLogger(VertxVaadinService.class);
 
+    /**
+     * Default size, in bytes, of response content buffered before being written to the client.
+     */
+    public static final int DEFAULT_RESPONSE_FLUSH_THRESHOLD = 32 * 1024;
+
+    private static final String REQUEST_START_ATTRIBUTE = VertxVaadinService.class.getName() + ".requestStart";
+
     private final VertxVaadin vertxVaadin;
+    private final SessionContextAffinity sessionContextAffinity;
+    private final VaadinMetricsDispatcher metrics = new VaadinMetricsDispatcher();
+    private Map<VaadinRequestType, List<RequestHandler>> directRequestHandlers = Collections.emptyMap();
 
     public VertxVaadinService(VertxVaadin vertxVaadin, DefaultDeploymentConfiguration deploymentConfiguration) {
         super(deploymentConfiguration);
         this.vertxVaadin = vertxVaadin;
+        this.sessionContextAffinity = new SessionContextAffinity(
+            vertxVaadin.config().getBoolean("sessionContextAffinity", false)
+        );
+    }
+
+    @Override
+    public void init() throws ServiceException {
+        super.init();
+        directRequestHandlers = createDirectRequestHandlers(super.getRequestHandlers());
+        if (sessionContextAffinity.isEnabled()) {
+            addSessionInitListener(event -> sessionContextAffinity.pin(wrappedSessionId(event.getSession())));
+            addSessionDestroyListener(event -> sessionContextAffinity.release(wrappedSessionId(event.getSession())));
+        }
+        addSessionInitListener(event -> metrics.sessionCreated());
+        addSessionDestroyListener(event -> metrics.sessionDestroyed());
+        addServiceDestroyListener(event -> metrics.clear());
+    }
+
+    /**
+     * Registers a listener for the events measured by this service.
+     *
+     * The listener is also registered in {@link com.github.mcollovati.vertx.web.sstore.SessionMetricsRegistry},
+     * so it receives the session events of the whole JVM: sessions are serialized by the cluster manager,
+     * outside of any service, and with several services in the same JVM session events cannot be told apart.
+     * Every other event is specific to this service.
+     *
+     * @param listener the listener
+     * @return a registration handle to remove the listener
+     */
+    public Registration addMetricsListener(VaadinMetrics listener) {
+        return metrics.add(listener);
+    }
+
+    /**
+     * Gets a listener that forwards events to all the registered metrics listeners.
+     *
+     * @return the metrics listener
+     */
+    public VaadinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Checks whether events should be measured.
+     *
+     * @return {@code true} if at least a metrics listener is registered
+     */
+    boolean isMetricsEnabled() {
+        return metrics.isEnabled();
     }
 
     public Vertx getVertx() {
         return vertxVaadin.vertx();
     }
 
+    /**
+     * Gets the amount of response content, in bytes, that is buffered before
+     * being written to the client as a chunk.
+     *
+     * A value less or equal than zero means that the whole response is buffered
+     * and written only when the response ends.
+     *
+     * @return the response flush threshold, in bytes
+     */
+    public int getResponseFlushThreshold() {
+        return vertxVaadin.config().getInteger("responseFlushThreshold", DEFAULT_RESPONSE_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Gets the time, in milliseconds, for which asynchronous pushes are deferred, so that changes
+     * made by consecutive {@code UI.access()} calls are sent to the client in a single push frame.
+     *
+     * A value of zero defers pushes to the end of the current event loop tick; a negative value
+     * disables coalescing, every push is sent immediately.
+     *
+     * @return the push coalescing window, in milliseconds
+     */
+    public int getPushCoalescingWindow() {
+        return vertxVaadin.config().getInteger("pushCoalescingWindow", -1);
+    }
+
+    /**
+     * Gets the name of the session attribute that holds the {@link VaadinSession} for this service.
+     *
+     * @return the name of the Vaadin session attribute
+     */
+    String getVaadinSessionAttributeName() {
+        return getSessionAttributeName();
+    }
+
+    @Override
+    public void requestStart(VaadinRequest request, VaadinResponse response) {
+        if (metrics.isEnabled()) {
+            request.setAttribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+        }
+        super.requestStart(request, response);
+        markSessionModified(request);
+    }
+
+    @Override
+    public void requestEnd(VaadinRequest request, VaadinResponse response, VaadinSession session) {
+        // Response headers, and so the session, may have been written while the request was processed
+        markSessionModified(request);
+        super.requestEnd(request, response, session);
+        Object start = request.getAttribute(REQUEST_START_ATTRIBUTE);
+        if (start instanceof Long && request instanceof VertxVaadinRequest) {
+            request.removeAttribute(REQUEST_START_ATTRIBUTE);
+            metrics.requestProcessed(VaadinRequestType.of((VertxVaadinRequest) request),
+                System.nanoTime() - (Long) start);
+        }
+    }
+
+    private void markSessionModified(VaadinRequest request) {
+        if (request instanceof VertxVaadinRequest
+            && VaadinRequestType.of((VertxVaadinRequest) request).isModifyingSession()) {
+            Session session = ((VertxVaadinRequest) request).getRoutingContext().session();
+            if (session != null) {
+                markSessionModified(session);
+            }
+        }
+    }
+
+    private void markSessionModified(Session session) {
+        // VaadinSession is changed in place, without being set again as attribute
+        if (session instanceof ExtendedSessionImpl) {
+            ((ExtendedSessionImpl) session).markAttributeModified(getVaadinSessionAttributeName());
+        }
+        vertxVaadin.sessionModified(session.id());
+    }
+
+    /**
+     * Marks the session as modified after {@link UI#access(Runnable)} tasks have been run, since
+     * they may change it outside of modifying requests; when there is no current request,
+     * for example for tasks run by background threads, the session is written immediately.
+     */
+    @Override
+    public void runPendingAccessTasks(VaadinSession session) {
+        boolean hasPendingTasks = !session.getPendingAccessQueue().isEmpty();
+        super.runPendingAccessTasks(session);
+        if (hasPendingTasks && session.getSession() instanceof VertxWrappedSession) {
+            Session vertxSession = ((VertxWrappedSession) session.getSession()).getVertxSession();
+            if (vertxSession.isDestroyed()) {
+                // tasks run while the session is invalidated, it must not be written back
+                return;
+            }
+            markSessionModified(vertxSession);
+            if (VaadinService.getCurrentRequest() == null) {
+                vertxVaadin.writeSession(vertxSession);
+            }
+        }
+    }
+
+    /**
+     * Gets the component that pins Vaadin sessions to the Vert.x context that created them.
+     *
+     * @return the session context affinity
+     */
+    public SessionContextAffinity getSessionContextAffinity() {
+        return sessionContextAffinity;
+    }
+
+    /**
+     * Runs pending access tasks on the context pinned for the session, so that
+     * {@link UI#access(Runnable)} calls from background threads do not contend
+     * with requests for the session lock.
+     */
+    @Override
+    public void ensureAccessQueuePurged(VaadinSession session) {
+        if (metrics.isEnabled() && !session.getPendingAccessQueue().isEmpty()) {
+            metrics.accessQueueDepth(session.getPendingAccessQueue().size());
+        }
+        if (sessionContextAffinity.isEnabled() && !session.getPendingAccessQueue().isEmpty()) {
+            sessionContextAffinity.dispatch(wrappedSessionId(session), () -> super.ensureAccessQueuePurged(session));
+        } else {
+            super.ensureAccessQueuePurged(session);
+        }
+    }
+
+    /**
+     * Gets the request handlers for the current request.
+     *
+     * If the current request has been classified with a type handled by a specific handler,
+     * that handler is tried first, so that the whole chain is not traversed.
+     * The remaining handlers follow, in their original order, as a fallback.
+     */
+    @Override
+    public Iterable<RequestHandler> getRequestHandlers() {
+        VaadinRequest request = VaadinService.getCurrentRequest();
+        if (request instanceof VertxVaadinRequest) {
+            List<RequestHandler> handlers = directRequestHandlers.get(VaadinRequestType.of((VertxVaadinRequest) request));
+            if (handlers != null) {
+                return handlers;
+            }
+        }
+        return super.getRequestHandlers();
+    }
+
+    private static Map<VaadinRequestType, List<RequestHandler>> createDirectRequestHandlers(
+        Iterable<RequestHandler> handlers
+    ) {
+        List<RequestHandler> chain = new ArrayList<>();
+        handlers.forEach(chain::add);
+        Map<VaadinRequestType, List<RequestHandler>> directHandlers = new EnumMap<>(VaadinRequestType.class);
+        for (VaadinRequestType type : VaadinRequestType.values()) {
+            type.handlerType()
+                .flatMap(handlerType -> chain.stream().filter(handlerType::isInstance).findFirst())
+                .ifPresent(handler -> {
+                    List<RequestHandler> direct = new ArrayList<>(chain.size());
+                    direct.add(handler);
+                    chain.stream().filter(h -> h != handler).forEach(direct::add);
+                    directHandlers.put(type, Collections.unmodifiableList(direct));
+                });
+        }
+        return directHandlers;
+    }
+
     @Override
     protected List<RequestHandler> createRequestHandlers()
         throws ServiceException {
         List<RequestHandler> handlers = super.createRequestHandlers();
         handlers.add(0, new VertxBootstrapHandler());
-        handlers.add(new ServletUIInitHandler());
+        handlers.add(new ServletUIInitHandler() {
+            @Override
+            protected String getInitialUidl(VaadinRequest request, UI ui) throws IOException {
+                // UIs are reinitialized on refresh, when preserved
+                if (metrics.isEnabled() && ui.getListeners(DetachEvent.class).stream()
+                    .noneMatch(UIDetachMetrics.class::isInstance)) {
+                    metrics.uiCreated();
+                    ui.addDetachListener(new UIDetachMetrics());
+                }
+                return super.getInitialUidl(request, ui);
+            }
+        });
         return handlers;
     }
 
@@ -123,34 +365,14 @@ public class VertxVaadinService extends VaadinService {
         return new File(".");
     }
 
-    // From VaadinServletService
+    // Adapted from VaadinServletService
     @Override
     protected boolean requestCanCreateSession(VaadinRequest request) {
-        if (ServletUIInitHandler.isUIInitRequest(request)) {
-            // This is the first request if you are embedding by writing the
-            // embedding code yourself
-            return true;
-        } else if (isOtherRequest(request)) {
-            /*
-             * I.e URIs that are not RPC calls or static (theme) files.
-             */
-            return true;
-        }
-
-        return false;
-    }
-
-    // From VaadinServletService
-    private boolean isOtherRequest(VaadinRequest request) {
-        // TODO This should be refactored in some way. It should not be
-        // necessary to check all these types.
-        return (!ServletPortletHelper.isAppRequest(request)
-            && !ServletUIInitHandler.isUIInitRequest(request)
-            && !ServletPortletHelper.isFileUploadRequest(request)
-            && !ServletPortletHelper.isHeartbeatRequest(request)
-            && !ServletPortletHelper.isPublishedFileRequest(request)
-            && !ServletPortletHelper.isUIDLRequest(request) && !ServletPortletHelper
-            .isPushRequest(request));
+        VaadinRequestType requestType = VaadinRequestType.of((VertxVaadinRequest) request);
+        // UI init is the first request if you are embedding by writing the
+        // embedding code yourself; other requests are URIs that are not
+        // RPC calls or static (theme) files.
+        return requestType == VaadinRequestType.UI_INIT || requestType == VaadinRequestType.OTHER;
     }
 
     @Override
@@ -225,6 +447,24 @@ public class VertxVaadinService extends VaadinService {
         return getCancelingRelativePath(servletPath);
     }
 
+    private static String wrappedSessionId(VaadinSession session) {
+        return Optional.ofNullable(session.getSession()).map(WrappedSession::getId).orElse(null);
+    }
+
+    /**
+     * Reports detached UIs; it looks up the service on detach, since listeners are serialized with the UI.
+     */
+    private static final class UIDetachMetrics implements ClientConnector.DetachListener {
+
+        @Override
+        public void detach(DetachEvent event) {
+            VaadinService service = VaadinService.getCurrent();
+            if (service instanceof VertxVaadinService) {
+                ((VertxVaadinService) service).metrics.uiDestroyed();
+            }
+        }
+    }
+
     // Just to avoid direct calls to VaadinServletService
     // from outside VertxVaadinService
     public static String getCancelingRelativePath(String servletPath) {
@@ -27,14 +27,17 @@ import javax.servlet.http.HttpSession;
 import javax.servlet.http.HttpSessionBindingEvent;
 import javax.servlet.http.HttpSessionBindingListener;
 import javax.servlet.http.HttpSessionContext;
+import java.util.AbstractMap;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
 import com.github.mcollovati.vertx.web.ExtendedSession;
+import com.github.mcollovati.vertx.web.sstore.SerializedAttribute;
 import com.vaadin.server.WrappedSession;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -96,7 +99,8 @@ public class VertxWrappedSession implements WrappedSession {
     // TODO: catch HttpSessionBindingListener exceptions?
     public void invalidate() {
         checkSessionState();
-        Map<String, HttpSessionBindingListener> toUnbind = delegate.data().entrySet().stream()
+        Map<String, HttpSessionBindingListener> toUnbind = new HashMap<>(delegate.data()).entrySet().stream()
+            .map(entry -> deserialized(entry.getKey(), entry.getValue()))
             .filter( entry -> HttpSessionBindingListener.class.isInstance(entry.getValue()))
             .collect(toMap(Map.Entry::getKey, e -> HttpSessionBindingListener.class.cast(e.getValue())));
         delegate.destroy();
@@ -133,6 +137,17 @@ public class VertxWrappedSession implements WrappedSession {
             .ifPresent(oldValue -> oldValue.valueUnbound(createHttpSessionBindingEvent(name, oldValue)));
     }
 
+    /**
+     * Deserializes attributes read from the cluster and not yet accessed,
+     * that may be binding listeners.
+     */
+    private Map.Entry<String, Object> deserialized(String name, Object value) {
+        if (value instanceof SerializedAttribute) {
+            return new AbstractMap.SimpleImmutableEntry<>(name, delegate.get(name));
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(name, value);
+    }
+
     private void checkSessionState() {
         if (delegate.isDestroyed()) {
             throw new IllegalStateException("Session already invalidated");
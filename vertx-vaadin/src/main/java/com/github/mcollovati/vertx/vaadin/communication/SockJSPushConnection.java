@@ -22,6 +22,7 @@
  */
 package com.github.mcollovati.vertx.vaadin.communication;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -32,10 +33,15 @@ import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.github.mcollovati.vertx.vaadin.VertxVaadinService;
+import com.vaadin.server.VaadinService;
 import com.vaadin.server.VaadinSession;
 import com.vaadin.server.communication.PushConnection;
 import com.vaadin.server.communication.UidlWriter;
 import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 
 public class SockJSPushConnection implements PushConnection {
@@ -44,6 +50,7 @@ public class SockJSPushConnection implements PushConnection {
     private PushSocket socket;
     private State state = State.DISCONNECTED;
     private transient Future<?> outgoingMessage;
+    private transient boolean flushScheduled;
 
     public SockJSPushConnection(UI ui) {
         this.uiId = ui.getUIId();
@@ -69,15 +76,82 @@ public class SockJSPushConnection implements PushConnection {
             } else {
                 state = State.RESPONSE_PENDING;
             }
-        } else {
+        } else if (!async || !coalesce()) {
+            send(async);
+        }
+    }
+
+    private void send(boolean async) {
+        // Every pending change is sent, including the ones of a deferred push
+        flushScheduled = false;
+        try {
+            UI ui = VaadinSession.getCurrent().getUIById(this.uiId);
+            sendMessage("for(;;);[{" + writeUidl(ui, async) + "}]");
+        } catch (Exception e) {
+            throw new RuntimeException("Push failed", e);
+        }
+    }
+
+    String writeUidl(UI ui, boolean async) throws IOException {
+        Writer writer = new StringWriter();
+        new UidlWriter().write(ui, writer, async);
+        return writer.toString();
+    }
+
+    /**
+     * Defers an asynchronous push if coalescing is enabled by
+     * {@link VertxVaadinService#getPushCoalescingWindow()}; changes of pushes
+     * requested before the deferred push is flushed are sent in the same frame.
+     *
+     * @return true if the push has been deferred
+     */
+    private boolean coalesce() {
+        VaadinSession session = VaadinSession.getCurrent();
+        VaadinService service = session.getService();
+        if (!(service instanceof VertxVaadinService)) {
+            return false;
+        }
+        VertxVaadinService vertxService = (VertxVaadinService) service;
+        int window = vertxService.getPushCoalescingWindow();
+        if (window < 0) {
+            return false;
+        }
+        if (flushScheduled) {
+            vertxService.getMetrics().pushFrameCoalesced();
+            return true;
+        }
+        UI ui = session.getUIById(this.uiId);
+        if (ui == null) {
+            return false;
+        }
+        flushScheduled = true;
+        Handler<Void> flush = unused -> {
             try {
-                UI ui = VaadinSession.getCurrent().getUIById(this.uiId);
-                Writer writer = new StringWriter();
-                new UidlWriter().write(ui, writer, async);
-                sendMessage("for(;;);[{" + writer + "}]");
-            } catch (Exception e) {
-                throw new RuntimeException("Push failed", e);
+                ui.access(() -> flush(vertxService));
+            } catch (UIDetachedException e) {
+                getLogger().log(Level.FINE, "UI detached before deferred push", e);
             }
+        };
+        Vertx vertx = vertxService.getVertx();
+        if (window == 0) {
+            vertx.runOnContext(flush);
+        } else {
+            vertx.setTimer(window, id -> flush.handle(null));
+        }
+        return true;
+    }
+
+    private void flush(VertxVaadinService service) {
+        if (!flushScheduled) {
+            // Already sent by a response or by an immediate push
+            service.getMetrics().pushFrameCoalesced();
+            return;
+        }
+        if (isConnected()) {
+            send(true);
+        } else {
+            flushScheduled = false;
+            push(true);
         }
     }
 
@@ -37,6 +37,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.github.mcollovati.vertx.http.HttpServerResponseWrapper;
+import com.github.mcollovati.vertx.vaadin.VaadinMetrics;
 import com.github.mcollovati.vertx.vaadin.VertxVaadinRequest;
 import com.github.mcollovati.vertx.vaadin.VertxVaadinService;
 import com.vaadin.server.ErrorEvent;
@@ -57,6 +58,7 @@ import com.vaadin.shared.communication.PushMode;
 import com.vaadin.ui.UI;
 import com.vaadin.util.CurrentInstance;
 import elemental.json.JsonException;
+import io.vertx.core.Context;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
@@ -178,31 +180,48 @@ public class SockJSPushHandler implements Handler<RoutingContext> {
 
         String uuid = sockJSSocket.writeHandlerID();
         connectedSocketsLocalMap.put(uuid, sockJSSocket);
-        PushSocket socket = new PushSocketImpl(sockJSSocket);
+        PushSocket socket = new PushSocketImpl(sockJSSocket, service.getMetrics());
+        service.getMetrics().pushSocketOpened();
 
         initSocket(sockJSSocket, routingContext, socket);
 
         // Send an ACK
         socket.send("ACK-CONN|" + uuid);
 
-        sessionHandler.handle(new SockJSRoutingContext(routingContext, rc ->
-            callWithUi(new PushEvent(socket, routingContext, null), establishCallback)
-        ));
+        handleWithSession(routingContext, rc -> callWithUi(new PushEvent(socket, routingContext, null), establishCallback));
     }
 
     private void initSocket(SockJSSocket sockJSSocket, RoutingContext routingContext, PushSocket socket) {
-        sockJSSocket.handler(data -> sessionHandler.handle(
-            new SockJSRoutingContext(routingContext, rc -> onMessage(new PushEvent(socket, rc, data)))
-        ));
-        sockJSSocket.endHandler(unused -> sessionHandler.handle(
-            new SockJSRoutingContext(routingContext, rc -> onDisconnect(new PushEvent(socket, rc, null)))
+        sockJSSocket.handler(data -> handleWithSession(
+            routingContext, rc -> onMessage(new PushEvent(socket, rc, data))
         ));
-        sockJSSocket.exceptionHandler(t -> sessionHandler.handle(
-            new SockJSRoutingContext(routingContext, rc -> onError(new PushEvent(socket, routingContext, null), t))
+        sockJSSocket.endHandler(unused -> {
+            service.getMetrics().pushSocketClosed();
+            handleWithSession(routingContext, rc -> onDisconnect(new PushEvent(socket, rc, null)));
+        });
+        sockJSSocket.exceptionHandler(t -> handleWithSession(
+            routingContext, rc -> onError(new PushEvent(socket, routingContext, null), t)
         ));
 
     }
 
+    /**
+     * Runs the action once the session has been resolved, on the context pinned for the session;
+     * the session is stored only after the action completes.
+     */
+    private void handleWithSession(RoutingContext routingContext, Handler<RoutingContext> action) {
+        sessionHandler.handle(new SockJSRoutingContext(routingContext, rc -> {
+            String sessionId = Optional.ofNullable(rc.session()).map(Session::id).orElse(null);
+            service.getSessionContextAffinity().dispatch(sessionId, () -> {
+                try {
+                    action.handle(rc);
+                } finally {
+                    ((SockJSRoutingContext) rc).end();
+                }
+            });
+        }));
+    }
+
     private void onDisconnect(PushEvent ev) {
         connectedSocketsLocalMap.remove(ev.socket.getUUID());
         connectionLost(ev);
@@ -505,10 +524,12 @@ public class SockJSPushHandler implements Handler<RoutingContext> {
 
         private final String socketUUID;
         private final String remoteAddress;
+        private final VaadinMetrics metrics;
 
-        PushSocketImpl(SockJSSocket socket) {
+        PushSocketImpl(SockJSSocket socket, VaadinMetrics metrics) {
             this.socketUUID = socket.writeHandlerID();
             this.remoteAddress = socket.remoteAddress().toString();
+            this.metrics = metrics;
         }
 
         @Override
@@ -524,7 +545,9 @@ public class SockJSPushHandler implements Handler<RoutingContext> {
         @Override
         public CompletionStage<?> send(String message) {
             return runCommand(socket -> {
-                socket.write(Buffer.buffer(message));
+                Buffer frame = Buffer.buffer(message);
+                socket.write(frame);
+                metrics.pushFrameSent(frame.length());
                 return Boolean.TRUE;
             });
         }
@@ -549,7 +572,10 @@ public class SockJSPushHandler implements Handler<RoutingContext> {
         // Should run sync to avoid hanging on vaadin session
         private <T> CompletableFuture<T> runCommand(Function<SockJSSocket, T> action) {
             CompletableFuture<T> future = new CompletableFuture<>();
-            Vertx vertx = Vertx.currentContext().owner();
+            // Commands may be issued from threads without a Vert.x context,
+            // for example when requests are processed on virtual threads
+            Vertx vertx = Optional.ofNullable(Vertx.currentContext()).map(Context::owner)
+                .orElseGet(() -> ((VertxVaadinService) VaadinService.getCurrent()).getVertx());
             SockJSSocket socket = SockJSPushHandler.socketsMap(vertx).get(socketUUID);
             if (socket != null) {
                 try {
@@ -622,10 +648,15 @@ class SockJSRoutingContext extends RoutingContextDecorator {
 
     @Override
     public void next() {
-        vertx().runOnContext(future -> {
-            action.handle(this);
-            headersEndHandlers.forEach(h -> h.handle(null));
-        });
+        vertx().runOnContext(future -> action.handle(this));
+    }
+
+    /**
+     * Notifies that the push event has been handled, running headers end handlers
+     * (e.g. the one that stores the session).
+     */
+    void end() {
+        headersEndHandlers.forEach(h -> h.handle(null));
     }
 
     @Override
@@ -39,6 +39,17 @@ public interface ExtendedSession extends Session {
      */
     long createdAt();
 
+    /**
+     * Marks the session as accessed at the given time, if it has not been accessed later.
+     *
+     * The default implementation marks the session as accessed now.
+     *
+     * @param lastAccessed the access time, in milliseconds since 1/1/1970 GMT
+     */
+    default void setAccessed(long lastAccessed) {
+        setAccessed();
+    }
+
     /**
      * Add a handler that will be called after session expires.
      *
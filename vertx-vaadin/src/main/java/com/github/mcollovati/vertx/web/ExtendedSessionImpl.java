@@ -22,9 +22,19 @@
  */
 package com.github.mcollovati.vertx.web;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.github.mcollovati.vertx.web.sstore.SerializedAttribute;
+import com.github.mcollovati.vertx.web.sstore.SessionCodec;
+import com.github.mcollovati.vertx.web.sstore.SessionCodecs;
+import com.github.mcollovati.vertx.web.sstore.SessionMetrics;
+import com.github.mcollovati.vertx.web.sstore.SessionMetricsRegistry;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.shareddata.Shareable;
@@ -37,10 +47,20 @@ import io.vertx.ext.web.sstore.impl.SessionImpl;
  */
 public class ExtendedSessionImpl extends SessionImpl implements ExtendedSession, Shareable, ClusterSerializable {
 
+    /**
+     * Marks sessions whose attributes are written by a {@link SessionCodec};
+     * legacy sessions start with the creation time, whose first byte is zero.
+     */
+    private static final byte FORMAT_HEADER = (byte) 0xC5;
+
     protected Session delegate;
     private long createdAt;
     private Map<Integer, Handler<Void>> headersEndHandlers;
     private AtomicInteger handlerSeq = new AtomicInteger();
+    private final Set<String> modifiedAttributes = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile SessionCodec codec;
+    private volatile long accessedAt;
 
     public ExtendedSessionImpl() {
         this.delegate = new SessionImpl();
@@ -49,6 +69,9 @@ public class ExtendedSessionImpl extends SessionImpl implements ExtendedSession,
     public ExtendedSessionImpl(Session delegate) {
         this.delegate = delegate;
         this.createdAt = System.currentTimeMillis();
+        if (delegate instanceof SessionImpl) {
+            this.version.set(((SessionImpl) delegate).version());
+        }
     }
 
     @Override
@@ -68,17 +91,68 @@ public class ExtendedSessionImpl extends SessionImpl implements ExtendedSession,
 
     @Override
     public Session put(String key, Object obj) {
+        modifiedAttributes.add(key);
         return delegate.put(key, obj);
     }
 
     @Override
     public <T> T get(String key) {
-        return delegate.get(key);
+        Object value = delegate.get(key);
+        if (value instanceof SerializedAttribute) {
+            Object deserialized = ((SerializedAttribute) value).deserialize();
+            delegate.data().replace(key, value, deserialized);
+            value = deserialized;
+        }
+        return (T) value;
     }
 
     @Override
     public <T> T remove(String key) {
-        return delegate.remove(key);
+        modifiedAttributes.add(key);
+        Object value = delegate.remove(key);
+        if (value instanceof SerializedAttribute) {
+            value = ((SerializedAttribute) value).deserialize();
+        }
+        return (T) value;
+    }
+
+    /**
+     * Marks an attribute as modified, for objects changed in place
+     * without being put again in the session.
+     *
+     * @param key the attribute name
+     */
+    public void markAttributeModified(String key) {
+        modifiedAttributes.add(key);
+    }
+
+    /**
+     * Checks whether attributes have been put, removed or marked as modified
+     * since the last call to {@link #takeModifiedAttributes()}.
+     *
+     * @return {@code true} if there are modified attributes
+     */
+    public boolean hasModifiedAttributes() {
+        return !modifiedAttributes.isEmpty();
+    }
+
+    /**
+     * Gets the names of attributes put, removed or marked as modified
+     * since the last call, and resets the modification tracking.
+     *
+     * @return the names of the modified attributes
+     */
+    public Set<String> takeModifiedAttributes() {
+        if (modifiedAttributes.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> modified = new HashSet<>();
+        for (String key : modifiedAttributes) {
+            if (modifiedAttributes.remove(key)) {
+                modified.add(key);
+            }
+        }
+        return modified;
     }
 
     @Override
@@ -88,7 +162,7 @@ public class ExtendedSessionImpl extends SessionImpl implements ExtendedSession,
 
     @Override
     public long lastAccessed() {
-        return delegate.lastAccessed();
+        return Math.max(delegate.lastAccessed(), accessedAt);
     }
 
     @Override
@@ -111,6 +185,49 @@ public class ExtendedSessionImpl extends SessionImpl implements ExtendedSession,
         delegate.setAccessed();
     }
 
+    @Override
+    public void setAccessed(long lastAccessed) {
+        // the delegate can only be marked as accessed now
+        if (lastAccessed > accessedAt) {
+            accessedAt = lastAccessed;
+        }
+    }
+
+    @Override
+    public int version() {
+        return version.get();
+    }
+
+    /**
+     * Increments the session version.
+     *
+     * Unlike {@link SessionImpl}, the version is incremented without serializing
+     * session data to check whether it has been changed.
+     */
+    @Override
+    public void incrementVersion() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Sets the codec used to write session attributes; it must be registered in {@link SessionCodecs}
+     * on every node reading the session.
+     *
+     * @param codec the codec, or null to write the session in the legacy format
+     */
+    public void setCodec(SessionCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Gets the codec used to write session attributes.
+     *
+     * @return the codec, or null if the session is written in the legacy format
+     */
+    public SessionCodec codec() {
+        return codec;
+    }
+
     @Override
     public long createdAt() {
         return createdAt;
@@ -134,13 +251,79 @@ public class ExtendedSessionImpl extends SessionImpl implements ExtendedSession,
 
     @Override
     public void writeToBuffer(Buffer buffer) {
+        if (!SessionMetricsRegistry.isEnabled()) {
+            write(buffer);
+            return;
+        }
+        int start = buffer.length();
+        long begin = System.nanoTime();
+        write(buffer);
+        SessionMetrics metrics = SessionMetricsRegistry.listeners();
+        metrics.sessionSerialized(buffer.length() - start, System.nanoTime() - begin);
+        if (SessionMetricsRegistry.shouldSampleAttributes()) {
+            metrics.attributesSampled(SessionMetricsRegistry.measureAttributes(data(), codec));
+        }
+    }
+
+    private void write(Buffer buffer) {
+        SessionCodec codec = this.codec;
+        if (codec == null) {
+            // the legacy format cannot hold attributes not yet deserialized
+            new HashSet<>(delegate.data().keySet()).forEach(this::get);
+            buffer.appendLong(createdAt);
+            int start = buffer.length();
+            ((ClusterSerializable) delegate).writeToBuffer(buffer);
+            if (delegate instanceof SessionImpl) {
+                // store access time and version in the SessionImpl layout, so that the format is unchanged
+                int lastAccessedPos = start + 4 + buffer.getInt(start) + 8;
+                buffer.setLong(lastAccessedPos, lastAccessed());
+                buffer.setInt(lastAccessedPos + 8, version.get());
+            }
+            return;
+        }
+        buffer.appendByte(FORMAT_HEADER);
+        buffer.appendByte(codec.formatId());
         buffer.appendLong(createdAt);
-        ((ClusterSerializable) delegate).writeToBuffer(buffer);
+        // SessionImpl layout without attributes, so that it can be read by the delegate
+        byte[] id = id().getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(id.length).appendBytes(id);
+        buffer.appendLong(timeout());
+        buffer.appendLong(lastAccessed());
+        buffer.appendInt(version.get());
+        buffer.appendInt(0);
+        Buffer data = codec.encode(data());
+        buffer.appendInt(data.length());
+        buffer.appendBuffer(data);
     }
 
     @Override
     public int readFromBuffer(int pos, Buffer buffer) {
-        createdAt = buffer.getLong(pos);
-        return ((ClusterSerializable) delegate).readFromBuffer(pos + 8, buffer);
+        if (!SessionMetricsRegistry.isEnabled()) {
+            return read(pos, buffer);
+        }
+        long begin = System.nanoTime();
+        int end = read(pos, buffer);
+        SessionMetricsRegistry.listeners().sessionDeserialized(end - pos, System.nanoTime() - begin);
+        return end;
+    }
+
+    private int read(int pos, Buffer buffer) {
+        accessedAt = 0;
+        if (buffer.getByte(pos) != FORMAT_HEADER) {
+            createdAt = buffer.getLong(pos);
+            pos = ((ClusterSerializable) delegate).readFromBuffer(pos + 8, buffer);
+            if (delegate instanceof SessionImpl) {
+                version.set(((SessionImpl) delegate).version());
+            }
+            return pos;
+        }
+        SessionCodec codec = SessionCodecs.forFormat(buffer.getByte(pos + 1));
+        createdAt = buffer.getLong(pos + 2);
+        pos = ((ClusterSerializable) delegate).readFromBuffer(pos + 10, buffer);
+        version.set(((SessionImpl) delegate).version());
+        int length = buffer.getInt(pos);
+        pos += 4;
+        delegate.data().putAll(codec.decodeLazily(buffer.getBuffer(pos, pos + length)));
+        return pos + length;
     }
 }
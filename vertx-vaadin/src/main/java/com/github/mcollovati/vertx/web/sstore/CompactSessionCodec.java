@@ -0,0 +1,444 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.shareddata.impl.ClusterSerializable;
+
+/**
+ * Compact binary {@link SessionCodec}.
+ *
+ * Every attribute value is encoded on its own, so that values never deserialized
+ * can be written back as they were read; lengths and integers are written as varints.
+ * Serializable values are written with Java serialization, but class descriptors are replaced
+ * by the class name, written once per value, so nodes must share the same version of session classes.
+ *
+ * When the encoded attributes, taken together, are larger than the compression threshold,
+ * the whole payload is deflated at once; attributes are never compressed one by one.
+ */
+class CompactSessionCodec implements SessionCodec {
+
+    static final byte FORMAT_ID = 1;
+
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATED = 1;
+
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_SHORT = 3;
+    private static final byte TYPE_BYTE = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_CHAR = 7;
+    private static final byte TYPE_TRUE = 8;
+    private static final byte TYPE_FALSE = 9;
+    private static final byte TYPE_STRING = 10;
+    private static final byte TYPE_BUFFER = 11;
+    private static final byte TYPE_BYTES = 12;
+    private static final byte TYPE_CLUSTER_SERIALIZABLE = 13;
+    private static final byte TYPE_SERIALIZABLE = 14;
+
+    private final int compressionThreshold;
+
+    CompactSessionCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte formatId() {
+        return FORMAT_ID;
+    }
+
+    @Override
+    public Buffer encode(Map<String, Object> data) {
+        Output body = new Output();
+        body.writeVarint(data.size());
+        data.forEach((name, value) -> {
+            body.writeLengthPrefixed(name.getBytes(StandardCharsets.UTF_8));
+            body.writeLengthPrefixed(encodeValue(value));
+        });
+
+        if (body.size() > compressionThreshold) {
+            Output compressed = new Output();
+            compressed.write(DEFLATED);
+            compressed.writeVarint(body.size());
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(body.buffer(), 0, body.size());
+                deflater.finish();
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+                }
+            } finally {
+                deflater.end();
+            }
+            return Buffer.buffer(compressed.toByteArray());
+        }
+        Output plain = new Output();
+        plain.write(PLAIN);
+        plain.write(body.buffer(), 0, body.size());
+        return Buffer.buffer(plain.toByteArray());
+    }
+
+    @Override
+    public Map<String, Object> decode(Buffer buffer) {
+        return decode(buffer, false);
+    }
+
+    /**
+     * Decodes session attributes, keeping serializable values as {@link SerializedAttribute}s.
+     */
+    @Override
+    public Map<String, Object> decodeLazily(Buffer buffer) {
+        return decode(buffer, true);
+    }
+
+    private Map<String, Object> decode(Buffer buffer, boolean lazy) {
+        Input input = new Input(body(buffer.getBytes()));
+        int count = input.readVarint();
+        Map<String, Object> data = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String name = new String(input.readBytes(), StandardCharsets.UTF_8);
+            byte[] value = input.readBytes();
+            if (lazy && (value[0] == TYPE_SERIALIZABLE || value[0] == TYPE_CLUSTER_SERIALIZABLE)) {
+                data.put(name, new SerializedAttribute(FORMAT_ID, value, CompactSessionCodec::decodeValue));
+            } else {
+                data.put(name, decodeValue(value));
+            }
+        }
+        return data;
+    }
+
+    private static byte[] body(byte[] bytes) {
+        if (bytes[0] == PLAIN) {
+            byte[] body = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, body, 0, body.length);
+            return body;
+        }
+        Input input = new Input(bytes);
+        input.read();
+        byte[] body = new byte[input.readVarint()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, input.pos, bytes.length - input.pos);
+            int length = 0;
+            while (length < body.length && !inflater.finished()) {
+                length += inflater.inflate(body, length, body.length - length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Cannot decompress session attributes", ex);
+        } finally {
+            inflater.end();
+        }
+        return body;
+    }
+
+    private static byte[] encodeValue(Object value) {
+        if (value instanceof SerializedAttribute) {
+            SerializedAttribute serialized = (SerializedAttribute) value;
+            if (serialized.formatId() == FORMAT_ID) {
+                return serialized.bytes();
+            }
+            value = serialized.deserialize();
+        }
+        Output out = new Output();
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    private static Object decodeValue(byte[] bytes) {
+        return readValue(new Input(bytes));
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value instanceof Long) {
+            out.write(TYPE_LONG);
+            out.writeVarlong(zigZag((Long) value));
+        } else if (value instanceof Integer) {
+            out.write(TYPE_INT);
+            out.writeVarlong(zigZag((Integer) value));
+        } else if (value instanceof Short) {
+            out.write(TYPE_SHORT);
+            out.writeVarlong(zigZag((Short) value));
+        } else if (value instanceof Byte) {
+            out.write(TYPE_BYTE);
+            out.write((Byte) value);
+        } else if (value instanceof Double) {
+            out.write(TYPE_DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.write(TYPE_FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Character) {
+            out.write(TYPE_CHAR);
+            out.writeVarint((Character) value);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof String) {
+            out.write(TYPE_STRING);
+            out.writeLengthPrefixed(((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Buffer) {
+            out.write(TYPE_BUFFER);
+            out.writeLengthPrefixed(((Buffer) value).getBytes());
+        } else if (value instanceof byte[]) {
+            out.write(TYPE_BYTES);
+            out.writeLengthPrefixed((byte[]) value);
+        } else if (value instanceof ClusterSerializable) {
+            out.write(TYPE_CLUSTER_SERIALIZABLE);
+            out.writeLengthPrefixed(value.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            Buffer buffer = Buffer.buffer();
+            ((ClusterSerializable) value).writeToBuffer(buffer);
+            out.writeLengthPrefixed(buffer.getBytes());
+        } else if (value instanceof Serializable) {
+            out.write(TYPE_SERIALIZABLE);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new CompactObjectOutputStream(bytes)) {
+                objectOut.writeObject(value);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot serialize session attribute", ex);
+            }
+            out.writeLengthPrefixed(bytes.toByteArray());
+        } else {
+            throw new IllegalStateException("Invalid type for data in session: " + value.getClass());
+        }
+    }
+
+    private static Object readValue(Input in) {
+        byte type = (byte) in.read();
+        switch (type) {
+            case TYPE_LONG:
+                return unZigZag(in.readVarlong());
+            case TYPE_INT:
+                return (int) unZigZag(in.readVarlong());
+            case TYPE_SHORT:
+                return (short) unZigZag(in.readVarlong());
+            case TYPE_BYTE:
+                return (byte) in.read();
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TYPE_FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case TYPE_CHAR:
+                return (char) in.readVarint();
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_STRING:
+                return new String(in.readBytes(), StandardCharsets.UTF_8);
+            case TYPE_BUFFER:
+                return Buffer.buffer(in.readBytes());
+            case TYPE_BYTES:
+                return in.readBytes();
+            case TYPE_CLUSTER_SERIALIZABLE:
+                return readClusterSerializable(new String(in.readBytes(), StandardCharsets.UTF_8), in.readBytes());
+            case TYPE_SERIALIZABLE:
+                return readSerializable(in.readBytes());
+            default:
+                throw new IllegalStateException("Invalid type for data in session: " + type);
+        }
+    }
+
+    private static Object readClusterSerializable(String className, byte[] bytes) {
+        try {
+            ClusterSerializable value = (ClusterSerializable) loadClass(className).newInstance();
+            value.readFromBuffer(0, Buffer.buffer(bytes));
+            return value;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot deserialize session attribute", ex);
+        }
+    }
+
+    private static Object readSerializable(byte[] bytes) {
+        try (ObjectInputStream in = new CompactObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (ClassNotFoundException | IOException ex) {
+            throw new IllegalStateException("Cannot deserialize session attribute", ex);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static Class<?> loadClass(String className) throws ClassNotFoundException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = CompactSessionCodec.class.getClassLoader();
+        }
+        return Class.forName(className, false, classLoader);
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                write(value >>> shift);
+            }
+        }
+
+        void writeLengthPrefixed(byte[] bytes) {
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private int pos;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            return bytes[pos++] & 0xFF;
+        }
+
+        int readVarint() {
+            return (int) readVarlong();
+        }
+
+        long readVarlong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = readVarint();
+            byte[] value = new byte[length];
+            System.arraycopy(bytes, pos, value, 0, length);
+            pos += length;
+            return value;
+        }
+    }
+
+    /**
+     * Writes class descriptors as class names; descriptors already written in the stream
+     * are referenced by handle.
+     */
+    private static final class CompactObjectOutputStream extends ObjectOutputStream {
+
+        CompactObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() {
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            writeUTF(desc.getName());
+        }
+    }
+
+    /**
+     * Reads class descriptors written by {@link CompactObjectOutputStream},
+     * resolving classes with the context class loader.
+     */
+    private static final class CompactObjectInputStream extends ObjectInputStream {
+
+        CompactObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected void readStreamHeader() {
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            return ObjectStreamClass.lookupAny(loadClass(readUTF()));
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return loadClass(desc.getName());
+            } catch (ClassNotFoundException ex) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.vertx.ext.web.Session;
+
+/**
+ * Deadline ordered index of sessions, used by reapers to find expired sessions
+ * without scanning the whole session map.
+ *
+ * Sessions are grouped in buckets of {@code tick} milliseconds by the time they are due to expire.
+ * A session is scheduled only once, so accesses do not touch the index: when its bucket is due
+ * the actual deadline is checked again and the session is rescheduled if it has been accessed
+ * in the meantime. Every session is therefore visited about once per timeout, whatever the
+ * number of requests it receives.
+ */
+class ExpirationIndex {
+
+    private final long tick;
+    private final ConcurrentMap<String, Long> scheduled = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, Set<String>> buckets = new TreeMap<>();
+
+    ExpirationIndex(long tick) {
+        this.tick = Math.max(1, tick);
+    }
+
+    /**
+     * Schedules a session to be checked after the given deadline, unless it is already scheduled.
+     */
+    void schedule(String id, long deadline) {
+        if (scheduled.containsKey(id)) {
+            return;
+        }
+        // bucket keys are strictly greater than the deadlines they hold
+        long bucket = (deadline / tick + 1) * tick;
+        synchronized (buckets) {
+            if (scheduled.putIfAbsent(id, bucket) == null) {
+                buckets.computeIfAbsent(bucket, k -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    void remove(String id) {
+        synchronized (buckets) {
+            Long bucket = scheduled.remove(id);
+            if (bucket != null) {
+                Set<String> ids = buckets.get(bucket);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    buckets.remove(bucket);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        synchronized (buckets) {
+            scheduled.clear();
+            buckets.clear();
+        }
+    }
+
+    int size() {
+        return scheduled.size();
+    }
+
+    /**
+     * Checks the sessions whose bucket is due.
+     *
+     * @param now       current time
+     * @param deadlines gets the current deadline of a session, or null if it is no longer stored
+     * @param expired   called for every session whose deadline has passed
+     */
+    void expire(long now, Function<String, Long> deadlines, Consumer<String> expired) {
+        List<String> due = new ArrayList<>();
+        synchronized (buckets) {
+            NavigableMap<Long, Set<String>> dueBuckets = buckets.headMap(now, true);
+            for (Set<String> ids : dueBuckets.values()) {
+                for (String id : ids) {
+                    scheduled.remove(id);
+                    due.add(id);
+                }
+            }
+            dueBuckets.clear();
+        }
+        for (String id : due) {
+            Long deadline = deadlines.apply(id);
+            if (deadline == null) {
+                continue;
+            }
+            if (deadline < now) {
+                expired.accept(id);
+            } else {
+                schedule(id, deadline);
+            }
+        }
+    }
+
+    /**
+     * Gets the time after which the session is expired, or null if there is no session.
+     */
+    static Long deadline(Session session) {
+        return session == null ? null : session.lastAccessed() + session.timeout();
+    }
+}
@@ -22,6 +22,8 @@
  */
 package com.github.mcollovati.vertx.web.sstore;
 
+import java.io.File;
+
 import io.vertx.core.Vertx;
 
 
@@ -41,6 +43,16 @@ public interface ExtendedLocalSessionStore extends ExtendedSessionStore {
      */
     String DEFAULT_SESSION_MAP_NAME = "vertx-web.sessions";
 
+    /**
+     * Enables passivation of idle sessions: sessions not accessed for longer than the idle time
+     * are written to files in the given directory and evicted from memory, until requested again.
+     *
+     * @param idleTime  time, in ms, after which an idle session is passivated; {@code 0} disables passivation
+     * @param directory the directory for passivated sessions
+     * @return a reference to this, so the API can be used fluently
+     */
+    ExtendedLocalSessionStore setPassivation(long idleTime, File directory);
+
     /**
      * Create a session store
      *
@@ -22,9 +22,18 @@
  */
 package com.github.mcollovati.vertx.web.sstore;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
+import com.github.mcollovati.vertx.web.ExtendedSession;
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -33,22 +42,77 @@ import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.Session;
 import io.vertx.ext.web.sstore.LocalSessionStore;
 import io.vertx.ext.web.sstore.impl.LocalSessionStoreImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-class ExtendedLocalSessionStoreImpl implements ExtendedLocalSessionStore {
+/**
+ * Local session store that reaps expired sessions through an {@link ExpirationIndex},
+ * so that every run only checks the sessions due to expire.
+ *
+ * When passivation is enabled, sessions idle for longer than the passivation idle time
+ * are serialized by a {@link SessionPassivator}, on disk or off heap, and evicted from
+ * the local map, until they are requested again. Sessions holding {@link Lock} attributes,
+ * such as the one that guards the {@code VaadinSession}, are passivated only if all the locks
+ * are free, and are held locked while they are serialized. A session stays in the local map
+ * until it has been written; requesting or storing it in the meantime cancels the passivation.
+ */
+class ExtendedLocalSessionStoreImpl implements ExtendedLocalSessionStore, Handler<Long> {
 
+    private static final Logger logger = LoggerFactory.getLogger(ExtendedLocalSessionStoreImpl.class);
 
+    private final Vertx vertx;
+    private final long reaperInterval;
     private final LocalMap<String, Session> localMap;
     private final LocalSessionStore sessionsStore;
+    private final ExpirationIndex expirationIndex;
+    private final ExpirationIndex passivationIndex;
+    // access time of the sessions being passivated, guarded by itself
+    private final Map<String, Long> passivating = new HashMap<>();
+    private volatile SessionPassivator passivator;
+    private volatile long passivationIdleTime;
     private Handler<AsyncResult<String>> expirationHandler = x -> {};
+    private volatile Handler<Session> expiredSessionHandler;
+    private long timerID = -1;
+    private boolean closed;
 
     public ExtendedLocalSessionStoreImpl(Vertx vertx, String sessionMapName, long reaperInterval) {
+        this(vertx, sessionMapName, reaperInterval, true);
+    }
+
+    ExtendedLocalSessionStoreImpl(Vertx vertx, String sessionMapName, long reaperInterval, boolean startReaper) {
+        this.vertx = vertx;
+        this.reaperInterval = reaperInterval;
         this.localMap = vertx.sharedData().getLocalMap(sessionMapName);
-        this.sessionsStore = new LocalSessionStoreImpl(vertx, sessionMapName, reaperInterval) {
-            @Override
-            public synchronized void handle(Long tid) {
-                notifyExpiredSessions(() -> super.handle(tid));
-            }
-        };
+        // expired sessions are reaped by this store, not by the wrapped one
+        this.sessionsStore = new LocalSessionStoreImpl(vertx, sessionMapName, 0);
+        this.expirationIndex = new ExpirationIndex(reaperInterval);
+        this.passivationIndex = new ExpirationIndex(reaperInterval);
+        if (startReaper) {
+            this.setTimer();
+        }
+    }
+
+    /**
+     * Starts the reaper timer on the current context, for stores created without it.
+     */
+    synchronized void startReaper() {
+        if (timerID == -1 && !closed) {
+            setTimer();
+        }
+    }
+
+    @Override
+    public ExtendedLocalSessionStore setPassivation(long idleTime, File directory) {
+        return setPassivation(idleTime, idleTime > 0 ? new FileSessionPassivator(Objects.requireNonNull(directory)) : null);
+    }
+
+    synchronized ExtendedLocalSessionStoreImpl setPassivation(long idleTime, SessionPassivator passivator) {
+        if (this.passivator != null && this.passivator != passivator) {
+            this.passivator.clear();
+        }
+        this.passivationIdleTime = idleTime;
+        this.passivator = idleTime > 0 ? passivator : null;
+        return this;
     }
 
     @Override
@@ -57,6 +121,12 @@ class ExtendedLocalSessionStoreImpl implements ExtendedLocalSessionStore {
         return this;
     }
 
+    @Override
+    public ExtendedLocalSessionStore expiredSessionHandler(Handler<Session> handler) {
+        this.expiredSessionHandler = Objects.requireNonNull(handler);
+        return this;
+    }
+
     @Override
     public long retryTimeout() {
         return sessionsStore.retryTimeout();
@@ -64,50 +134,325 @@ class ExtendedLocalSessionStoreImpl implements ExtendedLocalSessionStore {
 
     @Override
     public Session createSession(long timeout) {
-        return sessionsStore.createSession(timeout);
+        return ExtendedSession.adapt(sessionsStore.createSession(timeout));
     }
 
     @Override
     public Session createSession(long timeout, int length) {
-        return sessionsStore.createSession(timeout, length);
+        return ExtendedSession.adapt(sessionsStore.createSession(timeout, length));
     }
 
     @Override
     public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
-        sessionsStore.get(id, resultHandler);
+        SessionPassivator passivator = this.passivator;
+        boolean local;
+        synchronized (passivating) {
+            Session session = localMap.get(id);
+            local = session != null;
+            if (passivator != null && local) {
+                // the session is in use, do not evict it if it is being passivated
+                passivating.remove(id);
+                session.setAccessed();
+            }
+        }
+        SessionMetricsRegistry.listeners().sessionLoaded(local);
+        if (passivator == null || local || !passivator.contains(id)) {
+            sessionsStore.get(id, resultHandler);
+        } else {
+            vertx.executeBlocking(future -> {
+                try {
+                    future.complete(activate(passivator, id));
+                } catch (IOException ex) {
+                    future.fail(ex);
+                }
+            }, false, resultHandler);
+        }
+    }
+
+    private Session activate(SessionPassivator passivator, String id) throws IOException {
+        // a concurrent restore of the same session waits for it to be back in the local map
+        synchronized (passivator) {
+            Session session = passivator.restore(id);
+            if (session == null) {
+                return localMap.get(id);
+            }
+            Session current = localMap.putIfAbsent(id, session);
+            if (current != null) {
+                return current;
+            }
+            schedule(session);
+            return session;
+        }
+    }
+
+    @Override
+    public Session peek(String id) {
+        return localMap.get(id);
+    }
+
+    @Override
+    public void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        Session session = localMap.get(id);
+        if (session != null && session.lastAccessed() < lastAccessed) {
+            setAccessed(session, lastAccessed);
+        }
+        resultHandler.handle(Future.succeededFuture(session != null));
     }
 
     @Override
     public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+        expirationIndex.remove(id);
+        passivationIndex.remove(id);
+        SessionPassivator passivator = this.passivator;
+        if (passivator != null) {
+            passivator.remove(id);
+        }
         sessionsStore.delete(id, resultHandler);
     }
 
 
     @Override
     public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
-        sessionsStore.put(session, resultHandler);
+        SessionMetricsRegistry.listeners().sessionStored();
+        synchronized (passivating) {
+            passivating.remove(session.id());
+        }
+        if (session instanceof ExtendedSessionImpl) {
+            // the stored instance is the session itself, nothing to replicate
+            ((ExtendedSessionImpl) session).takeModifiedAttributes();
+        }
+        sessionsStore.put(session, res -> {
+            if (res.succeeded()) {
+                SessionPassivator passivator = this.passivator;
+                if (passivator != null) {
+                    passivator.remove(session.id());
+                }
+                schedule(session);
+            }
+            resultHandler.handle(res);
+        });
+    }
+
+    private void schedule(Session session) {
+        expirationIndex.schedule(session.id(), ExpirationIndex.deadline(session));
+        if (passivator != null) {
+            passivationIndex.schedule(session.id(), session.lastAccessed() + passivationIdleTime);
+        }
     }
 
     @Override
     public void clear(Handler<AsyncResult<Void>> resultHandler) {
+        expirationIndex.clear();
+        passivationIndex.clear();
+        SessionPassivator passivator = this.passivator;
+        if (passivator != null) {
+            passivator.clear();
+        }
         sessionsStore.clear(resultHandler);
     }
 
     @Override
     public void size(Handler<AsyncResult<Integer>> resultHandler) {
-        sessionsStore.size(resultHandler);
+        SessionPassivator passivator = this.passivator;
+        int passivated = passivator == null ? 0 : passivator.size();
+        sessionsStore.size(res -> resultHandler.handle(res.map(size -> size + passivated)));
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
         sessionsStore.close();
+        if (passivator != null) {
+            passivator.clear();
+        }
+        if (timerID != -1) {
+            vertx.cancelTimer(timerID);
+        }
+        closed = true;
+    }
+
+    @Override
+    public synchronized void handle(Long tid) {
+        long now = System.currentTimeMillis();
+        SessionPassivator passivator = this.passivator;
+        expirationIndex.expire(now, id -> deadline(passivator, id), id -> {
+            Session session = localMap.get(id);
+            if (session != null && now - session.lastAccessed() > session.timeout()
+                && localMap.remove(id, session)) {
+                passivationIndex.remove(id);
+                onSessionExpired(session);
+            } else if (session == null && passivator != null) {
+                expirePassivated(passivator, id);
+            }
+        });
+        if (passivator != null) {
+            List<Session> idleSessions = new ArrayList<>();
+            passivationIndex.expire(now, id -> {
+                Session session = localMap.get(id);
+                return session == null ? null : session.lastAccessed() + passivationIdleTime;
+            }, id -> {
+                synchronized (passivating) {
+                    Session session = localMap.get(id);
+                    if (session != null) {
+                        passivating.put(id, session.lastAccessed());
+                        idleSessions.add(session);
+                    }
+                }
+            });
+            if (!idleSessions.isEmpty()) {
+                vertx.executeBlocking(future -> {
+                    passivate(passivator, idleSessions);
+                    future.complete();
+                }, false, res -> {
+                    if (res.failed()) {
+                        logger.warn("Cannot passivate idle sessions", res.cause());
+                    }
+                });
+            }
+        }
+        if (!closed) {
+            setTimer();
+        }
+    }
+
+    private Long deadline(SessionPassivator passivator, String id) {
+        Session session = localMap.get(id);
+        if (session == null && passivator != null) {
+            return passivator.deadline(id);
+        }
+        return ExpirationIndex.deadline(session);
+    }
+
+    private void passivate(SessionPassivator passivator, List<Session> sessions) {
+        for (Session session : sessions) {
+            String id = session.id();
+            List<Lock> locks = tryLock(session);
+            if (locks == null) {
+                // in use, try again later
+                cancelPassivation(session);
+                continue;
+            }
+            try {
+                SessionPassivator.Record record = passivator.passivate(session);
+                if (record == null) {
+                    logger.debug("Session {} cannot be passivated", id);
+                    cancelPassivation(session);
+                    continue;
+                }
+                boolean evicted;
+                synchronized (passivating) {
+                    Long lastAccessed = passivating.remove(id);
+                    evicted = lastAccessed != null && lastAccessed == session.lastAccessed()
+                        && localMap.remove(id, session);
+                }
+                if (!evicted) {
+                    // requested, stored or deleted while being passivated
+                    passivator.remove(id, record);
+                    if (localMap.get(id) == session) {
+                        schedule(session);
+                    }
+                }
+            } catch (IOException ex) {
+                logger.warn("Cannot passivate session {}", id, ex);
+                cancelPassivation(session);
+            } finally {
+                locks.forEach(Lock::unlock);
+            }
+        }
+    }
+
+    private void cancelPassivation(Session session) {
+        synchronized (passivating) {
+            passivating.remove(session.id());
+        }
+        if (localMap.get(session.id()) == session) {
+            schedule(session);
+        }
+    }
+
+    /**
+     * Acquires the locks held by the session attributes, if they are all free.
+     *
+     * @return the acquired locks, or null if a lock is held by another thread
+     */
+    static List<Lock> tryLock(Session session) {
+        return tryLock(session, 0);
     }
 
-    private void notifyExpiredSessions(Runnable reaper) {
-        Set<String> before = localMap.keySet();
-        reaper.run();
-        before.removeAll(localMap.keySet());
-        before.forEach(this::onSessionExpired);
+    /**
+     * Acquires the locks held by the session attributes, waiting at most the given time for each of them.
+     *
+     * @return the acquired locks, or null if a lock is still held by another thread
+     */
+    static List<Lock> tryLock(Session session, long waitMillis) {
+        List<Lock> locks = new ArrayList<>();
+        for (Object value : session.data().values()) {
+            if (value instanceof Lock) {
+                Lock lock = (Lock) value;
+                if (!tryLock(lock, waitMillis)) {
+                    locks.forEach(Lock::unlock);
+                    return null;
+                }
+                locks.add(lock);
+            }
+        }
+        return locks;
+    }
+
+    private static boolean tryLock(Lock lock, long waitMillis) {
+        if (waitMillis <= 0) {
+            return lock.tryLock();
+        }
+        try {
+            return lock.tryLock(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void setTimer() {
+        if (reaperInterval != 0) {
+            timerID = vertx.setTimer(reaperInterval, this);
+        }
+    }
+
+    /**
+     * Expires a passivated session, reading it back if expired sessions are handled.
+     */
+    private void expirePassivated(SessionPassivator passivator, String id) {
+        if (expiredSessionHandler == null) {
+            if (passivator.remove(id)) {
+                onSessionExpired(id);
+            }
+            return;
+        }
+        vertx.<Session>executeBlocking(future -> {
+            try {
+                future.complete(passivator.restore(id));
+            } catch (IOException ex) {
+                passivator.remove(id);
+                future.fail(ex);
+            }
+        }, false, res -> {
+            if (res.failed()) {
+                logger.warn("Cannot read expired session {}", id, res.cause());
+                onSessionExpired(id);
+            } else if (res.result() != null) {
+                onSessionExpired(res.result());
+            }
+        });
+    }
+
+    private void onSessionExpired(Session session) {
+        Handler<Session> handler = expiredSessionHandler;
+        if (handler != null) {
+            try {
+                handler.handle(session);
+            } catch (Exception ex) {
+                logger.warn("Cannot release expired session {}", session.id(), ex);
+            }
+        }
+        onSessionExpired(session.id());
     }
 
     protected void onSessionExpired(String sessionId) {
@@ -118,4 +463,11 @@ class ExtendedLocalSessionStoreImpl implements ExtendedLocalSessionStore {
         }
     }
 
+    static void setAccessed(Session session, long lastAccessed) {
+        if (session instanceof ExtendedSession) {
+            ((ExtendedSession) session).setAccessed(lastAccessed);
+        } else {
+            session.setAccessed();
+        }
+    }
 }
@@ -23,7 +23,9 @@
 package com.github.mcollovati.vertx.web.sstore;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.ext.web.Session;
 import io.vertx.ext.web.sstore.SessionStore;
 
 public interface ExtendedSessionStore extends SessionStore {
@@ -38,4 +40,86 @@ public interface ExtendedSessionStore extends SessionStore {
      * @return a reference to this, so the API can be used fluently
      */
     ExtendedSessionStore expirationHandler(Handler<AsyncResult<String>> handler);
+
+    /**
+     * Set a handler for the sessions expired by this store.
+     *
+     * The handler is called with the expired session, before the expiration handler is called
+     * with its id, so that objects bound to the session can be released without keeping
+     * a reference to every session. Sessions that have been passivated are read back first.
+     *
+     * The default implementation never calls the handler, for stores that do not hold sessions
+     * in local memory.
+     *
+     * @param handler The expired session handler
+     * @return a reference to this, so the API can be used fluently
+     */
+    default ExtendedSessionStore expiredSessionHandler(Handler<Session> handler) {
+        return this;
+    }
+
+    /**
+     * Gets the session with the given id only if this store holds it in local memory.
+     *
+     * Unlike {@link #get(String, Handler)}, this method never performs remote lookups
+     * nor deserializes session data, so it can be used on latency sensitive paths.
+     *
+     * @param id the session id
+     * @return the local session instance, or {@code null} if it is not available locally
+     */
+    default Session peek(String id) {
+        return null;
+    }
+
+    /**
+     * Updates the last access time of a stored session without writing session data.
+     *
+     * It should be used in place of {@link #put(Session, Handler)} when session data
+     * has not been modified. If the store does not hold the session, the result is {@code false}
+     * and the session should be stored with {@link #put(Session, Handler)}.
+     *
+     * The default implementation does not support touch and always completes with {@code false}.
+     *
+     * @param id            the session id
+     * @param lastAccessed  the last access time of the session, in milliseconds
+     * @param resultHandler will be called with {@code true} if the session has been touched
+     */
+    default void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(false));
+    }
+
+    /**
+     * Gets the identifier of this node, for stores where sessions are owned by the node
+     * that last served them.
+     *
+     * Front ends can route requests of a session to its owner, to avoid handoffs between nodes.
+     *
+     * @return the owner identifier of this node, or {@code null} if sessions have no owner
+     */
+    default String ownerId() {
+        return null;
+    }
+
+    /**
+     * Writes all the pending session changes, for stores that defer writes.
+     *
+     * It should be called before shutdown.
+     *
+     * @param resultHandler will be called when pending writes have been completed
+     */
+    default void flush(Handler<AsyncResult<Void>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture());
+    }
+
+    /**
+     * Writes the pending changes of a session, for stores that defer writes.
+     *
+     * It should be called before handing the session off to another node.
+     *
+     * @param id            the session id
+     * @param resultHandler will be called when pending writes for the session have been completed
+     */
+    default void flush(String id, Handler<AsyncResult<Void>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture());
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Keeps passivated sessions in append-only segment files.
+ *
+ * A segment is deleted as soon as all the sessions written in it have been restored,
+ * removed or passivated again.
+ */
+class FileSessionPassivator extends SessionPassivator {
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final File directory;
+    private final String segmentPrefix = "sessions-" + UUID.randomUUID() + "-";
+    private final Set<Segment> segments = new HashSet<>();
+    private Segment current;
+    private int segmentSeq;
+
+    FileSessionPassivator(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    protected Record write(Buffer buffer, long deadline) throws IOException {
+        Segment segment = currentSegment();
+        Record record = new FileRecord(segment, segment.append(buffer), buffer.length(), deadline);
+        segment.live++;
+        return record;
+    }
+
+    @Override
+    protected Buffer read(Record record) throws IOException {
+        FileRecord fileRecord = (FileRecord) record;
+        return fileRecord.segment.read(fileRecord.offset, fileRecord.length);
+    }
+
+    @Override
+    protected void release(Record record) {
+        Segment segment = ((FileRecord) record).segment;
+        if (--segment.live == 0) {
+            if (segment == current) {
+                current = null;
+            }
+            segments.remove(segment);
+            segment.delete();
+        }
+    }
+
+    @Override
+    protected void releaseAll() {
+        segments.forEach(Segment::delete);
+        segments.clear();
+        current = null;
+    }
+
+    private Segment currentSegment() throws IOException {
+        if (current == null || current.size >= SEGMENT_SIZE) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create passivation directory " + directory);
+            }
+            current = new Segment(new File(directory, segmentPrefix + (segmentSeq++) + ".passivated"));
+            segments.add(current);
+        }
+        return current;
+    }
+
+    private static final class FileRecord extends Record {
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        private FileRecord(Segment segment, long offset, int length, long deadline) {
+            super(deadline);
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+        private int live;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        long append(Buffer buffer) throws IOException {
+            long offset = size;
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.getBytes());
+            while (bytes.hasRemaining()) {
+                size += channel.write(bytes, size);
+            }
+            return offset;
+        }
+
+        Buffer read(long offset, int length) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, offset + bytes.position()) < 0) {
+                    throw new IOException("Unexpected end of passivation file " + file);
+                }
+            }
+            return Buffer.buffer(bytes.array());
+        }
+
+        void delete() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // the file is deleted anyway
+            }
+            file.delete();
+        }
+    }
+}
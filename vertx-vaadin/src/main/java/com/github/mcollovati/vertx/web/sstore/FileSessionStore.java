@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+
+import io.vertx.core.Vertx;
+
+/**
+ * A local session store that survives restarts, for single node deployments.
+ *
+ * Sessions are held and read in memory, as in {@link ExtendedLocalSessionStore}, and written behind
+ * to an append-only log in the given directory, that is compacted once most of it is stale.
+ * When the store is created, sessions that are not expired are read back from the log;
+ * until then, gets wait for them to be available.
+ *
+ * Only one store at a time may use a directory.
+ */
+public interface FileSessionStore extends ExtendedSessionStore {
+
+    /**
+     * Default name for map used to store sessions
+     */
+    String DEFAULT_SESSION_MAP_NAME = "vertx-vaadin.file-sessions";
+
+    /**
+     * Default of how often, in ms, modified sessions are written to the log
+     */
+    long DEFAULT_SYNC_INTERVAL = 1000;
+
+    /**
+     * Sets how often modified sessions are written to the log.
+     *
+     * Writes of the same session within the interval are coalesced, and only
+     * the latest version is written.
+     *
+     * @param syncInterval how often, in ms, modified sessions are written to the log; {@code 0} writes them after every change
+     * @return a reference to this, so the API can be used fluently
+     */
+    FileSessionStore setSyncInterval(long syncInterval);
+
+    /**
+     * Create a session store
+     *
+     * @param vertx     the Vert.x instance
+     * @param directory the directory for the session log
+     * @return the session store
+     */
+    static FileSessionStore create(Vertx vertx, File directory) {
+        return create(vertx, directory, DEFAULT_SESSION_MAP_NAME, ExtendedLocalSessionStore.DEFAULT_REAPER_INTERVAL);
+    }
+
+    /**
+     * Create a session store
+     *
+     * @param vertx          the Vert.x instance
+     * @param directory      the directory for the session log
+     * @param sessionMapName name for map used to store sessions
+     * @param reaperInterval how often, in ms, to check for expired sessions
+     * @return the session store
+     */
+    static FileSessionStore create(Vertx vertx, File directory, String sessionMapName, long reaperInterval) {
+        return new FileSessionStoreImpl(vertx, directory, sessionMapName, reaperInterval,
+            SessionLog.DEFAULT_COMPACTION_THRESHOLD);
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * File backed session store built on {@link ExtendedLocalSessionStoreImpl}, that writes changes
+ * to a {@link SessionLog}.
+ *
+ * Stored sessions are queued until the next sync, when they are serialized by the single worker thread
+ * that accesses the log, so that records are appended in the order sessions have been serialized.
+ * Sessions are serialized while holding the locks found among their attributes, such as the one
+ * guarding the Vaadin session; sessions whose locks are busy are left for a later sync.
+ * Touched sessions only get a record of their new deadline.
+ */
+class FileSessionStoreImpl implements FileSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSessionStoreImpl.class);
+
+    private final Vertx vertx;
+    private final ExtendedLocalSessionStoreImpl sessionStore;
+    private final SessionLog log;
+    private final WorkerExecutor logExecutor;
+    private static final long LOCK_RETRY_DELAY = 100;
+    private static final long FLUSH_LOCK_TIMEOUT = 1000;
+
+    private final ConcurrentMap<String, Session> pendingWrites = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> pendingTouches = new ConcurrentHashMap<>();
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    private final Object syncLock = new Object();
+    private final List<Runnable> waitingForLoad = new ArrayList<>();
+    private boolean loaded;
+    private volatile long syncInterval = DEFAULT_SYNC_INTERVAL;
+    private Handler<AsyncResult<String>> expirationHandler = x -> {};
+
+    FileSessionStoreImpl(Vertx vertx, File directory, String sessionMapName, long reaperInterval, long compactionThreshold) {
+        this.vertx = vertx;
+        this.sessionStore = new ExtendedLocalSessionStoreImpl(vertx, sessionMapName, reaperInterval);
+        this.sessionStore.expirationHandler(this::onSessionExpired);
+        this.log = new SessionLog(directory, compactionThreshold);
+        this.logExecutor = vertx.createSharedWorkerExecutor("vertx-vaadin-session-log-" + directory.getAbsolutePath(), 1);
+        load(directory);
+    }
+
+    private void load(File directory) {
+        logExecutor.<List<Session>>executeBlocking(future -> {
+            try {
+                future.complete(log.open(System.currentTimeMillis()));
+            } catch (IOException ex) {
+                future.fail(ex);
+            }
+        }, false, res -> {
+            if (res.succeeded()) {
+                for (Session session : res.result()) {
+                    // sessions changed while loading are newer
+                    if (sessionStore.peek(session.id()) == null && !pendingDeletes.contains(session.id())) {
+                        sessionStore.put(session, ignored -> {});
+                    }
+                }
+                logger.debug("{} sessions read from {}", res.result().size(), directory);
+            } else {
+                logger.error("Cannot read sessions from {}", directory, res.cause());
+            }
+            List<Runnable> waiting;
+            synchronized (waitingForLoad) {
+                loaded = true;
+                waiting = new ArrayList<>(waitingForLoad);
+                waitingForLoad.clear();
+            }
+            waiting.forEach(Runnable::run);
+        });
+    }
+
+    private void whenLoaded(Runnable action) {
+        synchronized (waitingForLoad) {
+            if (!loaded) {
+                waitingForLoad.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    public FileSessionStore setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+        return this;
+    }
+
+    @Override
+    public FileSessionStore expirationHandler(Handler<AsyncResult<String>> handler) {
+        this.expirationHandler = Objects.requireNonNull(handler);
+        return this;
+    }
+
+    @Override
+    public FileSessionStore expiredSessionHandler(Handler<Session> handler) {
+        sessionStore.expiredSessionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public long retryTimeout() {
+        return sessionStore.retryTimeout();
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return sessionStore.createSession(timeout);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return sessionStore.createSession(timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+        whenLoaded(() -> sessionStore.get(id, resultHandler));
+    }
+
+    @Override
+    public Session peek(String id) {
+        return sessionStore.peek(id);
+    }
+
+    @Override
+    public void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        sessionStore.touch(id, lastAccessed, res -> {
+            if (res.succeeded() && res.result()) {
+                Session session = sessionStore.peek(id);
+                if (session != null) {
+                    markTouched(session);
+                }
+            }
+            resultHandler.handle(res);
+        });
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+        markDeleted(id);
+        sessionStore.delete(id, resultHandler);
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        sessionStore.put(session, res -> {
+            if (res.succeeded()) {
+                markModified(session);
+            }
+            resultHandler.handle(res);
+        });
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+        sessionStore.clear(res -> {
+            if (res.failed()) {
+                resultHandler.handle(res);
+                return;
+            }
+            synchronized (syncLock) {
+                pendingWrites.clear();
+                pendingTouches.clear();
+                pendingDeletes.clear();
+                logExecutor.executeBlocking(future -> {
+                    try {
+                        log.clear();
+                        future.complete();
+                    } catch (IOException ex) {
+                        future.fail(ex);
+                    }
+                }, false, resultHandler);
+            }
+        });
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        whenLoaded(() -> sessionStore.size(resultHandler));
+    }
+
+    @Override
+    public void flush(Handler<AsyncResult<Void>> resultHandler) {
+        sync(FLUSH_LOCK_TIMEOUT, resultHandler);
+    }
+
+    @Override
+    public void flush(String id, Handler<AsyncResult<Void>> resultHandler) {
+        sync(FLUSH_LOCK_TIMEOUT, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        sessionStore.close();
+        sync(FLUSH_LOCK_TIMEOUT, res -> logExecutor.executeBlocking(future -> {
+            try {
+                log.close();
+                future.complete();
+            } catch (IOException ex) {
+                future.fail(ex);
+            }
+        }, false, closed -> {
+            if (closed.failed()) {
+                logger.warn("Cannot close session log", closed.cause());
+            }
+            logExecutor.close();
+        }));
+    }
+
+    private void markModified(Session session) {
+        pendingDeletes.remove(session.id());
+        pendingTouches.remove(session.id());
+        pendingWrites.put(session.id(), session);
+        scheduleSync(syncInterval);
+    }
+
+    private void markTouched(Session session) {
+        if (!pendingWrites.containsKey(session.id())) {
+            pendingTouches.put(session.id(), session.lastAccessed() + session.timeout());
+            scheduleSync(syncInterval);
+        }
+    }
+
+    private void markDeleted(String id) {
+        pendingWrites.remove(id);
+        pendingTouches.remove(id);
+        pendingDeletes.add(id);
+        scheduleSync(syncInterval);
+    }
+
+    private void scheduleSync(long delay) {
+        if (syncScheduled.compareAndSet(false, true)) {
+            Handler<Long> task = tid -> {
+                syncScheduled.set(false);
+                sync(0, res -> {
+                    if (res.failed()) {
+                        logger.warn("Cannot write sessions to log", res.cause());
+                    }
+                });
+            };
+            if (delay > 0) {
+                vertx.setTimer(delay, task);
+            } else {
+                vertx.runOnContext(v -> task.handle(null));
+            }
+        }
+    }
+
+    /**
+     * Serializes pending changes and appends them to the log, on the log worker thread.
+     *
+     * @param lockTimeout time to wait for the locks of every session, 0 to leave busy sessions for a later sync
+     */
+    private void sync(long lockTimeout, Handler<AsyncResult<Void>> resultHandler) {
+        synchronized (syncLock) {
+            List<Buffer> records = new ArrayList<>();
+            for (String id : new ArrayList<>(pendingDeletes)) {
+                if (pendingDeletes.remove(id)) {
+                    records.add(SessionLog.deleteRecord(id));
+                }
+            }
+            for (String id : new ArrayList<>(pendingTouches.keySet())) {
+                Long deadline = pendingTouches.remove(id);
+                if (deadline != null) {
+                    records.add(SessionLog.touchRecord(id, deadline));
+                }
+            }
+            List<Session> sessions = new ArrayList<>();
+            for (String id : new ArrayList<>(pendingWrites.keySet())) {
+                Session session = pendingWrites.remove(id);
+                if (session != null) {
+                    sessions.add(session);
+                }
+            }
+            if (!records.isEmpty() || !sessions.isEmpty()) {
+                logExecutor.executeBlocking(future -> {
+                    for (Session session : sessions) {
+                        Buffer record = serialize(session, lockTimeout);
+                        if (record != null) {
+                            records.add(record);
+                        }
+                    }
+                    try {
+                        log.append(records);
+                        future.complete();
+                    } catch (IOException ex) {
+                        future.fail(ex);
+                    }
+                }, false, resultHandler);
+                return;
+            }
+        }
+        resultHandler.handle(Future.succeededFuture());
+    }
+
+    /**
+     * Serializes the session while holding its locks.
+     *
+     * @return the record, or null if the session is in use or cannot be serialized
+     */
+    private Buffer serialize(Session session, long lockTimeout) {
+        List<Lock> locks = ExtendedLocalSessionStoreImpl.tryLock(session, lockTimeout);
+        if (locks == null) {
+            // in use by a request or by UI.access, unless it has been stored again in the meantime
+            if (sessionStore.peek(session.id()) == session && pendingWrites.putIfAbsent(session.id(), session) == null) {
+                scheduleSync(Math.max(syncInterval, LOCK_RETRY_DELAY));
+            }
+            return null;
+        }
+        try {
+            Buffer record = SessionLog.putRecord(session);
+            if (record == null) {
+                logger.warn("Session {} cannot be serialized, its changes are not written to log", session.id());
+            }
+            return record;
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    private void onSessionExpired(AsyncResult<String> result) {
+        if (result.succeeded()) {
+            markDeleted(result.result());
+        }
+        expirationHandler.handle(result);
+    }
+}
@@ -23,6 +23,7 @@
 package com.github.mcollovati.vertx.web.sstore;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 
 public interface NearCacheSessionStore extends ExtendedSessionStore {
     /**
@@ -122,4 +123,59 @@ public interface NearCacheSessionStore extends ExtendedSessionStore {
     static NearCacheSessionStore create(Vertx vertx, long retryTimeout, long reaperInterval) {
         return new NearCacheSessionStoreImpl(vertx, DEFAULT_SESSION_MAP_NAME, retryTimeout, reaperInterval);
     }
+
+    /**
+     * Enables write-behind mode: puts for the same session within {@code delay} milliseconds
+     * are coalesced and only the latest version of the session is written to the cluster.
+     *
+     * Pending writes are written in a batch when the delay expires, or when {@link #flush(Handler)}
+     * or {@link #flush(String, Handler)} are called; put result handlers are called immediately.
+     *
+     * @param delay the write delay, in milliseconds; zero or less disables write-behind (the default)
+     * @return a reference to this, so the API can be used fluently
+     */
+    NearCacheSessionStore setWriteBehindDelay(long delay);
+
+    /**
+     * Enables ownership mode, for deployments with sticky routing.
+     *
+     * The node that created or last served a session owns it: its local copy is authoritative and is
+     * replicated to the cluster in background, as a backup, with puts completing immediately.
+     * Writes are not published to the other nodes, that read the cluster copy only when they take over
+     * a session; the previous owner is then asked to write its pending changes and drop its copy.
+     * Puts of requests still in flight on the previous owner fail, and are not written.
+     *
+     * @param ownerId the identifier of this node, that should be unique in the cluster; {@code null} disables ownership mode (the default)
+     * @return a reference to this, so the API can be used fluently
+     */
+    NearCacheSessionStore setOwnerId(String ownerId);
+
+    /**
+     * Sets the codec used to write sessions and session deltas to the cluster, registering it in
+     * {@link SessionCodecs} to read them.
+     *
+     * The codec must be registered on every node of the cluster before it is set.
+     *
+     * @param codec the codec; {@code null} writes sessions in the legacy format, readable by every node (the default)
+     * @return a reference to this, so the API can be used fluently
+     */
+    NearCacheSessionStore setCodec(SessionCodec codec);
+
+    /**
+     * Gets the codec used to write sessions to the cluster.
+     *
+     * @return the codec, or null if sessions are written in the legacy format
+     */
+    SessionCodec codec();
+
+    /**
+     * Gets near cache statistics: number of sessions held locally,
+     * requests served from the local copy (hits) or from the clustered map (misses),
+     * local copies dropped because a newer version was written by another node
+     * and, in ownership mode, sessions taken over from another node or handed off to it,
+     * and puts rejected because the session had been handed off while being served.
+     *
+     * @return the near cache metrics
+     */
+    JsonObject metrics();
 }
@@ -22,26 +22,101 @@
  */
 package com.github.mcollovati.vertx.web.sstore;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+import com.github.mcollovati.vertx.web.ExtendedSession;
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.web.Session;
 import io.vertx.ext.web.sstore.ClusteredSessionStore;
+import io.vertx.ext.web.sstore.impl.SessionImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Session store that serves sessions from a local copy while it is current,
+ * falling back to the clustered map only for sessions not yet known by this node.
+ *
+ * Every successful write to the clustered map increments the session version
+ * and is published on the event bus, so that other nodes drop their local copy
+ * when it is older than the written one.
+ *
+ * A full snapshot of the session is written on first put, when the local copy has been
+ * replaced by a newer version (conflict) and then periodically, to refresh its time to live;
+ * otherwise only the attributes changed since the snapshot are written, as a {@link SessionDelta}
+ * in a separate map.
+ *
+ * In write-behind mode, puts are deferred and coalesced, so that only the latest version
+ * of a session is written.
+ *
+ * In ownership mode, writes are always deferred and not published, since other nodes do not hold
+ * copies of owned sessions. The owner of every session is recorded in a cluster map: a node taking
+ * over a session sends a handoff request to the owner, that writes its pending changes, records the new
+ * owner and drops its copy, then reads the session from the cluster and publishes its claim, so that any
+ * other copy is dropped. A put of a session unknown to the local map is rejected if another node owns it,
+ * since it comes from a request that was in flight while the session was handed off.
+ */
 class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long> {
 
+    private static final Logger logger = LoggerFactory.getLogger(NearCacheSessionStoreImpl.class);
+    private static final String ID_FIELD = "id";
+    private static final String VERSION_FIELD = "version";
+    private static final String OWNER_FIELD = "owner";
+    private static final long HANDOFF_TIMEOUT = 2000;
 
     private final Vertx vertx;
     private final long reaperInterval;
     private final LocalMap<String, Session> localMap;
     private final ClusteredSessionStore clusteredSessionStore;
+    private final String sessionMapName;
+    private final String deltaMapName;
+    private final String ownerMapName;
+    private final ConcurrentMap<String, ReplicationState> replicationStates = new ConcurrentHashMap<>();
+    private final String invalidationAddress;
+    private final MessageConsumer<JsonObject> invalidationConsumer;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder coalescedWrites = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+    private final LongAdder handoffs = new LongAdder();
+    private final LongAdder rejectedWrites = new LongAdder();
+    private final ConcurrentMap<String, Session> pendingWrites = new ConcurrentHashMap<>();
+    private final Map<String, List<Handler<AsyncResult<Void>>>> writesInProgress = new HashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExpirationIndex expirationIndex;
+    private volatile long writeBehindDelay;
+    private volatile String ownerId;
+    private volatile SessionCodec codec;
+    private MessageConsumer<String> handoffConsumer;
+    private volatile AsyncMap<String, Session> sessionMap;
+    private volatile AsyncMap<String, SessionDelta> deltaMap;
+    private volatile AsyncMap<String, String> ownerMap;
     private Handler<AsyncResult<String>> expirationHandler = x -> {};
+    private volatile Handler<Session> expiredSessionHandler = x -> {};
     private long timerID = -1;
     private boolean closed;
 
@@ -50,6 +125,12 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
         this.reaperInterval = reaperInterval;
         this.clusteredSessionStore = ClusteredSessionStore.create(vertx, sessionMapName, retryTimeout);
         this.localMap = vertx.sharedData().getLocalMap(sessionMapName);
+        this.sessionMapName = sessionMapName;
+        this.deltaMapName = sessionMapName + ".delta";
+        this.ownerMapName = sessionMapName + ".owner";
+        this.invalidationAddress = sessionMapName + ".invalidation";
+        this.invalidationConsumer = vertx.eventBus().consumer(invalidationAddress, this::onInvalidation);
+        this.expirationIndex = new ExpirationIndex(reaperInterval);
         this.setTimer();
     }
 
@@ -59,6 +140,50 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
         return this;
     }
 
+    @Override
+    public NearCacheSessionStore expiredSessionHandler(Handler<Session> handler) {
+        this.expiredSessionHandler = Objects.requireNonNull(handler);
+        return this;
+    }
+
+    @Override
+    public NearCacheSessionStore setWriteBehindDelay(long delay) {
+        this.writeBehindDelay = delay;
+        return this;
+    }
+
+    @Override
+    public synchronized NearCacheSessionStore setOwnerId(String ownerId) {
+        if (handoffConsumer != null) {
+            handoffConsumer.unregister();
+            handoffConsumer = null;
+        }
+        this.ownerId = ownerId;
+        if (ownerId != null) {
+            handoffConsumer = vertx.eventBus().consumer(handoffAddress(ownerId), this::onHandoff);
+        }
+        return this;
+    }
+
+    @Override
+    public String ownerId() {
+        return ownerId;
+    }
+
+    @Override
+    public NearCacheSessionStore setCodec(SessionCodec codec) {
+        if (codec != null) {
+            SessionCodecs.register(codec);
+        }
+        this.codec = codec;
+        return this;
+    }
+
+    @Override
+    public SessionCodec codec() {
+        return codec;
+    }
+
     @Override
     public long retryTimeout() {
         return clusteredSessionStore.retryTimeout();
@@ -66,65 +191,303 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
 
     @Override
     public Session createSession(long timeout) {
-        return clusteredSessionStore.createSession(timeout);
+        return ExtendedSession.adapt(clusteredSessionStore.createSession(timeout));
     }
 
     @Override
     public Session createSession(long timeout, int length) {
-        return clusteredSessionStore.createSession(timeout, length);
+        return ExtendedSession.adapt(clusteredSessionStore.createSession(timeout, length));
     }
 
     @Override
     public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
-        clusteredSessionStore.get(id, res -> {
+        Session localSession = localMap.get(id);
+        if (localSession != null && !isExpired(localSession, System.currentTimeMillis())) {
+            hits.increment();
+            SessionMetricsRegistry.listeners().sessionLoaded(true);
+            resultHandler.handle(Future.succeededFuture(localSession));
+            return;
+        }
+        misses.increment();
+        SessionMetricsRegistry.listeners().sessionLoaded(false);
+        Handler<AsyncResult<Void>> fetchHandler = res -> {
             if (res.succeeded()) {
-                Session localSession = localMap.get(id);
-                if (localSession == null && res.result() != null) {
-                    localMap.put(id, res.result());
-                }
                 resultHandler.handle(Future.succeededFuture(localMap.get(id)));
             } else {
                 resultHandler.handle(Future.failedFuture(res.cause()));
             }
-        });
-        /*
-        if (localMap.containsKey(id)) {
-            resultHandler.handle(Future.succeededFuture(localMap.get(id)));
+        };
+        if (ownerId != null) {
+            takeOver(id, fetchHandler);
         } else {
-            clusteredSessionStore.get(id, res -> {
-                if (res.succeeded()) {
-                    Optional.ofNullable(res.result()).ifPresent(s -> localMap.put(id, s));
-                    resultHandler.handle(Future.succeededFuture(res.result()));
-                } else {
-                    resultHandler.handle(Future.failedFuture(res.cause()));
-                }
-            });
-        }*/
+            fetch(id, true, fetchHandler);
+        }
+    }
+
+    @Override
+    public Session peek(String id) {
+        return localMap.get(id);
+    }
+
+    /**
+     * Updates the last access time of the local session copy.
+     *
+     * The clustered copy is written again only when it has not been replicated for half of the session
+     * timeout, so that it does not expire from the cluster map while the session is in use.
+     */
+    @Override
+    public void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        Session session = localMap.get(id);
+        ReplicationState state = replicationStates.get(id);
+        if (session == null || state == null) {
+            resultHandler.handle(Future.succeededFuture(false));
+            return;
+        }
+        if (session.lastAccessed() < lastAccessed) {
+            setAccessed(session, lastAccessed);
+        }
+        if (lastAccessed - state.replicatedAt > session.timeout() / 2) {
+            put(session, res -> resultHandler.handle(res.map(Boolean.TRUE)));
+        } else {
+            resultHandler.handle(Future.succeededFuture(true));
+        }
     }
 
     @Override
     public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
-        clusteredSessionStore.delete(id, res -> {
+        pendingWrites.remove(id);
+        // wait for a write in progress, that would otherwise restore the session
+        writePending(id, unused -> clusteredSessionStore.delete(id, res -> {
             if (res.succeeded()) {
                 localMap.remove(id);
-                resultHandler.handle(Future.succeededFuture());
+                replicationStates.remove(id);
+                expirationIndex.remove(id);
+                vertx.eventBus().publish(invalidationAddress, new JsonObject().put(ID_FIELD, id));
+                if (ownerId != null) {
+                    withOwnerMap(mapRes -> {
+                        if (mapRes.succeeded()) {
+                            mapRes.result().remove(id, ignored -> {});
+                        }
+                    });
+                }
+                withDeltaMap(mapRes -> {
+                    if (mapRes.succeeded()) {
+                        mapRes.result().remove(id, deltaRes -> resultHandler.handle(deltaRes.mapEmpty()));
+                    } else {
+                        resultHandler.handle(Future.failedFuture(mapRes.cause()));
+                    }
+                });
             } else {
                 resultHandler.handle(Future.failedFuture(res.cause()));
             }
-        });
+        }));
     }
 
 
     @Override
     public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
-        clusteredSessionStore.put(session, res -> {
-            localMap.put(session.id(), session);
+        SessionMetricsRegistry.listeners().sessionStored();
+        if (ownerId != null) {
+            if (localMap.put(session.id(), session) == null) {
+                // created here, or handed off while being served
+                claimUnlessOwned(session, resultHandler);
+                return;
+            }
+            defer(session);
+            resultHandler.handle(Future.succeededFuture());
+        } else if (writeBehindDelay > 0) {
+            // new sessions must be readable before being written
+            localMap.putIfAbsent(session.id(), session);
+            defer(session);
+            resultHandler.handle(Future.succeededFuture());
+        } else {
+            write(session, resultHandler);
+        }
+    }
+
+    @Override
+    public void flush(Handler<AsyncResult<Void>> resultHandler) {
+        Set<String> ids = new HashSet<>(pendingWrites.keySet());
+        synchronized (writesInProgress) {
+            ids.addAll(writesInProgress.keySet());
+        }
+        List<Future> flushes = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Future<Void> flushed = Future.future();
+            writePending(id, flushed.completer());
+            flushes.add(flushed);
+        }
+        CompositeFuture.join(flushes).setHandler(res -> resultHandler.handle(res.mapEmpty()));
+    }
+
+    @Override
+    public void flush(String id, Handler<AsyncResult<Void>> resultHandler) {
+        writePending(id, resultHandler);
+    }
+
+    private void defer(Session session) {
+        expirationIndex.schedule(session.id(), ExpirationIndex.deadline(session));
+        if (pendingWrites.put(session.id(), session) != null) {
+            coalescedWrites.increment();
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Claims a session put without a local copy, unless the owner map records another owner:
+     * the session has then been handed off while being served here, and writing this copy
+     * would overwrite the changes of the new owner.
+     */
+    private void claimUnlessOwned(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        String id = session.id();
+        withOwnerMap(mapRes -> {
+            if (mapRes.failed()) {
+                // the owner is unknown, keep the session available here
+                claim(session);
+                defer(session);
+                resultHandler.handle(Future.succeededFuture());
+                return;
+            }
+            mapRes.result().get(id, ownerRes -> {
+                String owner = ownerRes.succeeded() ? ownerRes.result() : null;
+                if (owner != null && !owner.equals(ownerId)) {
+                    localMap.remove(id, session);
+                    rejectedWrites.increment();
+                    resultHandler.handle(Future.failedFuture(
+                        new IllegalStateException("Session " + id + " has been handed off to " + owner)));
+                } else if (localMap.get(id) == session) {
+                    claim(session);
+                    defer(session);
+                    resultHandler.handle(Future.succeededFuture());
+                } else {
+                    // claimed by another node while checking the owner
+                    rejectedWrites.increment();
+                    resultHandler.handle(Future.failedFuture(
+                        new IllegalStateException("Session " + id + " has been claimed by another node")));
+                }
+            });
+        });
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            vertx.setTimer(Math.max(1, writeBehindDelay), tid -> {
+                flushScheduled.set(false);
+                flush(res -> {
+                    if (res.failed()) {
+                        logger.warn("Cannot write sessions to cluster", res.cause());
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * Writes the pending version of the session, after the write in progress, if any, has been completed,
+     * so that at most one write per session is sent to the cluster.
+     */
+    private void writePending(String id, Handler<AsyncResult<Void>> resultHandler) {
+        Session session;
+        synchronized (writesInProgress) {
+            List<Handler<AsyncResult<Void>>> waiting = writesInProgress.get(id);
+            if (waiting != null) {
+                waiting.add(resultHandler);
+                return;
+            }
+            session = pendingWrites.remove(id);
+            if (session != null) {
+                waiting = new ArrayList<>();
+                waiting.add(resultHandler);
+                writesInProgress.put(id, waiting);
+            }
+        }
+        if (session == null) {
+            resultHandler.handle(Future.succeededFuture());
+            return;
+        }
+        write(session, res -> {
+            List<Handler<AsyncResult<Void>>> waiting;
+            synchronized (writesInProgress) {
+                waiting = writesInProgress.remove(id);
+            }
+            if (pendingWrites.containsKey(id)) {
+                // put again while writing
+                waiting.forEach(handler -> writePending(id, handler));
+            } else {
+                waiting.forEach(handler -> handler.handle(res));
+            }
+        });
+    }
+
+    private void write(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        String id = session.id();
+        long now = System.currentTimeMillis();
+        ReplicationState state = replicationStates.get(id);
+        if (session instanceof ExtendedSessionImpl) {
+            ((ExtendedSessionImpl) session).setCodec(codec);
+        }
+        Set<String> modified = (session instanceof ExtendedSessionImpl)
+            ? ((ExtendedSessionImpl) session).takeModifiedAttributes() : Collections.emptySet();
+        Set<String> deltaAttributes = deltaAttributes(session, state, modified, now);
+        incrementVersion(session);
+
+        Handler<AsyncResult<Void>> putHandler = res -> {
             if (res.succeeded()) {
+                if (deltaAttributes == null) {
+                    snapshots.increment();
+                    replicationStates.put(id, new ReplicationState(version(session), now, now, Collections.emptySet()));
+                } else {
+                    deltas.increment();
+                    replicationStates.put(id, new ReplicationState(state.snapshotVersion, state.snapshotAt, now, deltaAttributes));
+                }
+                expirationIndex.schedule(id, ExpirationIndex.deadline(session));
+                if (ownerId == null) {
+                    localMap.put(id, session);
+                    vertx.eventBus().publish(invalidationAddress,
+                        new JsonObject().put(ID_FIELD, id).put(VERSION_FIELD, version(session))
+                    );
+                } else if (localMap.get(id) != session) {
+                    // handed off while being written
+                    replicationStates.remove(id);
+                } else if (deltaAttributes == null) {
+                    // refresh the owner time to live with the snapshot
+                    recordOwner(session);
+                }
                 resultHandler.handle(Future.succeededFuture());
             } else {
+                if (session instanceof ExtendedSessionImpl) {
+                    modified.forEach(((ExtendedSessionImpl) session)::markAttributeModified);
+                }
+                if (ownerId != null) {
+                    // the local copy is authoritative, write a snapshot next time
+                    replicationStates.remove(id);
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                    return;
+                }
+                // the local copy may be stale, fetch it again on next request
+                localMap.remove(id, session);
+                replicationStates.remove(id);
                 resultHandler.handle(Future.failedFuture(res.cause()));
             }
-        });
+        };
+        if (deltaAttributes == null) {
+            withSessionMap(mapRes -> {
+                if (mapRes.succeeded()) {
+                    mapRes.result().put(id, session, session.timeout(), putHandler);
+                } else {
+                    putHandler.handle(Future.failedFuture(mapRes.cause()));
+                }
+            });
+        } else {
+            SessionDelta delta = new SessionDelta(state.snapshotVersion, session, deltaAttributes, codec);
+            withDeltaMap(mapRes -> {
+                if (mapRes.succeeded()) {
+                    mapRes.result().put(id, delta, session.timeout(), putHandler);
+                } else {
+                    putHandler.handle(Future.failedFuture(mapRes.cause()));
+                }
+            });
+        }
     }
 
     @Override
@@ -132,7 +495,15 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
         clusteredSessionStore.clear(res -> {
             if (res.succeeded()) {
                 localMap.clear();
-                resultHandler.handle(Future.succeededFuture());
+                replicationStates.clear();
+                expirationIndex.clear();
+                withDeltaMap(mapRes -> {
+                    if (mapRes.succeeded()) {
+                        mapRes.result().clear(resultHandler);
+                    } else {
+                        resultHandler.handle(Future.failedFuture(mapRes.cause()));
+                    }
+                });
             } else {
                 resultHandler.handle(Future.failedFuture(res.cause()));
             }
@@ -144,9 +515,29 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
         resultHandler.handle(Future.succeededFuture(localMap.size()));
     }
 
+    @Override
+    public JsonObject metrics() {
+        return new JsonObject()
+            .put("localSessions", localMap.size())
+            .put("hits", hits.sum())
+            .put("misses", misses.sum())
+            .put("invalidations", invalidations.sum())
+            .put("snapshots", snapshots.sum())
+            .put("deltas", deltas.sum())
+            .put("pendingWrites", pendingWrites.size())
+            .put("coalescedWrites", coalescedWrites.sum())
+            .put("takeovers", takeovers.sum())
+            .put("handoffs", handoffs.sum())
+            .put("rejectedWrites", rejectedWrites.sum());
+    }
+
     @Override
     public synchronized void close() {
-        clusteredSessionStore.close();
+        invalidationConsumer.unregister();
+        if (handoffConsumer != null) {
+            handoffConsumer.unregister();
+        }
+        flush(res -> clusteredSessionStore.close());
         localMap.close();
         if (timerID != -1) {
             vertx.cancelTimer(timerID);
@@ -156,18 +547,279 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
 
     @Override
     public synchronized void handle(Long tid) {
-        long now = System.currentTimeMillis();
-        Set<String> toRemove = new HashSet<>();
-        for (Session session : localMap.values()) {
-            if (now - session.lastAccessed() > session.timeout()) {
-                toRemove.add(session.id());
+        expirationIndex.expire(System.currentTimeMillis(), id -> ExpirationIndex.deadline(localMap.get(id)),
+            id -> {
+                Session session = localMap.get(id);
+                delete(id, res -> {
+                    if (res.succeeded() && session != null) {
+                        expiredSessionHandler.handle(session);
+                    }
+                    expirationHandler.handle(res.map(x -> id));
+                });
+            });
+        if (!closed) {
+            setTimer();
+        }
+    }
+
+    /**
+     * Gets the names of the attributes to write as delta, or null if a full snapshot must be written.
+     */
+    private Set<String> deltaAttributes(Session session, ReplicationState state, Set<String> modified, long now) {
+        Session localSession = localMap.get(session.id());
+        if (state == null || !(session instanceof ExtendedSessionImpl)
+            || (localSession != null && localSession != session)
+            || now - state.snapshotAt > session.timeout() / 2) {
+            return null;
+        }
+        Set<String> changed = new HashSet<>(state.changedAttributes);
+        changed.addAll(modified);
+        // the delta would be as big as the snapshot
+        return changed.containsAll(session.data().keySet()) ? null : changed;
+    }
+
+    /**
+     * Reads the session snapshot and delta from the cluster, storing them in the local map
+     * unless a newer copy is already there.
+     */
+    private void fetch(String id, boolean retry, Handler<AsyncResult<Void>> resultHandler) {
+        clusteredSessionStore.get(id, res -> {
+            if (res.failed() || res.result() == null) {
+                resultHandler.handle(res.mapEmpty());
+                return;
+            }
+            Session session = ExtendedSession.adapt(res.result());
+            withDeltaMap(mapRes -> {
+                if (mapRes.failed()) {
+                    resultHandler.handle(Future.failedFuture(mapRes.cause()));
+                    return;
+                }
+                mapRes.result().get(id, deltaRes -> {
+                    if (deltaRes.failed()) {
+                        resultHandler.handle(Future.failedFuture(deltaRes.cause()));
+                        return;
+                    }
+                    SessionDelta delta = deltaRes.result();
+                    int snapshotVersion = version(session);
+                    if (retry && delta != null && delta.baseVersion() > snapshotVersion) {
+                        // a new snapshot has been written in the meantime
+                        fetch(id, false, resultHandler);
+                        return;
+                    }
+                    Set<String> changedAttributes = Collections.emptySet();
+                    if (delta != null && delta.baseVersion() == snapshotVersion
+                        && session instanceof ExtendedSessionImpl) {
+                        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) session;
+                        delta.applyTo(extendedSession);
+                        extendedSession.takeModifiedAttributes();
+                        changedAttributes = delta.attributeNames();
+                        // versions can only be incremented
+                        while (extendedSession.version() < delta.version()) {
+                            extendedSession.incrementVersion();
+                        }
+                        if (delta.lastAccessed() > session.lastAccessed()) {
+                            session.setAccessed();
+                        }
+                    }
+                    cache(session, new ReplicationState(snapshotVersion, res.result().lastAccessed(),
+                        session.lastAccessed(), changedAttributes));
+                    resultHandler.handle(Future.succeededFuture());
+                });
+            });
+        });
+    }
+
+    /**
+     * Asks the owner of the session, if any, to hand it off, then reads it from the cluster
+     * and claims its ownership.
+     */
+    private void takeOver(String id, Handler<AsyncResult<Void>> resultHandler) {
+        withOwnerMap(mapRes -> {
+            if (mapRes.failed()) {
+                resultHandler.handle(Future.failedFuture(mapRes.cause()));
+                return;
+            }
+            mapRes.result().get(id, ownerRes -> {
+                String owner = ownerRes.succeeded() ? ownerRes.result() : null;
+                Handler<Void> fetchAndClaim = v -> fetch(id, true, res -> {
+                    Session session = localMap.get(id);
+                    if (res.succeeded() && session != null) {
+                        takeovers.increment();
+                        claim(session);
+                        // write a snapshot, superseding changes the previous owner could not hand off in time
+                        replicationStates.remove(id);
+                    }
+                    resultHandler.handle(res);
+                });
+                if (owner == null || owner.equals(ownerId)) {
+                    fetchAndClaim.handle(null);
+                } else {
+                    // an unreachable owner fails fast or times out, the cluster copy is read anyway
+                    DeliveryOptions options = new DeliveryOptions().setSendTimeout(HANDOFF_TIMEOUT)
+                        .addHeader(OWNER_FIELD, ownerId);
+                    vertx.eventBus().send(handoffAddress(owner), id, options, reply -> fetchAndClaim.handle(null));
+                }
+            });
+        });
+    }
+
+    /**
+     * Writes the pending changes of a session requested by another node, records the requesting node
+     * as the new owner and drops the local copy.
+     *
+     * The owner is recorded before replying, so that puts of requests still in flight here are rejected.
+     */
+    private void onHandoff(Message<String> message) {
+        String id = message.body();
+        String newOwner = message.headers().get(OWNER_FIELD);
+        flush(id, res -> {
+            Session session = localMap.get(id);
+            if (session != null && localMap.remove(id, session)) {
+                replicationStates.remove(id);
+                expirationIndex.remove(id);
+                handoffs.increment();
             }
+            if (newOwner == null) {
+                message.reply(null);
+                return;
+            }
+            long timeout = session != null ? session.timeout() : HANDOFF_TIMEOUT;
+            withOwnerMap(mapRes -> {
+                if (mapRes.failed()) {
+                    message.reply(null);
+                    return;
+                }
+                mapRes.result().put(id, newOwner, timeout, ownerRes -> {
+                    if (ownerRes.failed()) {
+                        logger.debug("Cannot record owner of session {}", id, ownerRes.cause());
+                    }
+                    message.reply(null);
+                });
+            });
+        });
+    }
+
+    /**
+     * Records this node as the owner of the session and tells other nodes to drop their copies.
+     */
+    private void claim(Session session) {
+        recordOwner(session);
+        vertx.eventBus().publish(invalidationAddress,
+            new JsonObject().put(ID_FIELD, session.id()).put(OWNER_FIELD, ownerId)
+        );
+    }
+
+    private void recordOwner(Session session) {
+        String owner = ownerId;
+        withOwnerMap(mapRes -> {
+            if (mapRes.succeeded()) {
+                mapRes.result().put(session.id(), owner, session.timeout(), res -> {
+                    if (res.failed()) {
+                        logger.debug("Cannot record owner of session {}", session.id(), res.cause());
+                    }
+                });
+            }
+        });
+    }
+
+    private String handoffAddress(String owner) {
+        return sessionMapName + ".handoff." + owner;
+    }
+
+    private void cache(Session session, ReplicationState state) {
+        Session current = localMap.putIfAbsent(session.id(), session);
+        if (current == null) {
+            replicationStates.put(session.id(), state);
+            expirationIndex.schedule(session.id(), ExpirationIndex.deadline(session));
+        } else if ((version(current) < version(session) || isExpired(current, System.currentTimeMillis()))
+            && localMap.replace(session.id(), current, session)) {
+            replicationStates.put(session.id(), state);
+            expirationIndex.schedule(session.id(), ExpirationIndex.deadline(session));
         }
-        for (String id : toRemove) {
-            delete(id, res -> expirationHandler.handle(res.map(x -> id)));
+    }
+
+    private void onInvalidation(Message<JsonObject> message) {
+        String id = message.body().getString(ID_FIELD);
+        Integer version = message.body().getInteger(VERSION_FIELD);
+        String owner = message.body().getString(OWNER_FIELD);
+        if (owner != null && owner.equals(ownerId)) {
+            return;
         }
-        if (!closed) {
-            setTimer();
+        Session localSession = localMap.get(id);
+        if (localSession != null && (owner != null || version == null || version(localSession) < version)
+            && localMap.remove(id, localSession)) {
+            replicationStates.remove(id);
+            expirationIndex.remove(id);
+            invalidations.increment();
+            if (owner != null) {
+                // claimed without a handoff, write the local changes before they are lost
+                writePending(id, res -> {
+                    if (res.failed()) {
+                        logger.warn("Cannot write changes of session {} claimed by {}", id, owner, res.cause());
+                    }
+                });
+            }
+        }
+    }
+
+    private void withSessionMap(Handler<AsyncResult<AsyncMap<String, Session>>> handler) {
+        if (sessionMap != null) {
+            handler.handle(Future.succeededFuture(sessionMap));
+        } else {
+            vertx.sharedData().<String, Session>getClusterWideMap(sessionMapName, res -> {
+                if (res.succeeded()) {
+                    sessionMap = res.result();
+                }
+                handler.handle(res);
+            });
+        }
+    }
+
+    private void withOwnerMap(Handler<AsyncResult<AsyncMap<String, String>>> handler) {
+        if (ownerMap != null) {
+            handler.handle(Future.succeededFuture(ownerMap));
+        } else {
+            vertx.sharedData().<String, String>getClusterWideMap(ownerMapName, res -> {
+                if (res.succeeded()) {
+                    ownerMap = res.result();
+                }
+                handler.handle(res);
+            });
+        }
+    }
+
+    private void withDeltaMap(Handler<AsyncResult<AsyncMap<String, SessionDelta>>> handler) {
+        if (deltaMap != null) {
+            handler.handle(Future.succeededFuture(deltaMap));
+        } else {
+            vertx.sharedData().<String, SessionDelta>getClusterWideMap(deltaMapName, res -> {
+                if (res.succeeded()) {
+                    deltaMap = res.result();
+                }
+                handler.handle(res);
+            });
+        }
+    }
+
+    private static boolean isExpired(Session session, long now) {
+        return now - session.lastAccessed() > session.timeout();
+    }
+
+    static int version(Session session) {
+        return (session instanceof SessionImpl) ? ((SessionImpl) session).version() : 0;
+    }
+
+    private static void incrementVersion(Session session) {
+        if (session instanceof SessionImpl) {
+            ((SessionImpl) session).incrementVersion();
+        }
+    }
+
+    private static void setAccessed(Session session, long lastAccessed) {
+        if (session instanceof ExtendedSession) {
+            ((ExtendedSession) session).setAccessed(lastAccessed);
+        } else {
+            session.setAccessed();
         }
     }
 
@@ -177,5 +829,20 @@ class NearCacheSessionStoreImpl implements NearCacheSessionStore, Handler<Long>
         }
     }
 
+    /**
+     * Replication status of a session held in the local map.
+     */
+    private static final class ReplicationState {
+        private final int snapshotVersion;
+        private final long snapshotAt;
+        private final long replicatedAt;
+        private final Set<String> changedAttributes;
 
+        private ReplicationState(int snapshotVersion, long snapshotAt, long replicatedAt, Set<String> changedAttributes) {
+            this.snapshotVersion = snapshotVersion;
+            this.snapshotAt = snapshotAt;
+            this.replicatedAt = replicatedAt;
+            this.changedAttributes = changedAttributes;
+        }
+    }
 }
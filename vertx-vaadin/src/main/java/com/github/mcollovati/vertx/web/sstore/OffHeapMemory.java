@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Buddy allocator over direct memory arenas.
+ *
+ * Blocks are powers of two, from {@value #MIN_BLOCK_SIZE} bytes up to the arena size. Free blocks are
+ * kept in per size lists linked through the first bytes of the blocks themselves, and the only heap
+ * state is one byte per minimum block of each arena, so the number of stored objects does not
+ * add work to the garbage collector. Freed blocks are merged with their buddies and an arena that
+ * becomes completely free is given back, unless it is the last one.
+ *
+ * Addresses hold the arena index in the high 32 bits and the offset in the arena in the low ones.
+ * This class is not thread safe.
+ */
+class OffHeapMemory {
+
+    static final int MIN_BLOCK_SIZE = 256;
+    static final int DEFAULT_ARENA_SIZE = 32 * 1024 * 1024;
+
+    private static final int MIN_BLOCK_SHIFT = Integer.numberOfTrailingZeros(MIN_BLOCK_SIZE);
+    private static final long NONE = -1;
+    private static final int NEXT = 0;
+    private static final int PREV = 8;
+
+    private final int arenaSize;
+    private final int maxArenas;
+    private final int maxOrder;
+    private final long[] freeLists;
+    private final List<Arena> arenas = new ArrayList<>();
+    private volatile long used;
+    private volatile long reserved;
+
+    /**
+     * @param capacity the maximum amount of memory to reserve
+     */
+    OffHeapMemory(long capacity) {
+        this(capacity, (int) Math.min(DEFAULT_ARENA_SIZE, Long.highestOneBit(Math.max(capacity, MIN_BLOCK_SIZE))));
+    }
+
+    /**
+     * @param capacity  the maximum amount of memory to reserve, rounded up to a multiple of the arena size
+     * @param arenaSize size of each arena, a power of two not smaller than {@link #MIN_BLOCK_SIZE}
+     */
+    OffHeapMemory(long capacity, int arenaSize) {
+        if (Integer.bitCount(arenaSize) != 1 || arenaSize < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Arena size must be a power of two not smaller than " + MIN_BLOCK_SIZE);
+        }
+        this.arenaSize = arenaSize;
+        this.maxArenas = (int) Math.max(1, (capacity + arenaSize - 1) / arenaSize);
+        this.maxOrder = Integer.numberOfTrailingZeros(arenaSize) - MIN_BLOCK_SHIFT;
+        this.freeLists = new long[maxOrder + 1];
+        Arrays.fill(freeLists, NONE);
+    }
+
+    /**
+     * Allocates a block of at least {@code size} bytes.
+     *
+     * @return the address of the block, or {@code -1} if there is no room for it
+     */
+    long allocate(int size) {
+        int order = order(size);
+        if (order > maxOrder) {
+            return NONE;
+        }
+        int free = order;
+        while (free <= maxOrder && freeLists[free] == NONE) {
+            free++;
+        }
+        if (free > maxOrder) {
+            if (!newArena()) {
+                return NONE;
+            }
+            free = maxOrder;
+        }
+        long address = freeLists[free];
+        unlink(address, free);
+        while (free > order) {
+            free--;
+            link(address + (MIN_BLOCK_SIZE << free), free);
+        }
+        arena(address).state[index(address)] = (byte) (order + 1);
+        used += MIN_BLOCK_SIZE << order;
+        return address;
+    }
+
+    /**
+     * Frees a block returned by {@link #allocate(int)}.
+     */
+    void free(long address) {
+        Arena arena = arena(address);
+        int order = arena.state[index(address)] - 1;
+        if (order < 0) {
+            throw new IllegalArgumentException("Not an allocated block: " + address);
+        }
+        used -= MIN_BLOCK_SIZE << order;
+        arena.state[index(address)] = 0;
+        while (order < maxOrder) {
+            long buddy = address ^ (MIN_BLOCK_SIZE << order);
+            if (arena.state[index(buddy)] != -(order + 1)) {
+                break;
+            }
+            unlink(buddy, order);
+            address = Math.min(address, buddy);
+            order++;
+        }
+        if (order == maxOrder && reserved > arenaSize) {
+            arenas.set(arenaIndex(address), null);
+            reserved -= arenaSize;
+        } else {
+            link(address, order);
+        }
+    }
+
+    void write(long address, Buffer buffer) {
+        ByteBuffer bytes = arena(address).memory.duplicate();
+        bytes.position(offset(address));
+        bytes.put(buffer.getByteBuf().nioBuffer());
+    }
+
+    Buffer read(long address, int length) {
+        ByteBuffer bytes = arena(address).memory.duplicate();
+        bytes.position(offset(address));
+        byte[] data = new byte[length];
+        bytes.get(data);
+        return Buffer.buffer(data);
+    }
+
+    /**
+     * Frees all blocks and gives back all the arenas.
+     */
+    void clear() {
+        arenas.clear();
+        Arrays.fill(freeLists, NONE);
+        used = 0;
+        reserved = 0;
+    }
+
+    /**
+     * Gets the amount of memory taken by allocated blocks.
+     */
+    long used() {
+        return used;
+    }
+
+    /**
+     * Gets the amount of direct memory held by the arenas.
+     */
+    long reserved() {
+        return reserved;
+    }
+
+    private boolean newArena() {
+        int index = arenas.indexOf(null);
+        if (index < 0) {
+            if (arenas.size() >= maxArenas) {
+                return false;
+            }
+            index = arenas.size();
+            arenas.add(null);
+        }
+        arenas.set(index, new Arena(ByteBuffer.allocateDirect(arenaSize), new byte[arenaSize >>> MIN_BLOCK_SHIFT]));
+        reserved += arenaSize;
+        link((long) index << 32, maxOrder);
+        return true;
+    }
+
+    private void link(long address, int order) {
+        long head = freeLists[order];
+        ByteBuffer memory = arena(address).memory;
+        memory.putLong(offset(address) + NEXT, head);
+        memory.putLong(offset(address) + PREV, NONE);
+        if (head != NONE) {
+            arena(head).memory.putLong(offset(head) + PREV, address);
+        }
+        freeLists[order] = address;
+        arena(address).state[index(address)] = (byte) -(order + 1);
+    }
+
+    private void unlink(long address, int order) {
+        ByteBuffer memory = arena(address).memory;
+        long next = memory.getLong(offset(address) + NEXT);
+        long prev = memory.getLong(offset(address) + PREV);
+        if (prev == NONE) {
+            freeLists[order] = next;
+        } else {
+            arena(prev).memory.putLong(offset(prev) + NEXT, next);
+        }
+        if (next != NONE) {
+            arena(next).memory.putLong(offset(next) + PREV, prev);
+        }
+        arena(address).state[index(address)] = 0;
+    }
+
+    private Arena arena(long address) {
+        return arenas.get(arenaIndex(address));
+    }
+
+    private static int order(int size) {
+        int blocks = (Math.max(size, 1) + MIN_BLOCK_SIZE - 1) >>> MIN_BLOCK_SHIFT;
+        return 32 - Integer.numberOfLeadingZeros(blocks - 1);
+    }
+
+    private static int arenaIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int index(long address) {
+        return offset(address) >>> MIN_BLOCK_SHIFT;
+    }
+
+    private static final class Arena {
+        private final ByteBuffer memory;
+        private final byte[] state;
+
+        private Arena(ByteBuffer memory, byte[] state) {
+            this.memory = memory;
+            this.state = state;
+        }
+    }
+}
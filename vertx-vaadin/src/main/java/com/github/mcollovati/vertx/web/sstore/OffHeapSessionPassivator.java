@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Keeps passivated sessions in direct memory, through an {@link OffHeapMemory} allocator.
+ *
+ * Sessions that do not fit in the remaining memory are not passivated.
+ */
+class OffHeapSessionPassivator extends SessionPassivator {
+
+    private final OffHeapMemory memory;
+
+    OffHeapSessionPassivator(OffHeapMemory memory) {
+        this.memory = memory;
+    }
+
+    @Override
+    protected Record write(Buffer buffer, long deadline) {
+        long address = memory.allocate(buffer.length());
+        if (address < 0) {
+            return null;
+        }
+        memory.write(address, buffer);
+        return new OffHeapRecord(address, buffer.length(), deadline);
+    }
+
+    @Override
+    protected Buffer read(Record record) {
+        OffHeapRecord offHeapRecord = (OffHeapRecord) record;
+        return memory.read(offHeapRecord.address, offHeapRecord.length);
+    }
+
+    @Override
+    protected void release(Record record) {
+        memory.free(((OffHeapRecord) record).address);
+    }
+
+    @Override
+    protected void releaseAll() {
+        memory.clear();
+    }
+
+    long usedMemory() {
+        return memory.used();
+    }
+
+    long reservedMemory() {
+        return memory.reserved();
+    }
+
+    private static final class OffHeapRecord extends Record {
+        private final long address;
+        private final int length;
+
+        private OffHeapRecord(long address, int length, long deadline) {
+            super(deadline);
+            this.address = address;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import io.vertx.core.Vertx;
+
+/**
+ * A local session store that keeps idle sessions serialized in direct memory,
+ * outside of the garbage collected heap.
+ *
+ * Sessions stay in the heap while they are in use and are moved off heap once they have not been
+ * accessed for the idle time; they are deserialized back on the next access. Sessions that cannot
+ * be serialized, or that do not fit in the remaining memory, stay in the heap.
+ */
+public interface OffHeapSessionStore extends ExtendedSessionStore {
+
+    /**
+     * Default name for map used to store sessions
+     */
+    String DEFAULT_SESSION_MAP_NAME = "vertx-vaadin.offheap-sessions";
+
+    /**
+     * Default maximum amount, in bytes, of direct memory used for sessions
+     */
+    long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+
+    /**
+     * Default time, in ms, after which an idle session is moved off heap
+     */
+    long DEFAULT_IDLE_TIME = 30000;
+
+    /**
+     * Sets the time after which an idle session is moved off heap.
+     *
+     * @param idleTime time, in ms, after which an idle session is moved off heap
+     * @return a reference to this, so the API can be used fluently
+     */
+    OffHeapSessionStore setIdleTime(long idleTime);
+
+    /**
+     * Gets the amount of direct memory taken by sessions.
+     *
+     * @return the used memory, in bytes
+     */
+    long usedMemory();
+
+    /**
+     * Gets the amount of direct memory reserved by this store.
+     *
+     * @return the reserved memory, in bytes
+     */
+    long reservedMemory();
+
+    /**
+     * Create a session store
+     *
+     * @param vertx the Vert.x instance
+     * @return the session store
+     */
+    static OffHeapSessionStore create(Vertx vertx) {
+        return create(vertx, DEFAULT_MAX_MEMORY);
+    }
+
+    /**
+     * Create a session store
+     *
+     * @param vertx     the Vert.x instance
+     * @param maxMemory maximum amount, in bytes, of direct memory used for sessions
+     * @return the session store
+     */
+    static OffHeapSessionStore create(Vertx vertx, long maxMemory) {
+        return create(vertx, DEFAULT_SESSION_MAP_NAME, maxMemory, ExtendedLocalSessionStore.DEFAULT_REAPER_INTERVAL);
+    }
+
+    /**
+     * Create a session store
+     *
+     * @param vertx          the Vert.x instance
+     * @param sessionMapName name for map used to store sessions in use
+     * @param maxMemory      maximum amount, in bytes, of direct memory used for sessions
+     * @param reaperInterval how often, in ms, to check for expired and idle sessions
+     * @return the session store
+     */
+    static OffHeapSessionStore create(Vertx vertx, String sessionMapName, long maxMemory, long reaperInterval) {
+        return new OffHeapSessionStoreImpl(vertx, sessionMapName, maxMemory, reaperInterval);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Session;
+
+/**
+ * Off-heap session store built on {@link ExtendedLocalSessionStoreImpl}, passivating idle sessions
+ * to an {@link OffHeapSessionPassivator}.
+ *
+ * Sessions in use are kept as live instances, since the Vaadin session lock is a session attribute
+ * and concurrent requests must share it.
+ */
+class OffHeapSessionStoreImpl implements OffHeapSessionStore {
+
+    private final ExtendedLocalSessionStoreImpl sessionStore;
+    private final OffHeapSessionPassivator passivator;
+
+    OffHeapSessionStoreImpl(Vertx vertx, String sessionMapName, long maxMemory, long reaperInterval) {
+        this.sessionStore = new ExtendedLocalSessionStoreImpl(vertx, sessionMapName, reaperInterval);
+        this.passivator = new OffHeapSessionPassivator(new OffHeapMemory(maxMemory));
+        this.sessionStore.setPassivation(DEFAULT_IDLE_TIME, passivator);
+    }
+
+    @Override
+    public OffHeapSessionStore setIdleTime(long idleTime) {
+        if (idleTime <= 0) {
+            throw new IllegalArgumentException("Idle time must be greater than zero");
+        }
+        sessionStore.setPassivation(idleTime, passivator);
+        return this;
+    }
+
+    @Override
+    public long usedMemory() {
+        return passivator.usedMemory();
+    }
+
+    @Override
+    public long reservedMemory() {
+        return passivator.reservedMemory();
+    }
+
+    @Override
+    public OffHeapSessionStore expirationHandler(Handler<AsyncResult<String>> handler) {
+        sessionStore.expirationHandler(handler);
+        return this;
+    }
+
+    @Override
+    public OffHeapSessionStore expiredSessionHandler(Handler<Session> handler) {
+        sessionStore.expiredSessionHandler(handler);
+        return this;
+    }
+
+    @Override
+    public long retryTimeout() {
+        return sessionStore.retryTimeout();
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return sessionStore.createSession(timeout);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return sessionStore.createSession(timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+        sessionStore.get(id, resultHandler);
+    }
+
+    @Override
+    public Session peek(String id) {
+        return sessionStore.peek(id);
+    }
+
+    @Override
+    public void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        sessionStore.touch(id, lastAccessed, resultHandler);
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+        sessionStore.delete(id, resultHandler);
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        sessionStore.put(session, resultHandler);
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+        sessionStore.clear(resultHandler);
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        sessionStore.size(resultHandler);
+    }
+
+    @Override
+    public void close() {
+        sessionStore.close();
+    }
+}
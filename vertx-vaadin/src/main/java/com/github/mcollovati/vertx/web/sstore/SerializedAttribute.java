@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.function.Function;
+
+/**
+ * Session attribute read from the cluster and not yet deserialized.
+ *
+ * Sessions deserialize it on first access; until then, it is written back
+ * to the cluster as the bytes it has been read from.
+ */
+public final class SerializedAttribute {
+
+    private final byte formatId;
+    private final byte[] bytes;
+    private final Function<byte[], Object> decoder;
+    private Object value;
+
+    SerializedAttribute(byte formatId, byte[] bytes, Function<byte[], Object> decoder) {
+        this.formatId = formatId;
+        this.bytes = bytes;
+        this.decoder = decoder;
+    }
+
+    byte formatId() {
+        return formatId;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * Deserializes the attribute; later calls return the same instance.
+     *
+     * @return the attribute value
+     */
+    public synchronized Object deserialize() {
+        if (value == null) {
+            value = decoder.apply(bytes);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.Map;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Encodes session attributes for replication to the cluster.
+ *
+ * Serialized sessions start with a format header holding the {@link #formatId()}
+ * of the codec that wrote them, so that readers can pick the matching codec
+ * from {@link SessionCodecs} and codecs can be rolled out incrementally.
+ */
+public interface SessionCodec {
+
+    /**
+     * Default size, in bytes, of the encoded session attributes above which the compact codec
+     * compresses them.
+     */
+    int DEFAULT_COMPRESSION_THRESHOLD = 16 * 1024;
+
+    /**
+     * Gets the identifier of the format written by this codec.
+     *
+     * Zero is reserved for the legacy {@link io.vertx.ext.web.sstore.impl.SessionImpl} format.
+     *
+     * @return the format identifier
+     */
+    byte formatId();
+
+    /**
+     * Encodes session attributes.
+     *
+     * Values not yet deserialized are {@link SerializedAttribute}s: codecs can write back
+     * the bytes of those read in their own format, and must deserialize the others.
+     *
+     * @param data the session attributes
+     * @return the encoded attributes
+     */
+    Buffer encode(Map<String, Object> data);
+
+    /**
+     * Decodes session attributes.
+     *
+     * @param buffer the encoded attributes
+     * @return the session attributes
+     */
+    Map<String, Object> decode(Buffer buffer);
+
+    /**
+     * Decodes session attributes, possibly leaving values as {@link SerializedAttribute}s
+     * to be deserialized on first access.
+     *
+     * @param buffer the encoded attributes
+     * @return the session attributes
+     */
+    default Map<String, Object> decodeLazily(Buffer buffer) {
+        return decode(buffer);
+    }
+
+    /**
+     * Creates a compact binary codec, that writes class names and strings once
+     * and lengths as varints.
+     *
+     * @return the codec
+     */
+    static SessionCodec compact() {
+        return new CompactSessionCodec(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a compact binary codec, that also compresses the encoded session attributes
+     * as a whole when their total size is larger than the given threshold.
+     *
+     * @param compressionThreshold size, in bytes, of all the encoded attributes above which they are compressed
+     * @return the codec
+     */
+    static SessionCodec compact(int compressionThreshold) {
+        return new CompactSessionCodec(compressionThreshold);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link SessionCodec}s available to read sessions.
+ *
+ * Sessions are read by the cluster manager, so codecs are registered per JVM and chosen by the format
+ * written in the session. The codec used to write sessions is set on the session store, see
+ * {@link NearCacheSessionStore#setCodec(SessionCodec)}; until then sessions are written in the legacy format,
+ * that can be read also by nodes without codec support.
+ */
+public final class SessionCodecs {
+
+    /**
+     * Format identifier reserved for the legacy session format.
+     */
+    public static final byte LEGACY_FORMAT = 0;
+
+    private static final ConcurrentMap<Byte, SessionCodec> codecs = new ConcurrentHashMap<>();
+
+    static {
+        register(SessionCodec.compact());
+    }
+
+    private SessionCodecs() {
+    }
+
+    /**
+     * Registers a codec to read sessions written in its format.
+     *
+     * @param codec the codec
+     */
+    public static void register(SessionCodec codec) {
+        if (Objects.requireNonNull(codec).formatId() == LEGACY_FORMAT) {
+            throw new IllegalArgumentException("Format " + LEGACY_FORMAT + " is reserved for legacy sessions");
+        }
+        codecs.put(codec.formatId(), codec);
+    }
+
+    /**
+     * Gets the codec that reads the given format.
+     *
+     * @param formatId the format identifier
+     * @return the codec
+     * @throws IllegalStateException if no codec is registered for the format
+     */
+    public static SessionCodec forFormat(byte formatId) {
+        SessionCodec codec = codecs.get(formatId);
+        if (codec == null) {
+            throw new IllegalStateException("No session codec registered for format " + formatId);
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.shareddata.impl.ClusterSerializable;
+import io.vertx.ext.web.Session;
+
+/**
+ * Attributes of a session changed since its last full snapshot was written to the cluster.
+ *
+ * A delta applies only to the snapshot whose version is equal to {@link #baseVersion()};
+ * attribute values are kept in serialized form until the delta is applied.
+ * Values are encoded by the {@link SessionCodec} the session is written with, or by the
+ * compact one when sessions are written in the legacy format.
+ *
+ * This class is public only to be instantiated when read from the cluster map.
+ */
+public class SessionDelta implements ClusterSerializable {
+
+    private int baseVersion;
+    private int version;
+    private long lastAccessed;
+    private byte format;
+    private Set<String> changedAttributes = new HashSet<>();
+    private Set<String> removedAttributes = new HashSet<>();
+    private Buffer attributes;
+
+    public SessionDelta() {
+    }
+
+    SessionDelta(int baseVersion, Session session, Set<String> changedAttributes, SessionCodec sessionCodec) {
+        this.baseVersion = baseVersion;
+        this.version = NearCacheSessionStoreImpl.version(session);
+        this.lastAccessed = session.lastAccessed();
+        Map<String, Object> data = session.data();
+        Map<String, Object> changed = new HashMap<>();
+        for (String name : changedAttributes) {
+            Object value = data.get(name);
+            if (value == null) {
+                removedAttributes.add(name);
+            } else {
+                changed.put(name, value);
+            }
+        }
+        SessionCodec codec = Optional.ofNullable(sessionCodec)
+            .orElseGet(() -> SessionCodecs.forFormat(CompactSessionCodec.FORMAT_ID));
+        this.format = codec.formatId();
+        this.changedAttributes = changed.keySet();
+        this.attributes = codec.encode(changed);
+    }
+
+    int baseVersion() {
+        return baseVersion;
+    }
+
+    int version() {
+        return version;
+    }
+
+    long lastAccessed() {
+        return lastAccessed;
+    }
+
+    Set<String> attributeNames() {
+        Set<String> names = new HashSet<>(changedAttributes);
+        names.addAll(removedAttributes);
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Applies changed attributes to the session.
+     *
+     * @param session the session read from the snapshot this delta is based on
+     */
+    void applyTo(Session session) {
+        SessionCodecs.forFormat(format).decodeLazily(attributes).forEach(session::put);
+        removedAttributes.forEach(session::remove);
+    }
+
+    @Override
+    public void writeToBuffer(Buffer buffer) {
+        buffer.appendInt(baseVersion);
+        buffer.appendInt(version);
+        buffer.appendLong(lastAccessed);
+        buffer.appendByte(format);
+        appendStrings(buffer, changedAttributes);
+        appendStrings(buffer, removedAttributes);
+        buffer.appendInt(attributes.length());
+        buffer.appendBuffer(attributes);
+    }
+
+    @Override
+    public int readFromBuffer(int pos, Buffer buffer) {
+        baseVersion = buffer.getInt(pos);
+        version = buffer.getInt(pos + 4);
+        lastAccessed = buffer.getLong(pos + 8);
+        format = buffer.getByte(pos + 16);
+        pos += 17;
+        changedAttributes = new HashSet<>();
+        pos = getStrings(pos, buffer, changedAttributes);
+        removedAttributes = new HashSet<>();
+        pos = getStrings(pos, buffer, removedAttributes);
+        int length = buffer.getInt(pos);
+        pos += 4;
+        attributes = buffer.getBuffer(pos, pos + length);
+        return pos + length;
+    }
+
+    private static void appendString(Buffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length);
+        buffer.appendBytes(bytes);
+    }
+
+    private static String getString(int pos, Buffer buffer) {
+        int length = buffer.getInt(pos);
+        return new String(buffer.getBytes(pos + 4, pos + 4 + length), StandardCharsets.UTF_8);
+    }
+
+    private static void appendStrings(Buffer buffer, Set<String> values) {
+        buffer.appendInt(values.size());
+        values.forEach(value -> appendString(buffer, value));
+    }
+
+    private static int getStrings(int pos, Buffer buffer, Set<String> values) {
+        int count = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < count; i++) {
+            values.add(getString(pos, buffer));
+            pos += 4 + buffer.getInt(pos);
+        }
+        return pos;
+    }
+}
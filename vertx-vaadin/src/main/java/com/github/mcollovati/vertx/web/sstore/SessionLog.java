@@ -0,0 +1,329 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of session writes and deletions.
+ *
+ * Every record holds its length, a checksum, the record type, the session deadline and id, and the
+ * serialized session for writes. Touches only record the new deadline of a session, and are applied
+ * to its latest write when the log is read. The position of the latest record of every session is held in memory,
+ * and the log is compacted by copying only those records to a new file once most of its content is stale.
+ * A partially written record at the end of the log, left by a crash, is dropped when the log is opened.
+ * A corrupted record followed by other records is skipped; if its length cannot be trusted either, a copy
+ * of the log is moved aside before the rest of it is dropped.
+ *
+ * This class is not thread safe.
+ */
+class SessionLog {
+
+    static final String LOG_FILE = "sessions.log";
+    static final long DEFAULT_COMPACTION_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionLog.class);
+    private static final String COMPACTION_FILE = "sessions.log.compacting";
+    private static final String CORRUPTED_FILE = "sessions.log.corrupted";
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte TOUCH = 3;
+    private static final int HEADER_SIZE = 8;
+
+    private final File directory;
+    private final long compactionThreshold;
+    private final Map<String, Entry> index = new HashMap<>();
+    private FileChannel channel;
+    private long size;
+    private long liveSize;
+
+    SessionLog(File directory, long compactionThreshold) {
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Creates a record that writes the session.
+     *
+     * @return the record, or null if the session cannot be serialized
+     */
+    static Buffer putRecord(Session session) {
+        Buffer record = header(PUT, session.id(), session.lastAccessed() + session.timeout());
+        return SessionSerializer.write(session, record) ? seal(record) : null;
+    }
+
+    /**
+     * Creates a record that updates the deadline of the session, without writing its data.
+     */
+    static Buffer touchRecord(String id, long deadline) {
+        return seal(header(TOUCH, id, deadline));
+    }
+
+    /**
+     * Creates a record that deletes the session.
+     */
+    static Buffer deleteRecord(String id) {
+        return seal(header(DELETE, id, 0));
+    }
+
+    /**
+     * Opens the log, creating it if needed, and reads the sessions that are not expired.
+     */
+    List<Session> open(long now) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create session log directory " + directory);
+        }
+        channel = FileChannel.open(new File(directory, LOG_FILE).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        liveSize = 0;
+        size = 0;
+        long length = channel.size();
+        while (size < length) {
+            int recordLength = length - size < HEADER_SIZE ? 0 : read(size, HEADER_SIZE).getInt(0);
+            boolean complete = recordLength >= HEADER_SIZE && recordLength <= length - size;
+            Buffer record = complete ? read(size, recordLength) : null;
+            if (record != null && checksum(record) == record.getInt(4)) {
+                apply(record, size);
+            } else if (complete && recordLength < length - size) {
+                logger.warn("Skipping corrupted record of {} bytes at offset {} of {}", recordLength, size, LOG_FILE);
+            } else {
+                if (length - size >= HEADER_SIZE && recordLength < HEADER_SIZE) {
+                    File corrupted = new File(directory, CORRUPTED_FILE);
+                    Files.copy(new File(directory, LOG_FILE).toPath(), corrupted.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                    logger.warn("Unreadable record at offset {} of {}, log copied to {}", size, LOG_FILE, corrupted);
+                }
+                logger.warn("Dropping {} bytes of incomplete records at the end of {}", length - size, LOG_FILE);
+                channel.truncate(size);
+                break;
+            }
+            size += recordLength;
+        }
+        List<Session> sessions = new ArrayList<>(index.size());
+        for (Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if (entry.deadline > now) {
+                try {
+                    Session session = SessionSerializer.read(read(entry.offset, entry.length), payloadOffset(e.getKey()));
+                    if (entry.touched) {
+                        ExtendedLocalSessionStoreImpl.setAccessed(session, entry.deadline - session.timeout());
+                    }
+                    sessions.add(session);
+                    continue;
+                } catch (IOException ex) {
+                    logger.warn("Cannot read session {} from log", e.getKey(), ex);
+                }
+            }
+            liveSize -= entry.length;
+            it.remove();
+        }
+        compactIfNeeded();
+        return sessions;
+    }
+
+    /**
+     * Appends records created by {@link #putRecord(Session)}, {@link #touchRecord(String, long)}
+     * and {@link #deleteRecord(String)}.
+     */
+    void append(List<Buffer> records) throws IOException {
+        Buffer batch = Buffer.buffer();
+        records.forEach(batch::appendBuffer);
+        write(channel, batch, size);
+        long offset = size;
+        for (Buffer record : records) {
+            apply(record, offset);
+            offset += record.length();
+        }
+        size = offset;
+        compactIfNeeded();
+    }
+
+    /**
+     * Drops all the records.
+     */
+    void clear() throws IOException {
+        channel.truncate(0);
+        index.clear();
+        size = 0;
+        liveSize = 0;
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Gets the number of sessions in the log.
+     */
+    int sessions() {
+        return index.size();
+    }
+
+    /**
+     * Gets the size of the log, in bytes.
+     */
+    long size() {
+        return size;
+    }
+
+    private void apply(Buffer record, long offset) {
+        String id = id(record);
+        byte type = record.getByte(HEADER_SIZE);
+        if (type == TOUCH) {
+            Entry entry = index.get(id);
+            if (entry != null) {
+                entry.deadline = record.getLong(HEADER_SIZE + 1);
+                entry.touched = true;
+            }
+            return;
+        }
+        Entry previous = type == PUT
+            ? index.put(id, new Entry(offset, record.length(), record.getLong(HEADER_SIZE + 1)))
+            : index.remove(id);
+        if (previous != null) {
+            liveSize -= previous.length;
+        }
+        if (record.getByte(HEADER_SIZE) == PUT) {
+            liveSize += record.length();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (size < compactionThreshold || liveSize * 2 > size) {
+            return;
+        }
+        File compacted = new File(directory, COMPACTION_FILE);
+        long offset = 0;
+        long live = 0;
+        try (FileChannel target = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                Entry entry = e.getValue();
+                long copied = 0;
+                while (copied < entry.length) {
+                    copied += channel.transferTo(entry.offset + copied, entry.length - copied, target);
+                }
+                entry.offset = offset;
+                offset += entry.length;
+                live += entry.length;
+                if (entry.touched) {
+                    // the copied write still holds the deadline it was written with
+                    Buffer touch = touchRecord(e.getKey(), entry.deadline);
+                    write(target, touch, offset);
+                    offset += touch.length();
+                    target.position(offset);
+                }
+            }
+            target.force(true);
+        }
+        channel.close();
+        Files.move(compacted.toPath(), new File(directory, LOG_FILE).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(new File(directory, LOG_FILE).toPath(), StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        logger.debug("Session log compacted from {} to {} bytes", size, offset);
+        size = offset;
+        liveSize = live;
+    }
+
+    private Buffer read(long offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, offset + bytes.position()) < 0) {
+                throw new IOException("Unexpected end of session log");
+            }
+        }
+        return Buffer.buffer(bytes.array());
+    }
+
+    private static void write(FileChannel channel, Buffer buffer, long position) throws IOException {
+        ByteBuffer bytes = buffer.getByteBuf().nioBuffer();
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    private static Buffer header(byte type, String id, long deadline) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        return Buffer.buffer().appendInt(0).appendInt(0).appendByte(type).appendLong(deadline)
+            .appendInt(idBytes.length).appendBytes(idBytes);
+    }
+
+    private static Buffer seal(Buffer record) {
+        record.setInt(0, record.length());
+        record.setInt(4, checksum(record));
+        return record;
+    }
+
+    private static int checksum(Buffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(HEADER_SIZE, record.length()));
+        return (int) crc.getValue();
+    }
+
+    private static String id(Buffer record) {
+        int length = record.getInt(HEADER_SIZE + 9);
+        return record.getString(HEADER_SIZE + 13, HEADER_SIZE + 13 + length, StandardCharsets.UTF_8.name());
+    }
+
+    private static int payloadOffset(String id) {
+        return HEADER_SIZE + 13 + id.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static final class Entry {
+        private long offset;
+        private final int length;
+        private long deadline;
+        private boolean touched;
+
+        private Entry(long offset, int length, long deadline) {
+            this.offset = offset;
+            this.length = length;
+            this.deadline = deadline;
+        }
+    }
+}
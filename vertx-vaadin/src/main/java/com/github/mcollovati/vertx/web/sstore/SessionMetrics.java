@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.Map;
+
+/**
+ * Listener for session serialization and session store events.
+ *
+ * Listeners are registered in {@link SessionMetricsRegistry}; they are called on the thread
+ * that serializes the session or accesses the store, so they must be thread safe and should not block.
+ * All methods do nothing by default.
+ */
+public interface SessionMetrics {
+
+    /**
+     * Called when a session has been serialized, to the cluster, to disk or off heap.
+     *
+     * @param bytes the serialized size, in bytes
+     * @param nanos the serialization time, in nanoseconds
+     */
+    default void sessionSerialized(int bytes, long nanos) {
+    }
+
+    /**
+     * Called when a session has been deserialized.
+     *
+     * Attributes deserialized lazily, on first access, are not included in size and time.
+     *
+     * @param bytes the serialized size, in bytes
+     * @param nanos the deserialization time, in nanoseconds
+     */
+    default void sessionDeserialized(int bytes, long nanos) {
+    }
+
+    /**
+     * Called with the serialized size of every attribute of a sampled session.
+     *
+     * Sizes are computed only for one in {@link SessionMetricsRegistry#getAttributeSamplingInterval()}
+     * serialized sessions, since attributes are encoded once more to be measured.
+     *
+     * @param sizes the serialized size, in bytes, of attributes by name
+     */
+    default void attributesSampled(Map<String, Integer> sizes) {
+    }
+
+    /**
+     * Called when a session has been put in a session store.
+     */
+    default void sessionStored() {
+    }
+
+    /**
+     * Called when a session has been read from a session store.
+     *
+     * @param hit {@code true} if the session was served from local memory, {@code false} if it has been
+     *            looked up in the cluster, restored from disk or off heap, or not found
+     */
+    default void sessionLoaded(boolean hit) {
+    }
+}
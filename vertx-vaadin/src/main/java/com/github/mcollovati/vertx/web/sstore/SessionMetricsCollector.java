@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mcollovati.vertx.metrics.Histogram;
+import com.github.mcollovati.vertx.metrics.Meter;
+import com.github.mcollovati.vertx.metrics.PrometheusWriter;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * {@link SessionMetrics} that keeps session metrics in memory.
+ *
+ * It records histograms of serialized session sizes and serialization times, a histogram
+ * of sampled sizes for every attribute name, put and get rates and the ratio of sessions
+ * served from local memory. Sizes are in bytes, times in microseconds.
+ */
+public class SessionMetricsCollector implements SessionMetrics {
+
+    /**
+     * Maximum number of attribute names tracked; attributes with other names are ignored.
+     */
+    public static final int MAX_ATTRIBUTES = 64;
+
+    private final Histogram serializedSize = new Histogram();
+    private final Histogram serializationTime = new Histogram();
+    private final Histogram deserializedSize = new Histogram();
+    private final Histogram deserializationTime = new Histogram();
+    private final Map<String, Histogram> attributeSizes = new ConcurrentHashMap<>();
+    private final Meter puts = new Meter();
+    private final Meter gets = new Meter();
+    private final LongAdder hits = new LongAdder();
+
+    @Override
+    public void sessionSerialized(int bytes, long nanos) {
+        serializedSize.record(bytes);
+        serializationTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void sessionDeserialized(int bytes, long nanos) {
+        deserializedSize.record(bytes);
+        deserializationTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void attributesSampled(Map<String, Integer> sizes) {
+        sizes.forEach((name, size) -> {
+            Histogram histogram = attributeSizes.get(name);
+            if (histogram == null && attributeSizes.size() < MAX_ATTRIBUTES) {
+                histogram = attributeSizes.computeIfAbsent(name, x -> new Histogram());
+            }
+            if (histogram != null) {
+                histogram.record(size);
+            }
+        });
+    }
+
+    @Override
+    public void sessionStored() {
+        puts.mark();
+    }
+
+    @Override
+    public void sessionLoaded(boolean hit) {
+        gets.mark();
+        if (hit) {
+            hits.increment();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the collected metrics.
+     *
+     * @return the session metrics
+     */
+    public JsonObject toJson() {
+        long gets = this.gets.count();
+        long hits = this.hits.sum();
+        JsonObject attributes = new JsonObject();
+        attributeSizes.forEach((name, histogram) -> attributes.put(name, histogram.toJson()));
+        return new JsonObject()
+            .put("serialized", new JsonObject()
+                .put("size", serializedSize.toJson())
+                .put("time", serializationTime.toJson()))
+            .put("deserialized", new JsonObject()
+                .put("size", deserializedSize.toJson())
+                .put("time", deserializationTime.toJson()))
+            .put("attributes", attributes)
+            .put("puts", puts.toJson())
+            .put("gets", this.gets.toJson())
+            .put("hits", hits)
+            .put("misses", gets - hits)
+            .put("hitRatio", gets == 0 ? 0 : (double) hits / gets);
+    }
+
+    /**
+     * Writes the collected metrics in the Prometheus text format; sizes are written in bytes
+     * and times in seconds.
+     *
+     * @param writer the writer
+     */
+    public void writePrometheus(PrometheusWriter writer) {
+        writer.summary("session_serialized_bytes", "Size of serialized sessions", "", serializedSize, 1)
+            .summary("session_serialization_seconds", "Time spent serializing sessions", "", serializationTime, 1e-6)
+            .summary("session_deserialized_bytes", "Size of deserialized sessions", "", deserializedSize, 1)
+            .summary("session_deserialization_seconds", "Time spent deserializing sessions", "",
+                deserializationTime, 1e-6);
+        attributeSizes.forEach((name, histogram) -> writer.summary("session_attribute_bytes",
+            "Sampled size of serialized session attributes", "attribute=\"" + PrometheusWriter.escape(name) + "\"",
+            histogram, 1));
+        writer.counter("session_puts_total", "Sessions put in the session store", "", puts.count())
+            .counter("session_gets_total", "Sessions read from the session store", "", gets.count())
+            .counter("session_hits_total", "Sessions served from local memory", "", hits.sum());
+    }
+}
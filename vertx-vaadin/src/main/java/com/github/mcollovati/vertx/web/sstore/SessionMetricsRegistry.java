@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link SessionMetrics} listeners notified of session events.
+ *
+ * Sessions are serialized by the cluster manager, outside of any Vert.x or Vaadin context,
+ * so listeners are registered per JVM. While no listener is registered, sessions are not measured.
+ */
+public final class SessionMetricsRegistry {
+
+    /**
+     * Default number of serialized sessions for each one whose attributes are measured.
+     */
+    public static final int DEFAULT_ATTRIBUTE_SAMPLING_INTERVAL = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionMetricsRegistry.class);
+
+    private static final List<SessionMetrics> listeners = new CopyOnWriteArrayList<>();
+    private static final SessionMetrics dispatcher = new Dispatcher();
+    private static volatile int attributeSamplingInterval = DEFAULT_ATTRIBUTE_SAMPLING_INTERVAL;
+
+    private SessionMetricsRegistry() {
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener
+     */
+    public static void register(SessionMetrics listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener
+     */
+    public static void unregister(SessionMetrics listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Checks whether session events should be measured.
+     *
+     * @return {@code true} if at least a listener is registered
+     */
+    public static boolean isEnabled() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Gets a listener that forwards events to all the registered listeners.
+     *
+     * Exceptions thrown by listeners are logged and do not affect session handling.
+     *
+     * @return the forwarding listener
+     */
+    public static SessionMetrics listeners() {
+        return dispatcher;
+    }
+
+    /**
+     * Sets the number of serialized sessions for each one whose attributes are measured.
+     *
+     * @param interval the sampling interval; {@code 0} disables attribute sampling
+     */
+    public static void setAttributeSamplingInterval(int interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Sampling interval must not be negative");
+        }
+        attributeSamplingInterval = interval;
+    }
+
+    /**
+     * Gets the number of serialized sessions for each one whose attributes are measured.
+     *
+     * @return the sampling interval, {@code 0} if attribute sampling is disabled
+     */
+    public static int getAttributeSamplingInterval() {
+        return attributeSamplingInterval;
+    }
+
+    /**
+     * Decides whether the attributes of the session being serialized should be measured.
+     *
+     * @return {@code true} if attribute sizes should be sampled
+     */
+    public static boolean shouldSampleAttributes() {
+        int interval = attributeSamplingInterval;
+        return interval > 0 && isEnabled() && ThreadLocalRandom.current().nextInt(interval) == 0;
+    }
+
+    /**
+     * Measures session attributes, encoding each of them on its own with the given codec,
+     * or with the compact one for legacy sessions.
+     *
+     * @param data  the session attributes
+     * @param codec the codec the session is written with, or null for the legacy format
+     * @return the serialized size, in bytes, of attributes by name; attributes that cannot be serialized are skipped
+     */
+    public static Map<String, Integer> measureAttributes(Map<String, Object> data, SessionCodec codec) {
+        SessionCodec measuringCodec = Optional.ofNullable(codec).orElseGet(SessionCodec::compact);
+        Map<String, Integer> sizes = new HashMap<>();
+        data.forEach((name, value) -> {
+            try {
+                sizes.put(name, measuringCodec.encode(Collections.singletonMap(name, value)).length());
+            } catch (RuntimeException ex) {
+                // not serializable, it is not written either
+            }
+        });
+        return sizes;
+    }
+
+    private static void forEach(Consumer<SessionMetrics> event) {
+        for (SessionMetrics listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException ex) {
+                logger.warn("Session metrics listener {} failed", listener, ex);
+            }
+        }
+    }
+
+    private static final class Dispatcher implements SessionMetrics {
+
+        @Override
+        public void sessionSerialized(int bytes, long nanos) {
+            forEach(listener -> listener.sessionSerialized(bytes, nanos));
+        }
+
+        @Override
+        public void sessionDeserialized(int bytes, long nanos) {
+            forEach(listener -> listener.sessionDeserialized(bytes, nanos));
+        }
+
+        @Override
+        public void attributesSampled(Map<String, Integer> sizes) {
+            forEach(listener -> listener.attributesSampled(sizes));
+        }
+
+        @Override
+        public void sessionStored() {
+            forEach(listener -> listener.sessionStored());
+        }
+
+        @Override
+        public void sessionLoaded(boolean hit) {
+            forEach(listener -> listener.sessionLoaded(hit));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.Session;
+
+/**
+ * Keeps serialized sessions out of the local session map.
+ *
+ * Only the position of each session is held in the heap, together with its deadline, so that
+ * expiration can be checked without reading the session. Subclasses define where serialized
+ * sessions are written.
+ */
+abstract class SessionPassivator {
+
+    private final ConcurrentMap<String, Record> records = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes and stores the session.
+     *
+     * @return the position of the session, or null if the session cannot be passivated
+     */
+    synchronized Record passivate(Session session) throws IOException {
+        Buffer buffer = Buffer.buffer();
+        if (!SessionSerializer.write(session, buffer)) {
+            return null;
+        }
+        Record record = write(buffer, session.lastAccessed() + session.timeout());
+        if (record != null) {
+            Record previous = records.put(session.id(), record);
+            if (previous != null) {
+                release(previous);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Reads a passivated session and removes it from the passivated ones.
+     *
+     * @return the session, or null if it is not passivated
+     */
+    synchronized Session restore(String id) throws IOException {
+        Record record = records.remove(id);
+        if (record == null) {
+            return null;
+        }
+        try {
+            return SessionSerializer.read(read(record), 0);
+        } finally {
+            release(record);
+        }
+    }
+
+    boolean contains(String id) {
+        return records.containsKey(id);
+    }
+
+    boolean contains(String id, Record record) {
+        return records.get(id) == record;
+    }
+
+    /**
+     * Gets the time after which a passivated session is expired.
+     *
+     * @return the deadline, or null if the session is not passivated
+     */
+    Long deadline(String id) {
+        Record record = records.get(id);
+        return record == null ? null : record.deadline;
+    }
+
+    synchronized boolean remove(String id) {
+        Record record = records.remove(id);
+        if (record != null) {
+            release(record);
+        }
+        return record != null;
+    }
+
+    /**
+     * Removes the session only if it is passivated at the given position.
+     */
+    synchronized void remove(String id, Record record) {
+        if (records.remove(id, record)) {
+            release(record);
+        }
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    synchronized void clear() {
+        records.clear();
+        releaseAll();
+    }
+
+    /**
+     * Stores a serialized session.
+     *
+     * @return the position of the session, or null if there is no room for it
+     */
+    protected abstract Record write(Buffer buffer, long deadline) throws IOException;
+
+    protected abstract Buffer read(Record record) throws IOException;
+
+    /**
+     * Frees the space of a session that is no longer passivated.
+     */
+    protected abstract void release(Record record);
+
+    /**
+     * Frees the space of all passivated sessions.
+     */
+    protected abstract void releaseAll();
+
+    /**
+     * Position of a passivated session.
+     */
+    static class Record {
+        private final long deadline;
+
+        Record(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
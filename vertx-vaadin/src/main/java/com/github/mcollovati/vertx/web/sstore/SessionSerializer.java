@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.shareddata.impl.ClusterSerializable;
+import io.vertx.ext.web.Session;
+
+/**
+ * Writes sessions to buffers, together with their class name, for stores that keep sessions
+ * out of the heap or on disk.
+ *
+ * Sessions that do not report their own serialization to {@link SessionMetricsRegistry},
+ * unlike {@link ExtendedSessionImpl}, are measured here.
+ */
+final class SessionSerializer {
+
+    private SessionSerializer() {
+    }
+
+    /**
+     * Appends the session to the buffer.
+     *
+     * @return {@code false} if the session cannot be serialized; the buffer may then contain partial data
+     */
+    static boolean write(Session session, Buffer buffer) {
+        if (!(session instanceof ClusterSerializable)) {
+            return false;
+        }
+        byte[] className = session.getClass().getName().getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(className.length).appendBytes(className);
+        boolean measured = SessionMetricsRegistry.isEnabled() && !(session instanceof ExtendedSessionImpl);
+        int start = buffer.length();
+        long begin = measured ? System.nanoTime() : 0;
+        try {
+            ((ClusterSerializable) session).writeToBuffer(buffer);
+        } catch (RuntimeException ex) {
+            // attributes that are not serializable
+            return false;
+        }
+        if (measured) {
+            SessionMetrics metrics = SessionMetricsRegistry.listeners();
+            metrics.sessionSerialized(buffer.length() - start, System.nanoTime() - begin);
+            if (SessionMetricsRegistry.shouldSampleAttributes()) {
+                metrics.attributesSampled(SessionMetricsRegistry.measureAttributes(session.data(), null));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a session written by {@link #write(Session, Buffer)}, starting at the given position.
+     */
+    static Session read(Buffer buffer, int pos) throws IOException {
+        int length = buffer.getInt(pos);
+        String className = buffer.getString(pos + 4, pos + 4 + length, StandardCharsets.UTF_8.name());
+        try {
+            Session session = (Session) CompactSessionCodec.loadClass(className).newInstance();
+            boolean measured = SessionMetricsRegistry.isEnabled() && !(session instanceof ExtendedSessionImpl);
+            long begin = measured ? System.nanoTime() : 0;
+            int end = ((ClusterSerializable) session).readFromBuffer(pos + 4 + length, buffer);
+            if (measured) {
+                SessionMetricsRegistry.listeners().sessionDeserialized(end - pos - 4 - length, System.nanoTime() - begin);
+            }
+            return session;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            throw new IOException("Cannot read session of type " + className, ex);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+
+/**
+ * A local session store that spreads sessions over independent shards, by session id.
+ *
+ * Every shard has its own map, expiration index and reaper, running on a distinct event loop,
+ * so that reaping does not stop all the requests of the node at once and concurrent requests
+ * do not contend on a single lock.
+ */
+public interface ShardedLocalSessionStore extends ExtendedLocalSessionStore {
+
+    /**
+     * Default number of shards, equal to the default number of event loops
+     */
+    int DEFAULT_SHARDS = VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE;
+
+    /**
+     * Default name for map used to store sessions; shard maps are named after it,
+     * followed by the shard index
+     */
+    String DEFAULT_SESSION_MAP_NAME = "vertx-vaadin.sharded-sessions";
+
+    /**
+     * Gets the number of shards of this store.
+     *
+     * @return the number of shards
+     */
+    int shards();
+
+    /**
+     * Create a session store
+     *
+     * @param vertx the Vert.x instance
+     * @return the session store
+     */
+    static ShardedLocalSessionStore create(Vertx vertx) {
+        return create(vertx, DEFAULT_SHARDS);
+    }
+
+    /**
+     * Create a session store
+     *
+     * @param vertx  the Vert.x instance
+     * @param shards number of shards, usually the number of event loops
+     * @return the session store
+     */
+    static ShardedLocalSessionStore create(Vertx vertx, int shards) {
+        return create(vertx, DEFAULT_SESSION_MAP_NAME, shards, DEFAULT_REAPER_INTERVAL);
+    }
+
+    /**
+     * Create a session store
+     *
+     * @param vertx          the Vert.x instance
+     * @param sessionMapName name prefix for maps used to store sessions
+     * @param shards         number of shards, usually the number of event loops
+     * @param reaperInterval how often, in ms, to check for expired sessions
+     * @return the session store
+     */
+    static ShardedLocalSessionStore create(Vertx vertx, String sessionMapName, int shards, long reaperInterval) {
+        return new ShardedLocalSessionStoreImpl(vertx, sessionMapName, shards, reaperInterval);
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sharded session store built on {@link ExtendedLocalSessionStoreImpl} shards.
+ *
+ * Shard reapers are started by the instances of a reaper verticle deployment, so that
+ * every reaper timer is bound to a different event loop.
+ */
+class ShardedLocalSessionStoreImpl implements ShardedLocalSessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedLocalSessionStoreImpl.class);
+
+    private final Vertx vertx;
+    private final ExtendedLocalSessionStoreImpl[] shards;
+    private String reaperDeploymentID;
+    private boolean closed;
+
+    ShardedLocalSessionStoreImpl(Vertx vertx, String sessionMapName, int shards, long reaperInterval) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be greater than zero");
+        }
+        this.vertx = vertx;
+        this.shards = new ExtendedLocalSessionStoreImpl[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new ExtendedLocalSessionStoreImpl(vertx, sessionMapName + "." + i, reaperInterval, false);
+        }
+        if (reaperInterval != 0) {
+            deployReapers();
+        }
+    }
+
+    private void deployReapers() {
+        AtomicInteger next = new AtomicInteger();
+        vertx.deployVerticle(() -> new ShardReaper(shards[next.getAndIncrement()]),
+            new DeploymentOptions().setInstances(shards.length), this::onReapersDeployed);
+    }
+
+    private synchronized void onReapersDeployed(AsyncResult<String> res) {
+        if (res.failed()) {
+            logger.warn("Cannot start session reapers", res.cause());
+        } else if (closed) {
+            vertx.undeploy(res.result(), x -> {});
+        } else {
+            reaperDeploymentID = res.result();
+        }
+    }
+
+    private ExtendedLocalSessionStoreImpl shard(String id) {
+        return shards[(id.hashCode() & Integer.MAX_VALUE) % shards.length];
+    }
+
+    @Override
+    public int shards() {
+        return shards.length;
+    }
+
+    @Override
+    public ShardedLocalSessionStore setPassivation(long idleTime, File directory) {
+        for (ExtendedLocalSessionStoreImpl shard : shards) {
+            shard.setPassivation(idleTime, directory);
+        }
+        return this;
+    }
+
+    @Override
+    public ShardedLocalSessionStore expirationHandler(Handler<AsyncResult<String>> handler) {
+        for (ExtendedLocalSessionStoreImpl shard : shards) {
+            shard.expirationHandler(handler);
+        }
+        return this;
+    }
+
+    @Override
+    public ShardedLocalSessionStore expiredSessionHandler(Handler<Session> handler) {
+        for (ExtendedLocalSessionStoreImpl shard : shards) {
+            shard.expiredSessionHandler(handler);
+        }
+        return this;
+    }
+
+    @Override
+    public long retryTimeout() {
+        return shards[0].retryTimeout();
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return shards[0].createSession(timeout);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return shards[0].createSession(timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+        shard(id).get(id, resultHandler);
+    }
+
+    @Override
+    public Session peek(String id) {
+        return shard(id).peek(id);
+    }
+
+    @Override
+    public void touch(String id, long lastAccessed, Handler<AsyncResult<Boolean>> resultHandler) {
+        shard(id).touch(id, lastAccessed, resultHandler);
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+        shard(id).delete(id, resultHandler);
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        shard(session.id()).put(session, resultHandler);
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+        List<Future> clears = new ArrayList<>(shards.length);
+        for (ExtendedLocalSessionStoreImpl shard : shards) {
+            Future<Void> future = Future.future();
+            shard.clear(future);
+            clears.add(future);
+        }
+        CompositeFuture.all(clears).setHandler(res -> resultHandler.handle(res.mapEmpty()));
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        List<Future> sizes = new ArrayList<>(shards.length);
+        for (ExtendedLocalSessionStoreImpl shard : shards) {
+            Future<Integer> future = Future.future();
+            shard.size(future);
+            sizes.add(future);
+        }
+        CompositeFuture.all(sizes).setHandler(res -> resultHandler.handle(res.map(composite -> {
+            int size = 0;
+            for (int i = 0; i < composite.size(); i++) {
+                size += composite.<Integer>resultAt(i);
+            }
+            return size;
+        })));
+    }
+
+    @Override
+    public void close() {
+        String deploymentID;
+        synchronized (this) {
+            closed = true;
+            deploymentID = reaperDeploymentID;
+            reaperDeploymentID = null;
+        }
+        for (ExtendedLocalSessionStoreImpl shard : shards) {
+            shard.close();
+        }
+        if (deploymentID != null && vertx.deploymentIDs().contains(deploymentID)) {
+            vertx.undeploy(deploymentID, x -> {});
+        }
+    }
+
+    private static final class ShardReaper extends AbstractVerticle {
+
+        private final ExtendedLocalSessionStoreImpl shard;
+
+        private ShardReaper(ExtendedLocalSessionStoreImpl shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void start() {
+            shard.startReaper();
+        }
+    }
+}
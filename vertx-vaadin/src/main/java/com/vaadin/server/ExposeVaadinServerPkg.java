@@ -30,4 +30,8 @@ public interface ExposeVaadinServerPkg {
     static void setCacheTime(VaadinResponse vaadinResponse, long millis) {
         VaadinServletResponse.doSetCacheTime(vaadinResponse, millis);
     }
+
+    static void cleanupSession(VaadinService service, VaadinSession session) {
+        service.cleanupSession(session);
+    }
 }
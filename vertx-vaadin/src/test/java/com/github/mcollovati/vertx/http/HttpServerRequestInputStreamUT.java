@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@SuppressWarnings("unchecked")
+public class HttpServerRequestInputStreamUT {
+
+    @Rule
+    public MockitoRule mokitoRule = MockitoJUnit.rule();
+
+    @Mock
+    HttpServerRequest request;
+
+    Vertx vertx;
+    Context context;
+    Handler<Buffer> dataHandler;
+    Handler<Void> endHandler;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldReadChunksUntilRequestEnds() throws Exception {
+        InputStream inputStream = createStream(-1, 1024);
+        onContext(() -> {
+            dataHandler.handle(Buffer.buffer("A test "));
+            dataHandler.handle(Buffer.buffer("string"));
+            endHandler.handle(null);
+        });
+        assertThat(readAll(inputStream)).isEqualTo("A test string");
+        assertThat(inputStream.read()).isEqualTo(-1);
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldPauseRequestWhenBufferIsFull() throws Exception {
+        InputStream inputStream = createStream(-1, 4);
+        onContext(() -> dataHandler.handle(Buffer.buffer("12345")));
+        verify(request).pause();
+
+        assertThat(inputStream.read(new byte[5], 0, 5)).isEqualTo(5);
+        verify(request, timeout(1000)).resume();
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldFailWhenBodyLimitIsExceeded() throws Exception {
+        InputStream inputStream = createStream(4, 1024);
+        onContext(() -> dataHandler.handle(Buffer.buffer("12345")));
+        assertThatExceptionOfType(HttpServerRequestInputStream.BodyLimitExceededException.class)
+            .isThrownBy(inputStream::read);
+    }
+
+    private InputStream createStream(long bodyLimit, int maxBufferedBytes) throws Exception {
+        CompletableFuture<InputStream> future = new CompletableFuture<>();
+        context.runOnContext(unused ->
+            future.complete(new HttpServerRequestInputStream(request, bodyLimit, maxBufferedBytes))
+        );
+        InputStream inputStream = future.get(1, TimeUnit.SECONDS);
+        ArgumentCaptor<Handler> dataCaptor = ArgumentCaptor.forClass(Handler.class);
+        ArgumentCaptor<Handler> endCaptor = ArgumentCaptor.forClass(Handler.class);
+        verify(request).handler(dataCaptor.capture());
+        verify(request).endHandler(endCaptor.capture());
+        dataHandler = dataCaptor.getValue();
+        endHandler = endCaptor.getValue();
+        return inputStream;
+    }
+
+    private void onContext(Runnable action) throws Exception {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        context.runOnContext(unused -> {
+            action.run();
+            future.complete(null);
+        });
+        future.get(1, TimeUnit.SECONDS);
+    }
+
+    private static String readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4];
+        int count;
+        while ((count = inputStream.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), "UTF-8");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.metrics;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class HistogramUT {
+
+    private final Histogram histogram = new Histogram();
+
+    @Test
+    public void emptyHistogramShouldReportZero() {
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.mean()).isZero();
+        assertThat(histogram.percentile(99)).isZero();
+    }
+
+    @Test
+    public void smallValuesShouldBeExact() {
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.percentile(50)).isEqualTo(5);
+        assertThat(histogram.percentile(100)).isEqualTo(10);
+        assertThat(histogram.mean()).isEqualTo(5.5);
+        assertThat(histogram.max()).isEqualTo(10);
+    }
+
+    @Test
+    public void percentilesShouldBeWithinRelativeError() {
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+        assertThat((double) histogram.percentile(50)).isCloseTo(50_000, within(50_000 * 0.0625));
+        assertThat((double) histogram.percentile(99)).isCloseTo(99_000, within(99_000 * 0.0625));
+        assertThat(histogram.percentile(100)).isEqualTo(100_000);
+        assertThat(histogram.count()).isEqualTo(100_000);
+    }
+
+    @Test
+    public void bucketsShouldCoverAllValues() {
+        int previous = -1;
+        for (long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 1 << 20, Long.MAX_VALUE }) {
+            int index = Histogram.index(value);
+            assertThat(Histogram.highestEquivalentValue(index)).isGreaterThanOrEqualTo(value);
+            assertThat(index > 0 ? Histogram.highestEquivalentValue(index - 1) : -1).isLessThan(value);
+            assertThat(index).isGreaterThan(previous);
+            previous = index;
+        }
+        histogram.record(Long.MAX_VALUE);
+        assertThat(histogram.percentile(50)).isEqualTo(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.mcollovati.vertx.web.sstore.ExtendedSessionStore;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Cookie;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HeartbeatFastPathHandlerUT {
+
+    private static final String COOKIE_NAME = "vertx-web.session";
+    private static final String SESSION_ID = "session-id";
+    private static final String ATTRIBUTE_NAME = "vaadin-session";
+
+    @Rule
+    public MockitoRule mokitoRule = MockitoJUnit.rule();
+
+    @Mock
+    VertxVaadinService service;
+    @Mock
+    ExtendedSessionStore sessionStore;
+    @Mock
+    RoutingContext routingContext;
+    @Mock
+    HttpServerRequest request;
+    @Mock
+    HttpServerResponse response;
+    @Mock
+    Cookie cookie;
+    @Mock
+    Session session;
+    @Mock
+    VaadinSession vaadinSession;
+    @Mock
+    UI ui;
+
+    ReentrantLock lock = new ReentrantLock();
+    HeartbeatFastPathHandler handler;
+
+    @Before
+    public void setUp() {
+        when(service.getSessionContextAffinity()).thenReturn(new SessionContextAffinity(false));
+        when(service.getVaadinSessionAttributeName()).thenReturn(ATTRIBUTE_NAME);
+        when(routingContext.getCookie(COOKIE_NAME)).thenReturn(cookie);
+        when(routingContext.request()).thenReturn(request);
+        when(routingContext.response()).thenReturn(response);
+        when(response.putHeader(any(CharSequence.class), any(CharSequence.class))).thenReturn(response);
+        when(request.getParam("v-uiId")).thenReturn("1");
+        when(cookie.getValue()).thenReturn(SESSION_ID);
+        when(sessionStore.peek(SESSION_ID)).thenReturn(session);
+        when(session.id()).thenReturn(SESSION_ID);
+        when(session.lastAccessed()).thenReturn(System.currentTimeMillis());
+        when(session.timeout()).thenReturn(TimeUnit.MINUTES.toMillis(30));
+        when(session.get(ATTRIBUTE_NAME)).thenReturn(vaadinSession);
+        when(vaadinSession.getService()).thenReturn(service);
+        when(vaadinSession.getLockInstance()).thenReturn(lock);
+        when(vaadinSession.getState()).thenReturn(VaadinSession.State.OPEN);
+        when(vaadinSession.getUIById(1)).thenReturn(ui);
+        handler = new HeartbeatFastPathHandler(service, sessionStore, COOKIE_NAME);
+    }
+
+    @Test
+    public void shouldUpdateTimestampsOfLocalSession() {
+        handler.handle(routingContext);
+
+        verify(ui).setLastHeartbeatTimestamp(anyLong());
+        verify(session).setAccessed();
+        verify(response).end();
+        verify(routingContext, never()).next();
+        verify(sessionStore, never()).put(session, null);
+    }
+
+    @Test
+    public void shouldFallbackWhenSessionIsNotLocal() {
+        when(sessionStore.peek(SESSION_ID)).thenReturn(null);
+
+        handler.handle(routingContext);
+
+        verify(routingContext).next();
+        verify(response, never()).end();
+    }
+
+    @Test
+    public void shouldFallbackWhenUIDoesNotExist() {
+        when(vaadinSession.getUIById(1)).thenReturn(null);
+
+        handler.handle(routingContext);
+
+        verify(routingContext).next();
+        verify(session, never()).setAccessed();
+    }
+
+    @Test
+    public void shouldFallbackWhenVaadinSessionIsLocked() throws Exception {
+        Thread owner = new Thread(lock::lock);
+        owner.start();
+        owner.join();
+
+        handler.handle(routingContext);
+
+        verify(routingContext).next();
+        verify(ui, never()).setLastHeartbeatTimestamp(anyLong());
+    }
+
+    @Test
+    public void shouldFallbackWhenSessionIsExpired() {
+        when(session.lastAccessed()).thenReturn(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+
+        handler.handle(routingContext);
+
+        verify(routingContext).next();
+        assertThat(lock.isLocked()).isFalse();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionContextAffinityUT {
+
+    Vertx vertx;
+    SessionContextAffinity affinity;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        affinity = new SessionContextAffinity(true);
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldRunUnpinnedSessionOnCallerThread() {
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Thread> executor = new CompletableFuture<>();
+        affinity.dispatch("session", () -> executor.complete(Thread.currentThread()));
+        assertThat(executor.getNow(null)).isSameAs(caller);
+        assertThat(affinity.crossContextHops()).isZero();
+        assertThat(affinity.metrics().getLong("unpinnedDispatches")).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldDispatchOnPinnedContext() throws Exception {
+        Context pinned = vertx.getOrCreateContext();
+        Context other = vertx.getOrCreateContext();
+        runOn(pinned, () -> affinity.pin("session"));
+        assertThat(affinity.pinnedContext("session")).contains(pinned);
+
+        CompletableFuture<Context> fromPinned = new CompletableFuture<>();
+        runOn(pinned, () -> affinity.dispatch("session", () -> fromPinned.complete(Vertx.currentContext())));
+        assertThat(fromPinned.get(5, TimeUnit.SECONDS)).isSameAs(pinned);
+        assertThat(affinity.crossContextHops()).isZero();
+
+        CompletableFuture<Context> fromOther = new CompletableFuture<>();
+        runOn(other, () -> affinity.dispatch("session", () -> fromOther.complete(Vertx.currentContext())));
+        assertThat(fromOther.get(5, TimeUnit.SECONDS)).isSameAs(pinned);
+        assertThat(affinity.crossContextHops()).isEqualTo(1L);
+        assertThat(affinity.dispatches()).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldForgetReleasedSessions() throws Exception {
+        runOn(vertx.getOrCreateContext(), () -> affinity.pin("session"));
+        affinity.release("session");
+        assertThat(affinity.pinnedContext("session")).isEmpty();
+    }
+
+    @Test
+    public void shouldNotPinWhenDisabled() throws Exception {
+        SessionContextAffinity disabled = new SessionContextAffinity(false);
+        runOn(vertx.getOrCreateContext(), () -> disabled.pin("session"));
+        assertThat(disabled.pinnedContext("session")).isEmpty();
+        disabled.dispatch("session", () -> { });
+        assertThat(disabled.dispatches()).isZero();
+    }
+
+    private static void runOn(Context context, Runnable action) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        context.runOnContext(unused -> {
+            action.run();
+            done.complete(null);
+        });
+        done.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.github.mcollovati.vertx.web.sstore.ExtendedLocalSessionStore;
+import com.github.mcollovati.vertx.web.sstore.ExtendedSessionStore;
+import com.github.mcollovati.vertx.web.sstore.OffHeapSessionStore;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Session;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionExpirationDispatcherUT {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(timeout = 5000)
+    public void expiredSessionsShouldBeSentInOneMessage(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        List<JsonArray> messages = new CopyOnWriteArrayList<>();
+        List<String> invalidated = new CopyOnWriteArrayList<>();
+        VertxVaadin.sessionsExpiredHandler(vertx, msg -> messages.add(msg.body()));
+        SessionExpirationDispatcher dispatcher = new SessionExpirationDispatcher(vertx, invalidated::add);
+        dispatcher.register("s1");
+        dispatcher.register("s2");
+        dispatcher.register("s3");
+
+        dispatcher.sessionExpired("s1");
+        dispatcher.sessionExpired("s3");
+        dispatcher.sessionExpired("unknown");
+
+        vertx.setTimer(200, tid -> {
+            assertThat(messages).containsExactly(new JsonArray().add("s1").add("s3").add("unknown"));
+            assertThat(invalidated).containsExactlyInAnyOrder("s1", "s3");
+            assertThat(dispatcher.registeredSessions()).isEqualTo(1);
+            dispatcher.close();
+            async.complete();
+        });
+    }
+
+    @Test(timeout = 5000)
+    @SuppressWarnings("deprecation")
+    public void expiredSessionsShouldBeSentOneByOneToSessionHandlers(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        List<String> messages = new CopyOnWriteArrayList<>();
+        VertxVaadin.sessionExpiredHandler(vertx, msg -> messages.add(msg.body()));
+        SessionExpirationDispatcher dispatcher = new SessionExpirationDispatcher(vertx, id -> {});
+
+        dispatcher.sessionExpired("s1");
+        dispatcher.sessionExpired("s2");
+
+        vertx.setTimer(200, tid -> {
+            assertThat(messages).containsExactly("s1", "s2");
+            dispatcher.close();
+            async.complete();
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void unregisteredSessionShouldNotBeNotified(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        SessionExpirationDispatcher dispatcher = new SessionExpirationDispatcher(vertx,
+            id -> context.fail("Session should not be notified"));
+        dispatcher.register("s1");
+        assertThat(dispatcher.unregister("s1")).isTrue();
+
+        dispatcher.sessionExpired("s1");
+
+        vertx.setTimer(200, tid -> {
+            assertThat(dispatcher.registeredSessions()).isZero();
+            dispatcher.close();
+            async.complete();
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void passivatedSessionShouldBeCollected(TestContext context) throws IOException {
+        ExtendedSessionStore sessionStore = ExtendedLocalSessionStore.create(rule.vertx(), "retention-test", 100)
+            .setPassivation(200, temporaryFolder.newFolder());
+        assertCollectedOnceEvicted(context, sessionStore);
+    }
+
+    @Test(timeout = 10000)
+    public void sessionMovedOffHeapShouldBeCollected(TestContext context) {
+        ExtendedSessionStore sessionStore = OffHeapSessionStore.create(rule.vertx(), "off-heap-retention-test",
+            4 * 1024 * 1024, 100).setIdleTime(200);
+        assertCollectedOnceEvicted(context, sessionStore);
+    }
+
+    private void assertCollectedOnceEvicted(TestContext context, ExtendedSessionStore sessionStore) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        SessionExpirationDispatcher dispatcher = new SessionExpirationDispatcher(vertx, id -> {});
+        WeakReference<Object> sessionData = storeSession(sessionStore, dispatcher);
+        vertx.setPeriodic(50, tid -> {
+            System.gc();
+            if (sessionData.get() == null) {
+                vertx.cancelTimer(tid);
+                assertThat(dispatcher.registeredSessions()).isEqualTo(1);
+                dispatcher.close();
+                sessionStore.close();
+                async.complete();
+            }
+        });
+    }
+
+    private static WeakReference<Object> storeSession(ExtendedSessionStore sessionStore,
+                                                      SessionExpirationDispatcher dispatcher) {
+        Session session = sessionStore.createSession(60000);
+        ArrayList<String> data = new ArrayList<>(Collections.nCopies(1000, "value"));
+        session.put("data", data);
+        sessionStore.put(session, res -> {});
+        dispatcher.register(session.id());
+        return new WeakReference<>(data);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
+import com.github.mcollovati.vertx.web.sstore.ExtendedLocalSessionStore;
+import com.github.mcollovati.vertx.web.sstore.ExtendedSessionStore;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.handler.CookieHandler;
+import io.vertx.ext.web.handler.SessionHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(VertxUnitRunner.class)
+public class TouchingSessionStoreUT {
+
+    private static final String SESSION_ID = "session-id";
+
+    @Rule
+    public MockitoRule mokitoRule = MockitoJUnit.rule();
+
+    @Mock
+    ExtendedSessionStore delegate;
+    @Mock
+    Session session;
+
+    TouchingSessionStore store;
+
+    @Before
+    public void setUp() {
+        when(session.id()).thenReturn(SESSION_ID);
+        when(session.lastAccessed()).thenReturn(100L);
+        doAnswer(i -> {
+            i.getArgumentAt(1, Handler.class).handle(Future.succeededFuture());
+            return null;
+        }).when(delegate).put(any(Session.class), any());
+        store = new TouchingSessionStore(delegate);
+    }
+
+    @Test
+    public void shouldTouchUnmodifiedSession() {
+        stubTouch(Future.succeededFuture(true));
+
+        AtomicBoolean stored = putSession();
+
+        assertThat(stored.get()).isTrue();
+        verify(delegate).touch(eq(SESSION_ID), eq(100L), any());
+        verify(delegate, never()).put(any(Session.class), any());
+    }
+
+    @Test
+    public void shouldPutModifiedSession() {
+        store.markModified(SESSION_ID);
+
+        AtomicBoolean stored = putSession();
+
+        assertThat(stored.get()).isTrue();
+        verify(delegate).put(eq(session), any());
+        verify(delegate, never()).touch(any(), anyLong(), any());
+    }
+
+    @Test
+    public void shouldPutModifiedSessionOnlyOnce() {
+        stubTouch(Future.succeededFuture(true));
+        store.markModified(SESSION_ID);
+
+        putSession();
+        putSession();
+
+        verify(delegate, times(1)).put(eq(session), any());
+        verify(delegate, times(1)).touch(eq(SESSION_ID), eq(100L), any());
+    }
+
+    @Test
+    public void shouldPutSessionUnknownToDelegate() {
+        stubTouch(Future.succeededFuture(false));
+
+        AtomicBoolean stored = putSession();
+
+        assertThat(stored.get()).isTrue();
+        verify(delegate).put(eq(session), any());
+    }
+
+    @Test
+    public void shouldPutSessionWhenTouchFails() {
+        stubTouch(Future.failedFuture("boom"));
+
+        AtomicBoolean stored = putSession();
+
+        assertThat(stored.get()).isTrue();
+        verify(delegate).put(eq(session), any());
+    }
+
+    @Test
+    public void shouldKeepModifiedMarkWhenPutFails() {
+        doAnswer(i -> {
+            i.getArgumentAt(1, Handler.class).handle(Future.failedFuture("boom"));
+            return null;
+        }).when(delegate).put(any(Session.class), any());
+        store.markModified(SESSION_ID);
+
+        AtomicBoolean stored = putSession();
+        putSession();
+
+        assertThat(stored.get()).isFalse();
+        verify(delegate, times(2)).put(eq(session), any());
+        verify(delegate, never()).touch(any(), anyLong(), any());
+    }
+
+    @Test
+    public void shouldPutSessionWithModifiedAttributes() {
+        ExtendedSessionImpl extendedSession = mock(ExtendedSessionImpl.class);
+        when(extendedSession.id()).thenReturn(SESSION_ID);
+        when(extendedSession.hasModifiedAttributes()).thenReturn(true);
+
+        store.put(extendedSession, res -> {});
+
+        verify(delegate).put(eq(extendedSession), any());
+        verify(delegate, never()).touch(any(), anyLong(), any());
+    }
+
+    @Test
+    public void shouldPutSessionModifiedByCustomRoute(TestContext context) {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionStore localStore = mock(ExtendedSessionStore.class,
+            delegatesTo(ExtendedLocalSessionStore.create(vertx)));
+        Router router = Router.router(vertx);
+        router.route().handler(CookieHandler.create());
+        router.route().handler(SessionHandler.create(new TouchingSessionStore(localStore)));
+        router.get("/custom").handler(rc -> {
+            rc.session().put("custom", "value");
+            rc.response().end();
+        });
+        router.get("/plain").handler(rc -> rc.response().end());
+
+        HttpServer server = vertx.createHttpServer().requestHandler(router::accept);
+        server.listen(0, context.asyncAssertSuccess(s -> {
+            HttpClient client = vertx.createHttpClient();
+            Async async = context.async();
+            client.getNow(s.actualPort(), "localhost", "/plain", first -> {
+                String cookie = first.getHeader(HttpHeaders.SET_COOKIE).split(";")[0];
+                client.get(s.actualPort(), "localhost", "/custom", second ->
+                    client.get(s.actualPort(), "localhost", "/plain", third -> {
+                        // new session, custom route change, unmodified session
+                        context.verify(v -> {
+                            verify(localStore, times(2)).put(any(Session.class), any());
+                            verify(localStore, times(2)).touch(any(), anyLong(), any());
+                        });
+                        vertx.close(context.asyncAssertSuccess());
+                        async.complete();
+                    }).putHeader(HttpHeaders.COOKIE, cookie).end()
+                ).putHeader(HttpHeaders.COOKIE, cookie).end();
+            });
+        }));
+    }
+
+    private void stubTouch(AsyncResult<Boolean> result) {
+        doAnswer(i -> {
+            i.getArgumentAt(2, Handler.class).handle(result);
+            return null;
+        }).when(delegate).touch(any(), anyLong(), any());
+    }
+
+    private AtomicBoolean putSession() {
+        AtomicBoolean stored = new AtomicBoolean();
+        store.put(session, res -> stored.set(res.succeeded()));
+        return stored;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.mcollovati.vertx.web.sstore.SessionMetricsRegistry;
+import com.vaadin.shared.Registration;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VaadinMetricsCollectorUT {
+
+    private final VaadinMetricsCollector collector = new VaadinMetricsCollector();
+
+    @Test
+    public void requestsShouldBeTrackedByType() {
+        collector.requestCompleted(VaadinRequestType.UIDL, 200, TimeUnit.MILLISECONDS.toNanos(5));
+        collector.requestCompleted(VaadinRequestType.UIDL, 200, TimeUnit.MILLISECONDS.toNanos(15));
+        collector.requestCompleted(null, 404, TimeUnit.MILLISECONDS.toNanos(1));
+        collector.requestProcessed(VaadinRequestType.UIDL, TimeUnit.MILLISECONDS.toNanos(3));
+
+        JsonObject metrics = collector.toJson();
+        JsonObject uidl = metrics.getJsonObject("requests").getJsonObject("uidl");
+        assertThat(uidl.getLong("count")).isEqualTo(2);
+        assertThat(uidl.getJsonObject("latency").getLong("max")).isEqualTo(15_000);
+        assertThat(uidl.getJsonObject("processing").getLong("count")).isEqualTo(1);
+        assertThat(metrics.getJsonObject("requests").getJsonObject("resource").getLong("count")).isEqualTo(1);
+        assertThat(metrics.getJsonObject("responses").getLong("2xx")).isEqualTo(2);
+        assertThat(metrics.getJsonObject("responses").getLong("4xx")).isEqualTo(1);
+    }
+
+    @Test
+    public void activeCountsShouldFollowLifecycleEvents() {
+        collector.sessionCreated();
+        collector.sessionCreated();
+        collector.sessionDestroyed();
+        collector.uiCreated();
+        collector.pushSocketOpened();
+        collector.pushSocketClosed();
+        collector.pushSocketClosed();
+        collector.pushFrameSent(1200);
+        collector.pushFrameCoalesced();
+
+        JsonObject metrics = collector.toJson();
+        assertThat(metrics.getJsonObject("sessions").getLong("active")).isEqualTo(1);
+        assertThat(metrics.getJsonObject("uis").getLong("active")).isEqualTo(1);
+        assertThat(metrics.getJsonObject("push").getLong("sockets")).isZero();
+        assertThat(metrics.getJsonObject("push").getJsonObject("frames").getLong("count")).isEqualTo(1);
+        assertThat(metrics.getJsonObject("push").getLong("framesCoalesced")).isEqualTo(1);
+        assertThat(metrics.getJsonObject("sessionStore")).isNotNull();
+    }
+
+    @Test
+    public void prometheusFormatShouldHoldSummariesAndGauges() {
+        collector.requestCompleted(VaadinRequestType.HEARTBEAT, 200, TimeUnit.MILLISECONDS.toNanos(2));
+        collector.sessionCreated();
+        collector.backgroundTaskStarted(TimeUnit.MILLISECONDS.toNanos(10));
+
+        String text = collector.toPrometheus();
+        assertThat(text)
+            .contains("# TYPE vertx_vaadin_request_duration_seconds summary\n")
+            .contains("vertx_vaadin_request_duration_seconds_count{type=\"heartbeat\"} 1\n")
+            .contains("vertx_vaadin_request_duration_seconds{type=\"heartbeat\",quantile=\"0.99\"} 0.002\n")
+            .contains("vertx_vaadin_active_sessions 1\n")
+            .contains("vertx_vaadin_responses_total{status=\"2xx\"} 1\n")
+            .contains("vertx_vaadin_background_task_queue_seconds_count 1\n")
+            .contains("vertx_vaadin_session_puts_total 0\n");
+        assertThat(text.split("# TYPE vertx_vaadin_request_duration_seconds ", -1)).hasSize(2);
+    }
+
+    @Test
+    public void dispatcherShouldForwardEventsUntilRemoved() {
+        VaadinMetricsDispatcher dispatcher = new VaadinMetricsDispatcher();
+        assertThat(dispatcher.isEnabled()).isFalse();
+        Registration registration = dispatcher.add(collector);
+        assertThat(dispatcher.isEnabled()).isTrue();
+        assertThat(SessionMetricsRegistry.isEnabled()).isTrue();
+
+        dispatcher.uiCreated();
+        registration.remove();
+        dispatcher.uiCreated();
+
+        assertThat(collector.toJson().getJsonObject("uis").getLong("active")).isEqualTo(1);
+        assertThat(dispatcher.isEnabled()).isFalse();
+        assertThat(SessionMetricsRegistry.isEnabled()).isFalse();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VaadinRequestExecutorUT {
+
+    Vertx vertx;
+    VaadinRequestExecutor executor;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        executor = new VaadinRequestExecutor(vertx, ExecutionMode.WORKER, 4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+        vertx.close();
+    }
+
+    @Test
+    public void shouldExecuteRequestsOfSameSessionInOrder() throws Exception {
+        RoutingContext routingContext = routingContext("session-1");
+        int requests = 50;
+        CountDownLatch latch = new CountDownLatch(requests);
+        AtomicInteger running = new AtomicInteger();
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        List<Integer> concurrent = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < requests; i++) {
+            int request = i;
+            executor.execute(routingContext, () -> {
+                concurrent.add(running.incrementAndGet());
+                Thread.sleep(1);
+                executed.add(request);
+                running.decrementAndGet();
+                latch.countDown();
+            });
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executed).isEqualTo(IntStream.range(0, requests).boxed().collect(Collectors.toList()));
+        assertThat(concurrent).containsOnly(1);
+    }
+
+    @Test
+    public void shouldExecuteRequestsOffEventLoop() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        executor.execute(routingContext("session-1"), () -> {
+            threads.add(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).hasSize(1).allMatch(name -> name.startsWith("vaadin.request.worker"));
+    }
+
+    @Test
+    public void shouldFallbackToWorkerModeWhenVirtualThreadsAreNotAvailable() {
+        VaadinRequestExecutor virtual = new VaadinRequestExecutor(vertx, ExecutionMode.VIRTUAL_THREADS, 1);
+        try {
+            assertThat(virtual.mode()).isEqualTo(virtualThreadsSupported() ? ExecutionMode.VIRTUAL_THREADS : ExecutionMode.WORKER);
+        } finally {
+            virtual.close();
+        }
+    }
+
+    @Test
+    public void shouldCreateWorkerPoolOnlyWhenNeededInEventLoopMode() throws Exception {
+        Vertx spied = spy(vertx);
+        VaadinRequestExecutor eventLoop = new VaadinRequestExecutor(spied, ExecutionMode.EVENT_LOOP, 1);
+        try {
+            eventLoop.execute(routingContext("session-1"), () -> {});
+            verify(spied, never()).createSharedWorkerExecutor(anyString(), anyInt());
+
+            CountDownLatch latch = new CountDownLatch(1);
+            eventLoop.executeBlocking(routingContext("session-1"), latch::countDown);
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+            verify(spied).createSharedWorkerExecutor(anyString(), anyInt());
+        } finally {
+            eventLoop.close();
+        }
+    }
+
+    @Test
+    public void shouldParseExecutionModeConfigValues() {
+        assertThat(ExecutionMode.fromConfigValue("event-loop")).isEqualTo(ExecutionMode.EVENT_LOOP);
+        assertThat(ExecutionMode.fromConfigValue("worker")).isEqualTo(ExecutionMode.WORKER);
+        assertThat(ExecutionMode.fromConfigValue("virtual-threads")).isEqualTo(ExecutionMode.VIRTUAL_THREADS);
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    private RoutingContext routingContext(String sessionId) {
+        Session session = mock(Session.class);
+        when(session.id()).thenReturn(sessionId);
+        RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.session()).thenReturn(session);
+        when(routingContext.vertx()).thenReturn(vertx);
+        return routingContext;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VaadinRequestTypeUT {
+
+    @Test
+    public void shouldClassifyRequestsByPath() {
+        assertThat(classify("/UIDL/")).isEqualTo(VaadinRequestType.UIDL);
+        assertThat(classify("/HEARTBEAT/")).isEqualTo(VaadinRequestType.HEARTBEAT);
+        assertThat(classify("/APP/UPLOAD/0/1/action/key")).isEqualTo(VaadinRequestType.UPLOAD);
+        assertThat(classify("/APP/PUBLISHED/file.js")).isEqualTo(VaadinRequestType.PUBLISHED_FILE);
+        assertThat(classify("/APP/connector/0/1/file.png")).isEqualTo(VaadinRequestType.CONNECTOR_RESOURCE);
+        assertThat(classify("/APP/global/0/legacy/1/file.png")).isEqualTo(VaadinRequestType.APP);
+        assertThat(classify("/PUSH")).isEqualTo(VaadinRequestType.PUSH);
+        assertThat(classify("/")).isEqualTo(VaadinRequestType.OTHER);
+        assertThat(classify("/UIDL")).isEqualTo(VaadinRequestType.OTHER);
+    }
+
+    @Test
+    public void shouldClassifyUIInitRequests() {
+        RoutingContext routingContext = routingContext("/", HttpMethod.POST);
+        when(routingContext.request().getParam("v-browserDetails")).thenReturn("1");
+        assertThat(VaadinRequestType.classify(new VertxVaadinRequest(null, routingContext)))
+            .isEqualTo(VaadinRequestType.UI_INIT);
+    }
+
+    @Test
+    public void shouldReuseTypeAssignedByRouter() {
+        RoutingContext routingContext = routingContext("/", HttpMethod.GET);
+        when(routingContext.get(VaadinRequestType.class.getName())).thenReturn(VaadinRequestType.UIDL);
+        assertThat(VaadinRequestType.of(new VertxVaadinRequest(null, routingContext)))
+            .isEqualTo(VaadinRequestType.UIDL);
+    }
+
+    @Test
+    public void shouldStoreClassifiedType() {
+        RoutingContext routingContext = routingContext("/HEARTBEAT/", HttpMethod.POST);
+        assertThat(VaadinRequestType.of(new VertxVaadinRequest(null, routingContext)))
+            .isEqualTo(VaadinRequestType.HEARTBEAT);
+        verify(routingContext).put(VaadinRequestType.class.getName(), VaadinRequestType.HEARTBEAT);
+    }
+
+    private static VaadinRequestType classify(String path) {
+        return VaadinRequestType.classify(new VertxVaadinRequest(null, routingContext(path, HttpMethod.GET)));
+    }
+
+    private static RoutingContext routingContext(String path, HttpMethod method) {
+        HttpServerRequest httpServerRequest = mock(HttpServerRequest.class);
+        when(httpServerRequest.path()).thenReturn(path);
+        when(httpServerRequest.rawMethod()).thenReturn(method.name());
+        RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.request()).thenReturn(httpServerRequest);
+        return routingContext;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class VaadinVerticleUT {
+
+    static final Set<VertxVaadinService> services = ConcurrentHashMap.newKeySet();
+    static final AtomicInteger started = new AtomicInteger();
+
+    Vertx vertx;
+
+    @Before
+    public void setUp() {
+        services.clear();
+        started.set(0);
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void instancesOfSameDeploymentShouldShareVaadinService() throws Exception {
+        String deploymentId = deploy(4);
+
+        assertThat(started.get()).isEqualTo(4);
+        assertThat(services).hasSize(1);
+
+        CompletableFuture<Void> undeployed = new CompletableFuture<>();
+        vertx.undeploy(deploymentId, ar -> undeployed.complete(null));
+        undeployed.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void differentDeploymentsShouldNotShareVaadinService() throws Exception {
+        deploy(1);
+        deploy(1);
+
+        assertThat(services).hasSize(2);
+    }
+
+    @Test
+    public void failedDeploymentShouldNotLeaveSharedInstance() throws Exception {
+        assertThatThrownBy(() -> deploy(FailingVerticle.class, 2)).hasRootCauseInstanceOf(VertxException.class);
+
+        assertThat(vertx.sharedData().getLocalMap(VaadinVerticle.SHARED_VAADIN_MAP).isEmpty()).isTrue();
+    }
+
+    private String deploy(int instances) throws Exception {
+        return deploy(TestVerticle.class, instances);
+    }
+
+    private String deploy(Class<? extends VaadinVerticle> verticle, int instances) throws Exception {
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        vertx.deployVerticle(verticle.getName(), new DeploymentOptions()
+            .setInstances(instances)
+            .setConfig(new JsonObject().put("httpPort", 0)), ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        return deployed.get(30, TimeUnit.SECONDS);
+    }
+
+    @VaadinVerticleConfiguration(serviceName = "test-service")
+    public static class TestVerticle extends VaadinVerticle {
+
+        @Override
+        protected void serviceInitialized(VertxVaadinService service, Router router) {
+            services.add(service);
+            started.incrementAndGet();
+        }
+    }
+
+    @VaadinVerticleConfiguration(serviceName = "failing-service")
+    public static class FailingVerticle extends VaadinVerticle {
+
+        @Override
+        protected VertxVaadin createVertxVaadin(JsonObject vaadinConfig) {
+            throw new VertxException("Cannot create Vaadin service");
+        }
+    }
+}
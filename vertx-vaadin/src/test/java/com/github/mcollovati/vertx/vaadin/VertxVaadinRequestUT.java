@@ -22,8 +22,11 @@
  */
 package com.github.mcollovati.vertx.vaadin;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -32,7 +35,6 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import com.github.mcollovati.vertx.utils.RandomStringGenerator;
 import com.github.mcollovati.vertx.web.ExtendedSession;
@@ -135,14 +137,42 @@ public class VertxVaadinRequestUT {
     public void shouldDelegateGetInputStreamToHttpServerRequest(String body) throws IOException {
         when(routingContext.getBody()).thenReturn(Buffer.buffer(body));
         assertThat(vaadinRequest.getInputStream())
-            .hasSameContentAs(new ByteArrayInputStream(body.getBytes()));
+            .hasSameContentAs(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void getInputStreamShouldNotCopyRequestBody() throws IOException {
+        Buffer body = Buffer.buffer("body");
+        when(routingContext.getBody()).thenReturn(body);
+        InputStream inputStream = vaadinRequest.getInputStream();
+        body.setString(0, "BODY");
+        assertThat(inputStream).hasSameContentAs(new ByteArrayInputStream("BODY".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void getInputStreamShouldBeEmptyWithoutRequestBody() throws IOException {
+        assertThat(vaadinRequest.getInputStream()).hasSameContentAs(new ByteArrayInputStream(new byte[0]));
+        assertThat(vaadinRequest.getContentLength()).isEqualTo(-1);
     }
 
     @Property(trials = TRIALS)
     public void shouldDelegateGetReaderToHttpServerRequest(String body) throws IOException {
-        when(routingContext.getBodyAsString()).thenReturn(body);
-        assertThat(vaadinRequest.getReader().lines().collect(Collectors.joining(System.lineSeparator())))
-            .isEqualTo(body);
+        when(routingContext.getBody()).thenReturn(Buffer.buffer(body));
+        StringBuilder content = new StringBuilder();
+        BufferedReader reader = vaadinRequest.getReader();
+        char[] chars = new char[256];
+        for (int read = reader.read(chars); read != -1; read = reader.read(chars)) {
+            content.append(chars, 0, read);
+        }
+        assertThat(content.toString()).isEqualTo(body);
+    }
+
+    @Test
+    public void getReaderShouldDecodeUsingRequestCharset() throws IOException {
+        String body = "Caf\u00e9 \u20ac";
+        when(httpServerRequest.getHeader(HttpHeaders.CONTENT_TYPE)).thenReturn("text/plain; charset=ISO-8859-15");
+        when(routingContext.getBody()).thenReturn(Buffer.buffer(body.getBytes("ISO-8859-15")));
+        assertThat(vaadinRequest.getReader().readLine()).isEqualTo(body);
     }
 
     @Property(trials = TRIALS)
@@ -27,6 +27,7 @@ import com.pholser.junit.quickcheck.From;
 import com.pholser.junit.quickcheck.Property;
 import com.pholser.junit.quickcheck.generator.InRange;
 import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpServerResponse;
@@ -52,11 +53,15 @@ import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -85,6 +90,7 @@ public class VertxVaadinResponseUT {
     @Before
     public void setUp() {
         when(routingContext.response()).thenReturn(httpServerResponse);
+        when(httpServerResponse.headers()).thenReturn(MultiMap.caseInsensitiveMultiMap());
         vaadinResponse = new VertxVaadinResponse(vaadinService, routingContext);
     }
 
@@ -127,6 +133,47 @@ public class VertxVaadinResponseUT {
         assertThat(byteBufferCaptor.getValue()).isEqualTo(Buffer.buffer(test.getBytes()));
     }
 
+    @Test
+    public void getOutputStreamShouldWriteChunksWhenFlushThresholdIsReached() throws Exception {
+        when(vaadinService.getResponseFlushThreshold()).thenReturn(4);
+        String test = "A test string";
+        OutputStream oos = vaadinResponse.getOutputStream();
+        oos.write(test.getBytes());
+        oos.close();
+
+        ArgumentCaptor<Buffer> byteBufferCaptor = ArgumentCaptor.forClass(Buffer.class);
+        verify(httpServerResponse, atLeastOnce()).setChunked(true);
+        verify(httpServerResponse, times(3)).write(byteBufferCaptor.capture());
+        verify(httpServerResponse).end(byteBufferCaptor.capture());
+        assertThat(byteBufferCaptor.getAllValues()).containsExactly(
+            Buffer.buffer("A te"), Buffer.buffer("st s"), Buffer.buffer("trin"), Buffer.buffer("g")
+        );
+    }
+
+    @Test
+    public void getOutputStreamShouldNotUseChunkedEncodingIfContentLengthIsSet() throws Exception {
+        when(vaadinService.getResponseFlushThreshold()).thenReturn(4);
+        when(httpServerResponse.headers()).thenReturn(
+            MultiMap.caseInsensitiveMultiMap().add(HttpHeaders.CONTENT_LENGTH, "5")
+        );
+        OutputStream oos = vaadinResponse.getOutputStream();
+        oos.write("12345".getBytes());
+        oos.close();
+
+        verify(httpServerResponse, never()).setChunked(anyBoolean());
+        verify(httpServerResponse).write(Buffer.buffer("1234"));
+        verify(httpServerResponse).end(Buffer.buffer("5"));
+    }
+
+    @Test
+    public void endShouldSendPendingContent() throws Exception {
+        String test = "A test string";
+        vaadinResponse.getOutputStream().write(test.getBytes());
+        vaadinResponse.end();
+
+        verify(httpServerResponse).end(Buffer.buffer(test));
+    }
+
     @Test
     public void getOutputStreamShouldFailIfGetWriterHasBeenCalled() throws Exception {
         vaadinResponse.getWriter();
@@ -152,6 +199,40 @@ public class VertxVaadinResponseUT {
             .containsExactly(Buffer.buffer(test.getBytes()), Buffer.buffer(test.getBytes()));
     }
 
+    @Test
+    public void getWriterShouldEncodeUsingContentTypeCharset() throws Exception {
+        String test = "Caf\u00e9 \u20ac";
+        when(httpServerResponse.headers()).thenReturn(
+            MultiMap.caseInsensitiveMultiMap().add(HttpHeaders.CONTENT_TYPE, "text/html; charset=ISO-8859-15")
+        );
+        PrintWriter writer = vaadinResponse.getWriter();
+        writer.write(test);
+        writer.close();
+
+        verify(httpServerResponse).end(Buffer.buffer(test.getBytes("ISO-8859-15")));
+    }
+
+    @Test
+    public void getWriterShouldWriteChunksWhenFlushThresholdIsReached() throws Exception {
+        when(vaadinService.getResponseFlushThreshold()).thenReturn(4);
+        // 2 bytes + 4 bytes (surrogate pair) + 3 bytes
+        String test = "\u00e9\ud83d\ude00\u20ac";
+        PrintWriter writer = vaadinResponse.getWriter();
+        writer.write(test.substring(0, 2));
+        writer.write(test.substring(2));
+        writer.close();
+
+        ArgumentCaptor<Buffer> byteBufferCaptor = ArgumentCaptor.forClass(Buffer.class);
+        verify(httpServerResponse, atLeastOnce()).write(byteBufferCaptor.capture());
+        verify(httpServerResponse).end(byteBufferCaptor.capture());
+        Buffer written = Buffer.buffer();
+        byteBufferCaptor.getAllValues().forEach(chunk -> {
+            assertThat(chunk.length()).isLessThanOrEqualTo(4);
+            written.appendBuffer(chunk);
+        });
+        assertThat(written.toString("UTF-8")).isEqualTo(test);
+    }
+
     @Test
     public void getWriterShouldFailIfGetOutputStreamHasBeenCalled() throws Exception {
         vaadinResponse.getOutputStream();
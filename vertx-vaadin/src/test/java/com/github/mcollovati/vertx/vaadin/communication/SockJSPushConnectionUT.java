@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.vaadin.communication;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.github.mcollovati.vertx.vaadin.VaadinMetrics;
+import com.github.mcollovati.vertx.vaadin.VertxVaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SockJSPushConnectionUT {
+
+    @Rule
+    public MockitoRule mokitoRule = MockitoJUnit.rule();
+
+    @Mock
+    VertxVaadinService service;
+    @Mock
+    VaadinMetrics metrics;
+    @Mock
+    Vertx vertx;
+    @Mock
+    VaadinSession session;
+    @Mock
+    UI ui;
+    @Mock
+    PushSocket socket;
+
+    SockJSPushConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        when(service.getVertx()).thenReturn(vertx);
+        when(service.getMetrics()).thenReturn(metrics);
+        when(session.getService()).thenReturn(service);
+        when(session.getUIById(0)).thenReturn(ui);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(ui).access(any(Runnable.class));
+        when(socket.isConnected()).thenReturn(true);
+        when(socket.send(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        VaadinSession.setCurrent(session);
+
+        connection = spy(new SockJSPushConnection(ui));
+        doReturn("").when(connection).writeUidl(eq(ui), any(Boolean.class));
+        connection.connect(socket);
+    }
+
+    @After
+    public void tearDown() {
+        CurrentInstance.clearAll();
+    }
+
+    @Test
+    public void pushesShouldBeSentImmediatelyWhenCoalescingIsDisabled() {
+        when(service.getPushCoalescingWindow()).thenReturn(-1);
+
+        connection.push();
+        connection.push();
+
+        verify(socket, times(2)).send(anyString());
+        verify(vertx, never()).runOnContext(any());
+    }
+
+    @Test
+    public void pushesShouldBeMergedAtTheEndOfTheTick() {
+        when(service.getPushCoalescingWindow()).thenReturn(0);
+        ArgumentCaptor<Handler<Void>> flush = captor();
+
+        connection.push();
+        connection.push();
+        connection.push();
+
+        verify(vertx).runOnContext(flush.capture());
+        verify(socket, never()).send(anyString());
+        flush.getValue().handle(null);
+        verify(socket).send(anyString());
+        verify(metrics, times(2)).pushFrameCoalesced();
+    }
+
+    @Test
+    public void pushesShouldBeDeferredForTheConfiguredWindow() {
+        when(service.getPushCoalescingWindow()).thenReturn(50);
+
+        connection.push();
+        connection.push();
+
+        verify(vertx).setTimer(eq(50L), any());
+        verify(socket, never()).send(anyString());
+    }
+
+    @Test
+    public void responseShouldTakeCareOfDeferredPush() {
+        when(service.getPushCoalescingWindow()).thenReturn(0);
+        ArgumentCaptor<Handler<Void>> flush = captor();
+
+        connection.push();
+        connection.push(false);
+        verify(vertx).runOnContext(flush.capture());
+        flush.getValue().handle(null);
+
+        verify(socket).send(anyString());
+        verify(metrics).pushFrameCoalesced();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Handler<Void>> captor() {
+        return ArgumentCaptor.forClass((Class) Handler.class);
+    }
+}
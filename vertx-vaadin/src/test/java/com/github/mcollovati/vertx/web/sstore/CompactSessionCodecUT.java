@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactSessionCodecUT {
+
+    @Test
+    public void attributesShouldBeDecoded() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("long", Long.MIN_VALUE);
+        data.put("int", -42);
+        data.put("short", (short) 300);
+        data.put("byte", (byte) -1);
+        data.put("double", 3.14d);
+        data.put("float", -2.5f);
+        data.put("char", 'é');
+        data.put("true", true);
+        data.put("false", false);
+        data.put("string", "value");
+        data.put("sameString", "value");
+        data.put("buffer", Buffer.buffer("buffer"));
+        data.put("bytes", new byte[] { 1, 2, 3 });
+        data.put("json", new JsonObject().put("key", "value"));
+        data.put("serializable", new Node("root", TimeUnit.SECONDS));
+
+        Map<String, Object> decoded = SessionCodec.compact().decode(SessionCodec.compact().encode(data));
+
+        assertThat(decoded).hasSameSizeAs(data);
+        data.forEach((name, value) -> assertThat(decoded.get(name)).as(name).isEqualTo(value));
+    }
+
+    @Test
+    public void largeAttributesShouldBeCompressed() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("graph", graph(500));
+
+        Buffer plain = SessionCodec.compact().encode(data);
+        Buffer compressed = SessionCodec.compact(1024).encode(data);
+
+        assertThat(compressed.length()).isLessThan(plain.length());
+        assertThat(SessionCodec.compact().decode(compressed)).isEqualTo(data);
+        assertThat(SessionCodec.compact(1024).decode(plain)).isEqualTo(data);
+    }
+
+    @Test
+    public void encodedAttributesShouldBeSmallerThanJavaSerialization() throws IOException {
+        Node graph = graph(100);
+        Map<String, Object> data = new HashMap<>();
+        data.put("graph", graph);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(graph);
+        }
+
+        assertThat(SessionCodec.compact().encode(data).length()).isLessThan(bytes.size());
+    }
+
+    @Test
+    public void serializableAttributesShouldBeDecodedLazily() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("string", "value");
+        data.put("json", new JsonObject().put("key", "value"));
+        data.put("serializable", new Node("root", TimeUnit.SECONDS));
+        SessionCodec codec = SessionCodec.compact();
+
+        Map<String, Object> decoded = codec.decodeLazily(codec.encode(data));
+        assertThat(decoded.get("string")).isEqualTo("value");
+        assertThat(decoded.get("json")).isInstanceOf(SerializedAttribute.class);
+        assertThat(decoded.get("serializable")).isInstanceOf(SerializedAttribute.class);
+
+        SerializedAttribute serialized = (SerializedAttribute) decoded.get("serializable");
+        assertThat(serialized.deserialize()).isEqualTo(data.get("serializable"))
+            .isSameAs(serialized.deserialize());
+        assertThat(codec.decode(codec.encode(decoded))).isEqualTo(data);
+    }
+
+    @Test
+    public void codecShouldBeRegisteredByFormat() {
+        assertThat(SessionCodecs.forFormat(CompactSessionCodec.FORMAT_ID)).isInstanceOf(CompactSessionCodec.class);
+    }
+
+    private static Node graph(int size) {
+        Node root = new Node("root", TimeUnit.MILLISECONDS);
+        for (int i = 0; i < size; i++) {
+            root.children.add(new Node("child-" + i, TimeUnit.values()[i % TimeUnit.values().length]));
+        }
+        return root;
+    }
+
+    private static class Node implements Serializable {
+        private final String name;
+        private final TimeUnit unit;
+        private final List<Node> children = new ArrayList<>();
+        private final int[] values = { 1, 2, 3 };
+
+        Node(String name, TimeUnit unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node node = (Node) o;
+            return name.equals(node.name) && unit == node.unit && children.equals(node.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, unit);
+        }
+    }
+}
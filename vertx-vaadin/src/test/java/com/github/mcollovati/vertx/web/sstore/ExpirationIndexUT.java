@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpirationIndexUT {
+
+    private final ExpirationIndex index = new ExpirationIndex(100);
+    private final Map<String, Long> deadlines = new HashMap<>();
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    public void shouldExpireOnlyDueSessions() {
+        schedule("a", 1000);
+        schedule("b", 2000);
+
+        index.expire(1050, deadlines::get, expired::add);
+        assertThat(expired).isEmpty();
+
+        index.expire(1100, deadlines::get, expired::add);
+        assertThat(expired).containsExactly("a");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void accessedSessionShouldBeRescheduled() {
+        schedule("a", 1000);
+        deadlines.put("a", 3000L);
+
+        index.expire(1500, deadlines::get, expired::add);
+        assertThat(expired).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+
+        index.expire(3100, deadlines::get, expired::add);
+        assertThat(expired).containsExactly("a");
+    }
+
+    @Test
+    public void scheduleShouldBeIgnoredForScheduledSessions() {
+        schedule("a", 1000);
+        index.schedule("a", 5000);
+
+        index.expire(1100, deadlines::get, expired::add);
+        assertThat(expired).containsExactly("a");
+    }
+
+    @Test
+    public void removedSessionsShouldNotBeChecked() {
+        schedule("a", 1000);
+        schedule("b", 1000);
+        index.remove("a");
+        deadlines.remove("b");
+
+        index.expire(1100, deadlines::get, expired::add);
+        assertThat(expired).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    public void expireShouldVisitOnlyDueSessions() {
+        for (int i = 0; i < 200_000; i++) {
+            schedule("s" + i, 1000 + i);
+        }
+        AtomicInteger visited = new AtomicInteger();
+
+        index.expire(1100, id -> {
+            visited.incrementAndGet();
+            return deadlines.get(id);
+        }, expired::add);
+
+        assertThat(visited.get()).isEqualTo(100);
+        assertThat(expired).hasSize(100);
+        assertThat(index.size()).isEqualTo(200_000 - 100);
+    }
+
+    private void schedule(String id, long deadline) {
+        deadlines.put(id, deadline);
+        index.schedule(id, deadline);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Session;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ExtendedLocalSessionStoreUT {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(timeout = 5000)
+    public void storeShouldFireExpirationEvent(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "expiration-test", 100);
+
+        Session session = sessionStore.createSession(300);
+        Session session2 = sessionStore.createSession(60000);
+        long start = System.currentTimeMillis();
+        sessionStore.expirationHandler(context.asyncAssertSuccess(id -> {
+            context.assertEquals(session.id(), id);
+            context.assertTrue(System.currentTimeMillis() - start >= 300);
+            context.assertNull(sessionStore.peek(session.id()));
+            context.assertNotNull(sessionStore.peek(session2.id()));
+            sessionStore.close();
+            async.complete();
+        }));
+        sessionStore.put(session, context.asyncAssertSuccess());
+        sessionStore.put(session2, context.asyncAssertSuccess());
+    }
+
+    @Test(timeout = 5000)
+    public void accessedSessionShouldNotExpire(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "access-test", 100);
+        sessionStore.expirationHandler(res -> context.fail("Session should not expire"));
+
+        Session session = sessionStore.createSession(500);
+        sessionStore.put(session, context.asyncAssertSuccess());
+        long periodicId = vertx.setPeriodic(100, tid -> session.setAccessed());
+        vertx.setTimer(1500, tid -> {
+            vertx.cancelTimer(periodicId);
+            context.assertNotNull(sessionStore.peek(session.id()));
+            sessionStore.close();
+            async.complete();
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void touchShouldSetGivenAccessTime(TestContext context) {
+        Vertx vertx = rule.vertx();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "touch-test", 100);
+        Session session = sessionStore.createSession(60000);
+        sessionStore.put(session, context.asyncAssertSuccess(unused -> {
+            long lastAccessed = session.lastAccessed() + 5000;
+            sessionStore.touch(session.id(), lastAccessed, context.asyncAssertSuccess(touched -> {
+                context.assertTrue(touched);
+                context.assertEquals(lastAccessed, sessionStore.peek(session.id()).lastAccessed());
+                sessionStore.close();
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void idleSessionShouldBePassivatedAndRestored(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "passivation-test", 100)
+            .setPassivation(200, directory);
+        sessionStore.expirationHandler(res -> context.fail("Session should not expire"));
+
+        Session session = sessionStore.createSession(60000);
+        session.put("key", "value");
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(600, tid -> {
+            context.assertNull(sessionStore.peek(session.id()));
+            context.assertEquals(1, directory.list().length);
+            sessionStore.size(context.asyncAssertSuccess(size -> context.assertEquals(1, size)));
+            sessionStore.get(session.id(), context.asyncAssertSuccess(restored -> {
+                context.assertEquals(session.id(), restored.id());
+                context.assertEquals("value", restored.get("key"));
+                context.assertEquals(session.lastAccessed(), restored.lastAccessed());
+                context.assertEquals(restored, sessionStore.peek(session.id()));
+                context.assertEquals(0, directory.list().length);
+                sessionStore.close();
+                async.complete();
+            }));
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void passivatedSessionShouldExpire(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "passivation-expiration-test", 100)
+            .setPassivation(100, directory);
+
+        Session session = sessionStore.createSession(800);
+        sessionStore.expirationHandler(context.asyncAssertSuccess(id -> {
+            context.assertEquals(session.id(), id);
+            sessionStore.get(id, context.asyncAssertSuccess(expired -> {
+                context.assertNull(expired);
+                context.assertEquals(0, directory.list().length);
+                sessionStore.close();
+                async.complete();
+            }));
+        }));
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(500, tid -> context.assertNull(sessionStore.peek(session.id())));
+    }
+
+    @Test(timeout = 5000)
+    public void expiredPassivatedSessionShouldBeReadBack(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "passivation-expired-test", 100)
+            .setPassivation(100, directory);
+
+        Session session = sessionStore.createSession(800);
+        session.put("key", "value");
+        sessionStore.expiredSessionHandler(expired -> {
+            context.assertEquals(session.id(), expired.id());
+            context.assertEquals("value", expired.get("key"));
+            context.assertEquals(0, directory.list().length);
+        });
+        sessionStore.expirationHandler(context.asyncAssertSuccess(id -> {
+            context.assertEquals(session.id(), id);
+            sessionStore.close();
+            async.complete();
+        }));
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(500, tid -> context.assertNull(sessionStore.peek(session.id())));
+    }
+
+    @Test(timeout = 5000)
+    public void lockedSessionShouldNotBePassivated(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "passivation-lock-test", 100)
+            .setPassivation(200, directory);
+
+        ReentrantLock lock = new ReentrantLock();
+        Session session = sessionStore.createSession(60000);
+        session.put("lock", lock);
+        sessionStore.put(session, context.asyncAssertSuccess());
+        lock.lock();
+        vertx.setTimer(600, tid -> {
+            context.assertEquals(session, sessionStore.peek(session.id()));
+            context.assertEquals(0, directory.list().length);
+            lock.unlock();
+            vertx.setTimer(600, tid2 -> {
+                context.assertNull(sessionStore.peek(session.id()));
+                context.assertFalse(lock.isLocked());
+                sessionStore.get(session.id(), context.asyncAssertSuccess(restored -> {
+                    context.assertFalse(((ReentrantLock) restored.get("lock")).isLocked());
+                    sessionStore.close();
+                    async.complete();
+                }));
+            });
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void sessionRequestedWhilePassivatingShouldNotBeEvicted(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "passivation-get-test", 100)
+            .setPassivation(200, directory);
+
+        BlockingLock lock = new BlockingLock();
+        Session session = sessionStore.createSession(60000);
+        session.put("lock", lock);
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setPeriodic(20, tid -> {
+            if (lock.acquired.getCount() == 0) {
+                vertx.cancelTimer(tid);
+                sessionStore.get(session.id(), context.asyncAssertSuccess(current -> {
+                    context.assertTrue(current == session);
+                    lock.release.countDown();
+                    vertx.setTimer(100, tid2 -> {
+                        context.assertTrue(sessionStore.peek(session.id()) == session);
+                        context.assertEquals(0, directory.list().length);
+                        sessionStore.close();
+                        async.complete();
+                    });
+                }));
+            }
+        });
+    }
+
+    /**
+     * Holds the passivation until the test releases it.
+     */
+    private static class BlockingLock extends ReentrantLock {
+        private final transient CountDownLatch acquired = new CountDownLatch(1);
+        private final transient CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public boolean tryLock() {
+            boolean locked = super.tryLock();
+            if (acquired != null) {
+                acquired.countDown();
+                try {
+                    release.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return locked;
+        }
+    }
+}
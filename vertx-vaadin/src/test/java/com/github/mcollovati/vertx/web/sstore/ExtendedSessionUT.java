@@ -22,7 +22,13 @@
  */
 package com.github.mcollovati.vertx.web.sstore;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.github.mcollovati.vertx.web.ExtendedSession;
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.shareddata.impl.ClusterSerializable;
@@ -63,4 +69,202 @@ public class ExtendedSessionUT {
         assertThat(fromBuffer.data()).isEqualTo(delegate.data());
 
     }
+
+    @Test
+    public void extendedSessionShouldTrackModifiedAttributes() {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        extendedSession.put("key1", "value");
+        extendedSession.put("key2", 20);
+        extendedSession.remove("key3");
+        assertThat(extendedSession.takeModifiedAttributes()).containsOnly("key1", "key2", "key3");
+        assertThat(extendedSession.takeModifiedAttributes()).isEmpty();
+
+        extendedSession.get("key1");
+        extendedSession.markAttributeModified("key2");
+        assertThat(extendedSession.takeModifiedAttributes()).containsOnly("key2");
+        vertx.close();
+    }
+
+    @Test
+    public void extendedSessionVersionShouldBeSerialized() {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        extendedSession.incrementVersion();
+        extendedSession.incrementVersion();
+
+        Buffer buffer = Buffer.buffer();
+        extendedSession.writeToBuffer(buffer);
+        ExtendedSessionImpl fromBuffer = new ExtendedSessionImpl();
+        fromBuffer.readFromBuffer(0, buffer);
+        assertThat(fromBuffer.version()).isEqualTo(2);
+        vertx.close();
+    }
+
+    @Test
+    public void legacyFormatShouldBeReadableByBothVersions() {
+        Vertx vertx = Vertx.vertx();
+        SessionImpl delegate = new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH);
+        delegate.put("key1", "value");
+        // format written by nodes that do not track versions
+        Buffer baseline = Buffer.buffer().appendLong(1000L);
+        delegate.writeToBuffer(baseline);
+        baseline.appendString("next");
+        try {
+            ExtendedSessionImpl fromBaseline = new ExtendedSessionImpl();
+            int pos = fromBaseline.readFromBuffer(0, baseline);
+            assertThat(baseline.getString(pos, baseline.length())).isEqualTo("next");
+            assertThat(fromBaseline.createdAt()).isEqualTo(1000L);
+            assertThat(fromBaseline.id()).isEqualTo(delegate.id());
+            assertThat(fromBaseline.data()).isEqualTo(delegate.data());
+
+            fromBaseline.incrementVersion();
+            fromBaseline.incrementVersion();
+            Buffer buffer = Buffer.buffer();
+            fromBaseline.writeToBuffer(buffer);
+            SessionImpl fromNew = new SessionImpl();
+            assertThat(fromNew.readFromBuffer(8, buffer)).isEqualTo(buffer.length());
+            assertThat(fromNew.data()).isEqualTo(delegate.data());
+            assertThat(fromNew.version()).isEqualTo(2);
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void accessTimeShouldBeSerialized() {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        long lastAccessed = extendedSession.lastAccessed() + 5000;
+        extendedSession.setAccessed(lastAccessed);
+        extendedSession.setAccessed(lastAccessed - 1000);
+        assertThat(extendedSession.lastAccessed()).isEqualTo(lastAccessed);
+        try {
+            for (SessionCodec codec : new SessionCodec[] { null, SessionCodec.compact() }) {
+                extendedSession.setCodec(codec);
+                Buffer buffer = Buffer.buffer();
+                extendedSession.writeToBuffer(buffer);
+                ExtendedSessionImpl fromBuffer = new ExtendedSessionImpl();
+                fromBuffer.readFromBuffer(0, buffer);
+                assertThat(fromBuffer.lastAccessed()).isEqualTo(lastAccessed);
+            }
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void extendedSessionShouldBeSerializedWithItsCodec() {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        extendedSession.put("key1", "value");
+        extendedSession.put("key2", 20);
+        extendedSession.incrementVersion();
+        Buffer legacy = Buffer.buffer();
+        extendedSession.writeToBuffer(legacy);
+
+        extendedSession.setCodec(SessionCodec.compact());
+        try {
+            Buffer buffer = Buffer.buffer();
+            extendedSession.writeToBuffer(buffer);
+            buffer.appendString("next");
+
+            for (Buffer serialized : new Buffer[] { buffer, legacy }) {
+                ExtendedSessionImpl fromBuffer = new ExtendedSessionImpl();
+                int pos = fromBuffer.readFromBuffer(0, serialized);
+                assertThat(fromBuffer.id()).isEqualTo(extendedSession.id());
+                assertThat(fromBuffer.createdAt()).isEqualTo(extendedSession.createdAt());
+                assertThat(fromBuffer.timeout()).isEqualTo(3000);
+                assertThat(fromBuffer.lastAccessed()).isEqualTo(extendedSession.lastAccessed());
+                assertThat(fromBuffer.version()).isEqualTo(1);
+                assertThat(fromBuffer.data()).isEqualTo(extendedSession.data());
+                assertThat(fromBuffer.takeModifiedAttributes()).isEmpty();
+                if (serialized == buffer) {
+                    assertThat(serialized.getString(pos, serialized.length())).isEqualTo("next");
+                }
+            }
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void untouchedAttributesShouldNotBeDeserialized() {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        extendedSession.put("user", "username");
+        extendedSession.put("heavy", new CountingAttribute("state"));
+        extendedSession.setCodec(SessionCodec.compact());
+        try {
+            CountingAttribute.deserializations.set(0);
+            Buffer buffer = Buffer.buffer();
+            extendedSession.writeToBuffer(buffer);
+            ExtendedSessionImpl fromBuffer = new ExtendedSessionImpl();
+            fromBuffer.readFromBuffer(0, buffer);
+            fromBuffer.setCodec(SessionCodec.compact());
+            assertThat((String) fromBuffer.get("user")).isEqualTo("username");
+
+            Buffer written = Buffer.buffer();
+            fromBuffer.writeToBuffer(written);
+            assertThat(CountingAttribute.deserializations.get()).isZero();
+
+            ExtendedSessionImpl second = new ExtendedSessionImpl();
+            second.readFromBuffer(0, written);
+            CountingAttribute heavy = second.get("heavy");
+            assertThat(heavy.value).isEqualTo("state");
+            assertThat((Object) second.get("heavy")).isSameAs(heavy);
+            assertThat(second.takeModifiedAttributes()).isEmpty();
+            assertThat(CountingAttribute.deserializations.get()).isEqualTo(1);
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void legacyFormatShouldDeserializeAttributes() {
+        Vertx vertx = Vertx.vertx();
+        ExtendedSessionImpl extendedSession = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        extendedSession.put("heavy", new CountingAttribute("state"));
+        extendedSession.setCodec(SessionCodec.compact());
+        Buffer buffer = Buffer.buffer();
+        extendedSession.writeToBuffer(buffer);
+        try {
+            ExtendedSessionImpl fromBuffer = new ExtendedSessionImpl();
+            fromBuffer.readFromBuffer(0, buffer);
+            Buffer legacy = Buffer.buffer();
+            fromBuffer.writeToBuffer(legacy);
+
+            ExtendedSessionImpl fromLegacy = new ExtendedSessionImpl();
+            fromLegacy.readFromBuffer(0, legacy);
+            assertThat(fromLegacy.<CountingAttribute>get("heavy").value).isEqualTo("state");
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private static class CountingAttribute implements Serializable {
+        static final AtomicInteger deserializations = new AtomicInteger();
+        private final String value;
+
+        CountingAttribute(String value) {
+            this.value = value;
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            deserializations.incrementAndGet();
+        }
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Session;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class FileSessionStoreUT {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test(timeout = 5000)
+    public void sessionsShouldSurviveRestart(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        FileSessionStore sessionStore = FileSessionStore.create(vertx, directory, "restart-test", 100);
+
+        Session session = sessionStore.createSession(60000);
+        Session deleted = sessionStore.createSession(60000);
+        session.put("key", "value");
+        sessionStore.put(session, context.asyncAssertSuccess());
+        sessionStore.put(deleted, context.asyncAssertSuccess());
+        sessionStore.delete(deleted.id(), context.asyncAssertSuccess());
+        sessionStore.flush(context.asyncAssertSuccess(v -> {
+            sessionStore.close();
+            vertx.sharedData().getLocalMap("restart-test").clear();
+
+            FileSessionStore restarted = FileSessionStore.create(vertx, directory, "restart-test", 100);
+            restarted.get(session.id(), context.asyncAssertSuccess(restored -> {
+                context.assertEquals(session.id(), restored.id());
+                context.assertEquals("value", restored.get("key"));
+                context.assertEquals(session.lastAccessed(), restored.lastAccessed());
+                restarted.size(context.asyncAssertSuccess(size -> {
+                    context.assertEquals(1, size);
+                    restarted.close();
+                    async.complete();
+                }));
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void changesShouldBeWrittenBehind(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        FileSessionStore sessionStore = FileSessionStore.create(vertx, directory, "sync-test", 100)
+            .setSyncInterval(100);
+        File log = new File(directory, SessionLog.LOG_FILE);
+
+        Session session = sessionStore.createSession(60000);
+        sessionStore.put(session, context.asyncAssertSuccess(v -> {
+            session.put("key", "value");
+            sessionStore.put(session, context.asyncAssertSuccess());
+        }));
+        vertx.setTimer(500, tid -> {
+            long size = log.length();
+            context.assertTrue(size > 0);
+            sessionStore.put(session, context.asyncAssertSuccess());
+            sessionStore.put(session, context.asyncAssertSuccess());
+            vertx.setTimer(500, tid2 -> {
+                context.assertEquals(2 * size, log.length());
+                sessionStore.close();
+                async.complete();
+            });
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void expiredSessionsShouldBeRemovedFromLog(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        FileSessionStore sessionStore = FileSessionStore.create(vertx, directory, "expiration-log-test", 100)
+            .setSyncInterval(0);
+
+        Session session = sessionStore.createSession(200);
+        sessionStore.expirationHandler(context.asyncAssertSuccess(id -> {
+            context.assertEquals(session.id(), id);
+            sessionStore.flush(context.asyncAssertSuccess(v -> {
+                sessionStore.close();
+                FileSessionStore restarted = FileSessionStore.create(vertx, directory, "expiration-log-test", 100);
+                restarted.size(context.asyncAssertSuccess(size -> {
+                    context.assertEquals(0, size);
+                    restarted.close();
+                    async.complete();
+                }));
+            }));
+        }));
+        sessionStore.put(session, context.asyncAssertSuccess());
+    }
+
+    @Test(timeout = 5000)
+    public void lockedSessionsShouldBeWrittenOnceReleased(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        FileSessionStore sessionStore = FileSessionStore.create(vertx, directory, "lock-test", 100)
+            .setSyncInterval(50);
+        File log = new File(directory, SessionLog.LOG_FILE);
+
+        ReentrantLock lock = new ReentrantLock();
+        Session session = sessionStore.createSession(60000);
+        session.put("lock", lock);
+        lock.lock();
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(400, tid -> {
+            context.assertEquals(0L, log.length());
+            lock.unlock();
+            vertx.setTimer(400, tid2 -> {
+                context.assertTrue(log.length() > 0);
+                sessionStore.close();
+                async.complete();
+            });
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void touchShouldOnlyWriteDeadline(TestContext context) throws IOException {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        File directory = temporaryFolder.newFolder();
+        FileSessionStore sessionStore = FileSessionStore.create(vertx, directory, "touch-log-test", 100)
+            .setSyncInterval(60000);
+        File log = new File(directory, SessionLog.LOG_FILE);
+
+        Session session = sessionStore.createSession(60000);
+        session.put("key", new String(new char[1000]).replace('\0', 'x'));
+        sessionStore.put(session, context.asyncAssertSuccess());
+        sessionStore.flush(context.asyncAssertSuccess(v -> {
+            long size = log.length();
+            long lastAccessed = session.lastAccessed() + 5000;
+            sessionStore.touch(session.id(), lastAccessed, context.asyncAssertSuccess(touched -> {
+                context.assertTrue(touched);
+                sessionStore.flush(context.asyncAssertSuccess(v2 -> {
+                    context.assertTrue(log.length() > size);
+                    context.assertTrue(log.length() - size < 100);
+                    sessionStore.close();
+                    vertx.sharedData().getLocalMap("touch-log-test").clear();
+
+                    FileSessionStore restarted = FileSessionStore.create(vertx, directory, "touch-log-test", 100);
+                    restarted.get(session.id(), context.asyncAssertSuccess(restored -> {
+                        context.assertEquals(lastAccessed, restored.lastAccessed());
+                        restarted.close();
+                        async.complete();
+                    }));
+                }));
+            }));
+        }));
+    }
+}
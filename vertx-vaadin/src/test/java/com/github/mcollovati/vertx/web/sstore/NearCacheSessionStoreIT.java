@@ -32,6 +32,8 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.AsyncMap;
 import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.auth.PRNG;
@@ -193,6 +195,320 @@ public class NearCacheSessionStoreIT {
         }));
     }
 
+    @Test(timeout = 5000)
+    public void getShouldNotFetchRemoteSessionIfLocalIsCurrent(TestContext context) {
+        Vertx vertx = rule.vertx();
+        ExtendedSession session = createSession(vertx);
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx);
+
+        sessionStore.put(session, context.asyncAssertSuccess(x ->
+            remoteMap.remove(session.id(), context.asyncAssertSuccess(removed ->
+                sessionStore.get(session.id(), context.asyncAssertSuccess(s -> {
+                    context.assertTrue(s == session, "Local session copy should be returned");
+                    context.assertEquals(1L, sessionStore.metrics().getLong("hits"));
+                    context.assertEquals(0L, sessionStore.metrics().getLong("misses"));
+                }))
+            ))
+        ));
+    }
+
+    @Test(timeout = 5000)
+    public void getShouldCountMissForSessionNotInLocalMap(TestContext context) {
+        Vertx vertx = rule.vertx();
+        ExtendedSession session = createSession(vertx);
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx);
+
+        remoteMap.put(session.id(), session, context.asyncAssertSuccess(x ->
+            sessionStore.get(session.id(), context.asyncAssertSuccess(s -> {
+                context.assertNotNull(localMap.get(session.id()), "Remote session should be cached locally");
+                context.assertEquals(0L, sessionStore.metrics().getLong("hits"));
+                context.assertEquals(1L, sessionStore.metrics().getLong("misses"));
+            }))
+        ));
+    }
+
+    @Test(timeout = 5000)
+    public void newerVersionShouldInvalidateLocalCopy(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        ExtendedSession session = createSession(vertx);
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx);
+        String address = NearCacheSessionStore.DEFAULT_SESSION_MAP_NAME + ".invalidation";
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            int version = ((SessionImpl) localMap.get(session.id())).version();
+            vertx.eventBus().publish(address, new JsonObject().put("id", session.id()).put("version", version));
+            vertx.setTimer(200, t1 -> {
+                context.assertNotNull(localMap.get(session.id()), "Current local copy should not be invalidated");
+                vertx.eventBus().publish(address, new JsonObject().put("id", session.id()).put("version", version + 1));
+                vertx.setTimer(200, t2 -> {
+                    context.assertNull(localMap.get(session.id()), "Older local copy should be invalidated");
+                    context.assertEquals(1L, sessionStore.metrics().getLong("invalidations"));
+                    async.complete();
+                });
+            });
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void putShouldWriteOnlyChangedAttributesAfterSnapshot(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx);
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("unchanged", "value");
+        session.put("changed", "old value");
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            session.put("changed", "new value");
+            sessionStore.put(session, context.asyncAssertSuccess(y -> {
+                context.assertEquals(1L, sessionStore.metrics().getLong("snapshots"));
+                context.assertEquals(1L, sessionStore.metrics().getLong("deltas"));
+                remoteMap.get(session.id(), context.asyncAssertSuccess(snapshot ->
+                    context.assertEquals("old value", snapshot.get("changed"))
+                ));
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void getShouldApplyDeltaToRemoteSnapshot(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx);
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("unchanged", "value");
+        session.put("changed", "old value");
+        session.put("removed", "value");
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            session.put("changed", "new value");
+            session.remove("removed");
+            sessionStore.put(session, context.asyncAssertSuccess(y -> {
+                // simulates a node without a local copy
+                localMap.remove(session.id());
+                sessionStore.get(session.id(), context.asyncAssertSuccess(s -> {
+                    context.assertFalse(s == session, "Session should be read from cluster");
+                    context.assertEquals("new value", s.get("changed"));
+                    context.assertEquals("value", s.get("unchanged"));
+                    context.assertNull(s.get("removed"));
+                    context.assertEquals(((SessionImpl) session).version(), ((SessionImpl) s).version());
+                }));
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void putShouldWriteSnapshotOnConflict(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx);
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("key", "value");
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            // local copy replaced by a newer version read from cluster
+            localMap.put(session.id(), sessionStore.createSession(DEFAULT_TIMEOUT));
+            session.put("key", "new value");
+            sessionStore.put(session, context.asyncAssertSuccess(y -> {
+                context.assertEquals(2L, sessionStore.metrics().getLong("snapshots"));
+                context.assertEquals(0L, sessionStore.metrics().getLong("deltas"));
+                remoteMap.get(session.id(), context.asyncAssertSuccess(snapshot ->
+                    context.assertEquals("new value", snapshot.get("key"))
+                ));
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void writeBehindShouldCoalescePuts(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx).setWriteBehindDelay(60000);
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("key", "value");
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            session.put("key", "new value");
+            sessionStore.put(session, context.asyncAssertSuccess(y -> {
+                sessionStore.get(session.id(), context.asyncAssertSuccess(s ->
+                    context.assertTrue(s == session, "Pending session should be available locally")
+                ));
+                remoteMap.get(session.id(), context.asyncAssertSuccess(remote -> {
+                    context.assertNull(remote, "Session should not be written before flush");
+                    sessionStore.flush(context.asyncAssertSuccess(z -> {
+                        context.assertEquals(1L, sessionStore.metrics().getLong("snapshots"));
+                        context.assertEquals(1L, sessionStore.metrics().getLong("coalescedWrites"));
+                        remoteMap.get(session.id(), context.asyncAssertSuccess(snapshot ->
+                            context.assertEquals("new value", snapshot.get("key"))
+                        ));
+                    }));
+                }));
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void writeBehindShouldWriteAfterDelay(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx).setWriteBehindDelay(100);
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+
+        sessionStore.put(session, context.asyncAssertSuccess(x ->
+            vertx.setTimer(1000, t -> remoteMap.get(session.id(), context.asyncAssertSuccess(remote -> {
+                context.assertNotNull(remote, "Session should be written after delay");
+                context.assertEquals(0, sessionStore.metrics().getInteger("pendingWrites"));
+                async.complete();
+            })))
+        ));
+    }
+
+    @Test(timeout = 5000)
+    public void ownerShouldWriteInBackground(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx)
+            .setWriteBehindDelay(60000).setOwnerId("node-a");
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            context.assertTrue(localMap.get(session.id()) == session, "Owner should hold the local copy");
+            remoteMap.get(session.id(), context.asyncAssertSuccess(remote -> {
+                context.assertNull(remote, "Session should be written in background");
+                sessionStore.flush(context.asyncAssertSuccess(y -> {
+                    remoteMap.get(session.id(), context.asyncAssertSuccess(context::assertNotNull));
+                    withOwnerMap(context, ownerMap -> ownerMap.get(session.id(), context.asyncAssertSuccess(owner ->
+                        context.assertEquals("node-a", owner)
+                    )));
+                }));
+            }));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void takeOverShouldRequestHandoffFromOwner(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        String address = NearCacheSessionStore.DEFAULT_SESSION_MAP_NAME;
+        ExtendedSession session = createSession(vertx);
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx).setOwnerId("node-a");
+        Async handoff = context.async();
+        vertx.eventBus().<String>consumer(address + ".handoff.node-b", message -> {
+            context.assertEquals(session.id(), message.body());
+            message.reply(null);
+            handoff.complete();
+        });
+        vertx.eventBus().<JsonObject>consumer(address + ".invalidation", message -> {
+            if ("node-a".equals(message.body().getString("owner"))) {
+                context.assertEquals(session.id(), message.body().getString("id"));
+                async.complete();
+            }
+        });
+
+        remoteMap.put(session.id(), session, context.asyncAssertSuccess(x ->
+            withOwnerMap(context, ownerMap -> ownerMap.put(session.id(), "node-b", context.asyncAssertSuccess(y ->
+                sessionStore.get(session.id(), context.asyncAssertSuccess(s -> {
+                    context.assertEquals(session.id(), s.id());
+                    context.assertEquals(1L, sessionStore.metrics().getLong("takeovers"));
+                }))
+            )))
+        ));
+    }
+
+    @Test(timeout = 5000)
+    public void handoffShouldWritePendingChangesAndDropLocalCopy(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx)
+            .setWriteBehindDelay(60000).setOwnerId("node-a");
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("key", "value");
+        String address = NearCacheSessionStore.DEFAULT_SESSION_MAP_NAME + ".handoff.node-a";
+
+        sessionStore.put(session, context.asyncAssertSuccess(x ->
+            vertx.eventBus().send(address, session.id(), context.asyncAssertSuccess(reply -> {
+                context.assertNull(localMap.get(session.id()), "Local copy should be dropped");
+                context.assertEquals(1L, sessionStore.metrics().getLong("handoffs"));
+                remoteMap.get(session.id(), context.asyncAssertSuccess(remote ->
+                    context.assertEquals("value", remote.get("key"))
+                ));
+            }))
+        ));
+    }
+
+    @Test(timeout = 5000)
+    public void claimByAnotherNodeShouldWritePendingChangesAndDropLocalCopy(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx)
+            .setWriteBehindDelay(60000).setOwnerId("node-a");
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("key", "value");
+        String address = NearCacheSessionStore.DEFAULT_SESSION_MAP_NAME + ".invalidation";
+
+        sessionStore.put(session, context.asyncAssertSuccess(x -> {
+            vertx.eventBus().publish(address, new JsonObject().put("id", session.id()).put("owner", "node-b"));
+            vertx.setTimer(200, t -> {
+                context.assertNull(localMap.get(session.id()), "Local copy should be dropped");
+                context.assertEquals(0, sessionStore.metrics().getInteger("pendingWrites"));
+                remoteMap.get(session.id(), context.asyncAssertSuccess(remote -> {
+                    context.assertEquals("value", remote.get("key"), "Pending changes should be written");
+                    async.complete();
+                }));
+            });
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void putOfRequestInFlightDuringHandoffShouldBeRejected(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx)
+            .setWriteBehindDelay(60000).setOwnerId("node-a");
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+        session.put("key", "value");
+        String address = NearCacheSessionStore.DEFAULT_SESSION_MAP_NAME;
+        DeliveryOptions handoffOptions = new DeliveryOptions().addHeader("owner", "node-b");
+
+        sessionStore.put(session, context.asyncAssertSuccess(x ->
+            // node-b takes the session over while a request is still being served by node-a
+            vertx.eventBus().send(address + ".handoff.node-a", session.id(), handoffOptions, context.asyncAssertSuccess(reply ->
+                remoteMap.get(session.id(), context.asyncAssertSuccess(handedOff -> {
+                    handedOff.put("key", "node-b");
+                    remoteMap.put(session.id(), handedOff, context.asyncAssertSuccess(y -> {
+                        vertx.eventBus().publish(address + ".invalidation",
+                            new JsonObject().put("id", session.id()).put("owner", "node-b"));
+                        // the request in flight on node-a completes
+                        session.put("key", "stale");
+                        sessionStore.put(session, context.asyncAssertFailure(err -> {
+                            context.assertNull(localMap.get(session.id()), "Session should not be claimed back");
+                            context.assertEquals(1L, sessionStore.metrics().getLong("rejectedWrites"));
+                            withOwnerMap(context, ownerMap -> ownerMap.get(session.id(), context.asyncAssertSuccess(owner -> {
+                                context.assertEquals("node-b", owner);
+                                sessionStore.flush(context.asyncAssertSuccess(z ->
+                                    remoteMap.get(session.id(), context.asyncAssertSuccess(remote -> {
+                                        context.assertEquals("node-b", remote.get("key"));
+                                        async.complete();
+                                    }))
+                                ));
+                            })));
+                        }));
+                    }));
+                }))
+            ))
+        ));
+    }
+
+    @Test(timeout = 5000)
+    public void deleteShouldDiscardPendingWrite(TestContext context) {
+        Vertx vertx = rule.vertx();
+        NearCacheSessionStore sessionStore = NearCacheSessionStore.create(vertx).setWriteBehindDelay(60000);
+        Session session = sessionStore.createSession(DEFAULT_TIMEOUT);
+
+        sessionStore.put(session, context.asyncAssertSuccess(x ->
+            sessionStore.delete(session.id(), context.asyncAssertSuccess(y ->
+                sessionStore.flush(context.asyncAssertSuccess(z ->
+                    remoteMap.get(session.id(), context.asyncAssertSuccess(context::assertNull))
+                ))
+            ))
+        ));
+    }
+
     @Test(timeout = 5000)
     public void deleteShouldSucceedIfSessionDoesNotExist(TestContext context) {
         Vertx vertx = rule.vertx();
@@ -275,6 +591,12 @@ public class NearCacheSessionStoreIT {
 
     }
 
+    private void withOwnerMap(TestContext context, Handler<AsyncMap<String, String>> handler) {
+        rule.vertx().sharedData().<String, String>getClusterWideMap(
+            NearCacheSessionStore.DEFAULT_SESSION_MAP_NAME + ".owner", context.asyncAssertSuccess(handler)
+        );
+    }
+
     private ExtendedSession createSession(Vertx vertx) {
         return ExtendedSession.adapt(new SessionImpl(new PRNG(vertx), 36000, DEFAULT_SESSIONID_LENGTH));
     }
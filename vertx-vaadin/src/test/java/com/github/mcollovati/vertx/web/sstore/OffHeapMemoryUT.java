@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapMemoryUT {
+
+    private static final int ARENA_SIZE = 64 * 1024;
+
+    private final OffHeapMemory memory = new OffHeapMemory(2 * ARENA_SIZE, ARENA_SIZE);
+
+    @Test
+    public void writtenDataShouldBeRead() {
+        Buffer data = randomData(1000);
+        long address = memory.allocate(data.length());
+        memory.write(address, data);
+
+        assertThat(memory.read(address, data.length()).getBytes()).isEqualTo(data.getBytes());
+        assertThat(memory.used()).isEqualTo(1024);
+        assertThat(memory.reserved()).isEqualTo(ARENA_SIZE);
+    }
+
+    @Test
+    public void blocksShouldNotOverlap() {
+        List<Long> addresses = new ArrayList<>();
+        List<Buffer> data = new ArrayList<>();
+        for (int size = 1; size < 8000; size += 700) {
+            Buffer buffer = randomData(size);
+            long address = memory.allocate(size);
+            memory.write(address, buffer);
+            addresses.add(address);
+            data.add(buffer);
+        }
+        for (int i = 0; i < addresses.size(); i++) {
+            assertThat(memory.read(addresses.get(i), data.get(i).length()).getBytes())
+                .isEqualTo(data.get(i).getBytes());
+        }
+    }
+
+    @Test
+    public void freedBlocksShouldBeMerged() {
+        List<Long> addresses = new ArrayList<>();
+        for (int i = 0; i < ARENA_SIZE / OffHeapMemory.MIN_BLOCK_SIZE; i++) {
+            addresses.add(memory.allocate(OffHeapMemory.MIN_BLOCK_SIZE));
+        }
+        assertThat(memory.used()).isEqualTo(ARENA_SIZE);
+        addresses.forEach(memory::free);
+        assertThat(memory.used()).isZero();
+
+        long whole = memory.allocate(ARENA_SIZE);
+        assertThat(whole).isNotNegative();
+        assertThat(memory.reserved()).isEqualTo(ARENA_SIZE);
+    }
+
+    @Test
+    public void allocationShouldFailWhenMemoryIsExhausted() {
+        assertThat(memory.allocate(ARENA_SIZE + 1)).isEqualTo(-1);
+        assertThat(memory.allocate(ARENA_SIZE)).isNotNegative();
+        long second = memory.allocate(ARENA_SIZE / 2);
+        assertThat(second).isNotNegative();
+        assertThat(memory.allocate(ARENA_SIZE)).isEqualTo(-1);
+        assertThat(memory.allocate(ARENA_SIZE / 2)).isNotNegative();
+        assertThat(memory.allocate(1)).isEqualTo(-1);
+
+        memory.free(second);
+        assertThat(memory.allocate(1)).isNotNegative();
+    }
+
+    @Test
+    public void freeArenasShouldBeGivenBack() {
+        long first = memory.allocate(ARENA_SIZE);
+        long second = memory.allocate(ARENA_SIZE);
+        assertThat(memory.reserved()).isEqualTo(2 * ARENA_SIZE);
+
+        memory.free(first);
+        assertThat(memory.reserved()).isEqualTo(ARENA_SIZE);
+        memory.free(second);
+        assertThat(memory.reserved()).isEqualTo(ARENA_SIZE);
+        assertThat(memory.allocate(ARENA_SIZE)).isNotNegative();
+        assertThat(memory.allocate(ARENA_SIZE)).isNotNegative();
+    }
+
+    private static Buffer randomData(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return Buffer.buffer(bytes);
+    }
+}
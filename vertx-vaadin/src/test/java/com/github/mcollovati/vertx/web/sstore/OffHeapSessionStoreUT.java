@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Session;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class OffHeapSessionStoreUT {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test(timeout = 5000)
+    public void idleSessionShouldBeMovedOffHeapAndRestored(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        OffHeapSessionStore sessionStore = OffHeapSessionStore.create(vertx, "offheap-test", 1024 * 1024, 100)
+            .setIdleTime(200);
+        sessionStore.expirationHandler(res -> context.fail("Session should not expire"));
+
+        Session session = sessionStore.createSession(60000);
+        session.put("key", "value");
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(600, tid -> {
+            context.assertNull(sessionStore.peek(session.id()));
+            context.assertTrue(sessionStore.usedMemory() > 0);
+            sessionStore.size(context.asyncAssertSuccess(size -> context.assertEquals(1, size)));
+            sessionStore.get(session.id(), context.asyncAssertSuccess(restored -> {
+                context.assertEquals(session.id(), restored.id());
+                context.assertEquals("value", restored.get("key"));
+                context.assertEquals(session.lastAccessed(), restored.lastAccessed());
+                context.assertEquals(restored, sessionStore.peek(session.id()));
+                context.assertEquals(0L, sessionStore.usedMemory());
+                sessionStore.close();
+                async.complete();
+            }));
+        });
+    }
+
+    @Test(timeout = 5000)
+    public void offHeapSessionShouldExpire(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        OffHeapSessionStore sessionStore = OffHeapSessionStore.create(vertx, "offheap-expiration-test", 1024 * 1024, 100)
+            .setIdleTime(100);
+
+        Session session = sessionStore.createSession(800);
+        sessionStore.expirationHandler(context.asyncAssertSuccess(id -> {
+            context.assertEquals(session.id(), id);
+            context.assertEquals(0L, sessionStore.usedMemory());
+            sessionStore.get(id, context.asyncAssertSuccess(expired -> {
+                context.assertNull(expired);
+                sessionStore.close();
+                async.complete();
+            }));
+        }));
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(500, tid -> context.assertNull(sessionStore.peek(session.id())));
+    }
+
+    @Test(timeout = 5000)
+    public void sessionsShouldStayOnHeapWhenMemoryIsExhausted(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        OffHeapSessionStore sessionStore = OffHeapSessionStore.create(vertx, "offheap-exhausted-test", 1024, 100)
+            .setIdleTime(100);
+
+        Session session = sessionStore.createSession(60000);
+        session.put("key", new byte[4096]);
+        sessionStore.put(session, context.asyncAssertSuccess());
+        vertx.setTimer(500, tid -> {
+            context.assertEquals(session, sessionStore.peek(session.id()));
+            context.assertEquals(0L, sessionStore.usedMemory());
+            sessionStore.close();
+            async.complete();
+        });
+    }
+}
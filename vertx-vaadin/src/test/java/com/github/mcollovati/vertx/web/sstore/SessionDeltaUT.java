@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import com.github.mcollovati.vertx.web.ExtendedSession;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PRNG;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.sstore.SessionStore;
+import io.vertx.ext.web.sstore.impl.SessionImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionDeltaUT {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void deltaShouldContainOnlyChangedAttributes() {
+        Session session = createSession();
+        session.put("changed", "new value");
+        session.put("unchanged", "value");
+        session.put("json", new JsonObject().put("key", "value"));
+
+        SessionDelta delta = new SessionDelta(3, session, new HashSet<>(Arrays.asList("changed", "json", "removed")), null);
+
+        assertThat(delta.baseVersion()).isEqualTo(3);
+        assertThat(delta.attributeNames()).containsOnly("changed", "json", "removed");
+    }
+
+    @Test
+    public void deltaShouldBeAppliedAfterSerialization() {
+        Session session = createSession();
+        session.put("changed", "new value");
+        session.put("json", new JsonObject().put("key", "value"));
+        ((SessionImpl) session).incrementVersion();
+        SessionDelta delta = new SessionDelta(0, session, new HashSet<>(Arrays.asList("changed", "json", "removed")), null);
+
+        Buffer buffer = Buffer.buffer();
+        delta.writeToBuffer(buffer);
+        SessionDelta fromBuffer = new SessionDelta();
+        assertThat(fromBuffer.readFromBuffer(0, buffer)).isEqualTo(buffer.length());
+
+        Session snapshot = createSession();
+        snapshot.put("changed", "old value");
+        snapshot.put("unchanged", "value");
+        snapshot.put("removed", "value");
+        fromBuffer.applyTo(snapshot);
+
+        assertThat(fromBuffer.baseVersion()).isEqualTo(0);
+        assertThat(fromBuffer.version()).isEqualTo(1);
+        assertThat(fromBuffer.lastAccessed()).isEqualTo(session.lastAccessed());
+        assertThat(snapshot.<String>get("changed")).isEqualTo("new value");
+        assertThat(snapshot.<String>get("unchanged")).isEqualTo("value");
+        assertThat(snapshot.<JsonObject>get("json")).isEqualTo(new JsonObject().put("key", "value"));
+        assertThat(snapshot.data()).doesNotContainKey("removed");
+    }
+
+    private Session createSession() {
+        return ExtendedSession.adapt(new SessionImpl(new PRNG(vertx), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.mcollovati.vertx.web.ExtendedSession;
+import io.vertx.core.Vertx;
+import io.vertx.ext.auth.PRNG;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.sstore.SessionStore;
+import io.vertx.ext.web.sstore.impl.SessionImpl;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionLogUT {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @After
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void latestVersionOfSessionsShouldBeRead() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session first = session(60000, "v1");
+        Session second = session(60000, "v1");
+        SessionLog log = new SessionLog(directory, Long.MAX_VALUE);
+        assertThat(log.open(System.currentTimeMillis())).isEmpty();
+        log.append(Arrays.asList(SessionLog.putRecord(first), SessionLog.putRecord(second)));
+        first.put("key", "v2");
+        log.append(Arrays.asList(SessionLog.putRecord(first), SessionLog.deleteRecord(second.id())));
+        log.close();
+
+        List<Session> sessions = new SessionLog(directory, Long.MAX_VALUE).open(System.currentTimeMillis());
+        assertThat(sessions).hasSize(1);
+        assertThat(sessions.get(0).id()).isEqualTo(first.id());
+        assertThat((String) sessions.get(0).get("key")).isEqualTo("v2");
+    }
+
+    @Test
+    public void expiredSessionsShouldNotBeRead() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session session = session(1000, "value");
+        SessionLog log = new SessionLog(directory, Long.MAX_VALUE);
+        log.open(System.currentTimeMillis());
+        log.append(Collections.singletonList(SessionLog.putRecord(session)));
+        log.close();
+
+        assertThat(new SessionLog(directory, Long.MAX_VALUE).open(System.currentTimeMillis() + 2000)).isEmpty();
+    }
+
+    @Test
+    public void incompleteRecordsShouldBeDropped() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session session = session(60000, "value");
+        SessionLog log = new SessionLog(directory, Long.MAX_VALUE);
+        log.open(System.currentTimeMillis());
+        log.append(Collections.singletonList(SessionLog.putRecord(session)));
+        long size = log.size();
+        log.close();
+        File file = new File(directory, SessionLog.LOG_FILE);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            byte[] partial = SessionLog.putRecord(session(60000, "other")).getBytes();
+            out.write(partial, 0, partial.length / 2);
+        }
+
+        log = new SessionLog(directory, Long.MAX_VALUE);
+        assertThat(log.open(System.currentTimeMillis())).extracting(Session::id).containsExactly(session.id());
+        assertThat(file.length()).isEqualTo(size);
+        log.close();
+    }
+
+    @Test
+    public void corruptedRecordsShouldBeSkipped() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session first = session(60000, "first");
+        Session second = session(60000, "second");
+        Session third = session(60000, "third");
+        SessionLog log = new SessionLog(directory, Long.MAX_VALUE);
+        log.open(System.currentTimeMillis());
+        log.append(Collections.singletonList(SessionLog.putRecord(first)));
+        long corruptedOffset = log.size();
+        log.append(Arrays.asList(SessionLog.putRecord(second), SessionLog.putRecord(third)));
+        long size = log.size();
+        log.close();
+        File file = new File(directory, SessionLog.LOG_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(corruptedOffset + 20);
+            raf.write(~raf.readByte());
+        }
+
+        log = new SessionLog(directory, Long.MAX_VALUE);
+        assertThat(log.open(System.currentTimeMillis())).extracting(Session::id)
+            .containsExactlyInAnyOrder(first.id(), third.id());
+        assertThat(file.length()).isEqualTo(size);
+        log.close();
+    }
+
+    @Test
+    public void logWithUnreadableRecordShouldBeMovedAside() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session first = session(60000, "first");
+        Session second = session(60000, "second");
+        SessionLog log = new SessionLog(directory, Long.MAX_VALUE);
+        log.open(System.currentTimeMillis());
+        log.append(Collections.singletonList(SessionLog.putRecord(first)));
+        long corruptedOffset = log.size();
+        log.append(Collections.singletonList(SessionLog.putRecord(second)));
+        long size = log.size();
+        log.close();
+        File file = new File(directory, SessionLog.LOG_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(corruptedOffset);
+            raf.writeInt(0);
+        }
+
+        log = new SessionLog(directory, Long.MAX_VALUE);
+        assertThat(log.open(System.currentTimeMillis())).extracting(Session::id).containsExactly(first.id());
+        assertThat(file.length()).isEqualTo(corruptedOffset);
+        assertThat(directory.listFiles((dir, name) -> !name.equals(SessionLog.LOG_FILE)))
+            .extracting(File::length).containsExactly(size);
+        log.close();
+    }
+
+    @Test
+    public void touchesShouldUpdateDeadlineOfLatestWrite() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session session = ExtendedSession.adapt(session(1000, "value"));
+        long deadline = System.currentTimeMillis() + 60000;
+        SessionLog log = new SessionLog(directory, Long.MAX_VALUE);
+        log.open(System.currentTimeMillis());
+        log.append(Arrays.asList(SessionLog.putRecord(session), SessionLog.touchRecord(session.id(), deadline)));
+        log.close();
+
+        List<Session> sessions = new SessionLog(directory, Long.MAX_VALUE).open(System.currentTimeMillis() + 2000);
+        assertThat(sessions).hasSize(1);
+        assertThat(sessions.get(0).lastAccessed()).isEqualTo(deadline - 1000);
+    }
+
+    @Test
+    public void touchesShouldSurviveCompaction() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session session = session(1000, "value");
+        Session other = session(60000, "value");
+        long deadline = System.currentTimeMillis() + 60000;
+        SessionLog log = new SessionLog(directory, 4096);
+        log.open(System.currentTimeMillis());
+        log.append(Arrays.asList(SessionLog.putRecord(session), SessionLog.touchRecord(session.id(), deadline)));
+        for (int i = 0; i < 100; i++) {
+            other.put("key", "value" + i);
+            log.append(Collections.singletonList(SessionLog.putRecord(other)));
+        }
+        log.close();
+
+        List<Session> sessions = new SessionLog(directory, 4096).open(System.currentTimeMillis() + 2000);
+        assertThat(sessions).extracting(Session::id).contains(session.id());
+    }
+
+    @Test
+    public void staleRecordsShouldBeCompacted() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        Session session = session(60000, "value");
+        SessionLog log = new SessionLog(directory, 4096);
+        log.open(System.currentTimeMillis());
+        long recordSize = SessionLog.putRecord(session).length();
+        for (int i = 0; i < 100; i++) {
+            session.put("key", "value" + i);
+            log.append(Collections.singletonList(SessionLog.putRecord(session)));
+        }
+        assertThat(log.size()).isLessThan(4096 + recordSize);
+        assertThat(log.sessions()).isEqualTo(1);
+        log.close();
+
+        List<Session> sessions = new SessionLog(directory, 4096).open(System.currentTimeMillis());
+        assertThat(sessions).hasSize(1);
+        assertThat((String) sessions.get(0).get("key")).isEqualTo("value99");
+        assertThat(directory.list()).containsExactly(SessionLog.LOG_FILE);
+    }
+
+    private Session session(long timeout, String value) {
+        Session session = new SessionImpl(new PRNG(vertx), timeout, SessionStore.DEFAULT_SESSIONID_LENGTH);
+        session.put("key", value);
+        return session;
+    }
+}
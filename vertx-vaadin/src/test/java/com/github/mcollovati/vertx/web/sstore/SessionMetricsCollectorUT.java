@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import com.github.mcollovati.vertx.web.ExtendedSession;
+import com.github.mcollovati.vertx.web.ExtendedSessionImpl;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.PRNG;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.sstore.SessionStore;
+import io.vertx.ext.web.sstore.impl.SessionImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionMetricsCollectorUT {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    private final SessionMetricsCollector collector = new SessionMetricsCollector();
+
+    @Before
+    public void setUp() {
+        SessionMetricsRegistry.register(collector);
+    }
+
+    @After
+    public void tearDown() {
+        SessionMetricsRegistry.unregister(collector);
+        SessionMetricsRegistry.setAttributeSamplingInterval(SessionMetricsRegistry.DEFAULT_ATTRIBUTE_SAMPLING_INTERVAL);
+    }
+
+    @Test
+    public void serializationShouldBeMeasured(TestContext context) {
+        SessionMetricsRegistry.setAttributeSamplingInterval(1);
+        ExtendedSessionImpl session = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(rule.vertx()), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        session.put("small", 1);
+        session.put("large", new String(new char[4096]).replace('\0', 'x'));
+        Buffer buffer = Buffer.buffer();
+        session.writeToBuffer(buffer);
+        new ExtendedSessionImpl().readFromBuffer(0, buffer);
+
+        JsonObject metrics = collector.toJson();
+        context.assertEquals(1L, metrics.getJsonObject("serialized").getJsonObject("size").getLong("count"));
+        context.assertEquals((long) buffer.length(),
+            metrics.getJsonObject("serialized").getJsonObject("size").getLong("max"));
+        context.assertEquals((long) buffer.length(),
+            metrics.getJsonObject("deserialized").getJsonObject("size").getLong("max"));
+        JsonObject attributes = metrics.getJsonObject("attributes");
+        context.assertTrue(attributes.getJsonObject("large").getLong("max") > 4096);
+        context.assertTrue(attributes.getJsonObject("small").getLong("max") < 16);
+    }
+
+    @Test
+    public void attributeSamplingShouldBeDisabled(TestContext context) {
+        SessionMetricsRegistry.setAttributeSamplingInterval(0);
+        ExtendedSessionImpl session = (ExtendedSessionImpl) ExtendedSession.adapt(
+            new SessionImpl(new PRNG(rule.vertx()), 3000, SessionStore.DEFAULT_SESSIONID_LENGTH)
+        );
+        session.put("key", "value");
+        session.writeToBuffer(Buffer.buffer());
+        context.assertTrue(collector.toJson().getJsonObject("attributes").isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void storeAccessShouldBeMeasured(TestContext context) {
+        Vertx vertx = rule.vertx();
+        ExtendedLocalSessionStore sessionStore = ExtendedLocalSessionStore.create(vertx, "metrics-test", 100);
+        Session session = sessionStore.createSession(60000);
+        sessionStore.put(session, context.asyncAssertSuccess(v ->
+            sessionStore.get(session.id(), context.asyncAssertSuccess(stored ->
+                sessionStore.get("missing", context.asyncAssertSuccess(missing -> {
+                    JsonObject metrics = collector.toJson();
+                    context.assertEquals(1L, metrics.getJsonObject("puts").getLong("count"));
+                    context.assertEquals(2L, metrics.getJsonObject("gets").getLong("count"));
+                    context.assertEquals(1L, metrics.getLong("hits"));
+                    context.assertEquals(1L, metrics.getLong("misses"));
+                    context.assertEquals(0.5, metrics.getDouble("hitRatio"));
+                    sessionStore.close();
+                }))
+            ))
+        ));
+    }
+}
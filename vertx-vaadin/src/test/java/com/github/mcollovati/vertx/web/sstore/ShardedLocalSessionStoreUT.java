@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ * Copyright © 2016-2018 Marco Collovati (mcollovati@gmail.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.mcollovati.vertx.web.sstore;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Session;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ShardedLocalSessionStoreUT {
+
+    @Rule
+    public RunTestOnContext rule = new RunTestOnContext();
+
+    @Test(timeout = 5000)
+    public void sessionsShouldBeSpreadOverShards(TestContext context) {
+        Vertx vertx = rule.vertx();
+        ShardedLocalSessionStore sessionStore = ShardedLocalSessionStore.create(vertx, "sharding-test", 4, 100);
+        context.assertEquals(4, sessionStore.shards());
+
+        Set<String> nonEmptyMaps = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            Session session = sessionStore.createSession(60000);
+            sessionStore.put(session, context.asyncAssertSuccess());
+            context.assertEquals(session, sessionStore.peek(session.id()));
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!vertx.sharedData().getLocalMap("sharding-test." + i).isEmpty()) {
+                nonEmptyMaps.add("sharding-test." + i);
+            }
+        }
+        context.assertEquals(4, nonEmptyMaps.size());
+
+        sessionStore.size(context.asyncAssertSuccess(size -> {
+            context.assertEquals(100, size);
+            sessionStore.clear(context.asyncAssertSuccess(v ->
+                sessionStore.size(context.asyncAssertSuccess(cleared -> {
+                    context.assertEquals(0, cleared);
+                    sessionStore.close();
+                }))
+            ));
+        }));
+    }
+
+    @Test(timeout = 5000)
+    public void shardsShouldBeReapedOnDistinctEventLoops(TestContext context) {
+        Vertx vertx = rule.vertx();
+        int sessions = 40;
+        Async async = context.async(sessions);
+        ShardedLocalSessionStore sessionStore = ShardedLocalSessionStore.create(vertx, "sharded-expiration-test", 4, 100);
+
+        Set<String> expired = new HashSet<>();
+        Set<String> reaperThreads = new HashSet<>();
+        sessionStore.expirationHandler(res -> {
+            context.assertTrue(res.succeeded());
+            synchronized (expired) {
+                context.assertTrue(expired.add(res.result()));
+                reaperThreads.add(Thread.currentThread().getName());
+                if (expired.size() == sessions) {
+                    context.assertTrue(reaperThreads.size() > 1);
+                    sessionStore.close();
+                }
+            }
+            async.countDown();
+        });
+        for (int i = 0; i < sessions; i++) {
+            sessionStore.put(sessionStore.createSession(200), context.asyncAssertSuccess());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void closeShouldStopReapers(TestContext context) {
+        Vertx vertx = rule.vertx();
+        Async async = context.async();
+        int deployments = vertx.deploymentIDs().size();
+        ShardedLocalSessionStore sessionStore = ShardedLocalSessionStore.create(vertx, "sharded-close-test", 2, 100);
+        vertx.setTimer(200, tid -> {
+            context.assertEquals(deployments + 1, vertx.deploymentIDs().size());
+            sessionStore.close();
+            vertx.setTimer(200, tid2 -> {
+                context.assertEquals(deployments, vertx.deploymentIDs().size());
+                async.complete();
+            });
+        });
+    }
+}